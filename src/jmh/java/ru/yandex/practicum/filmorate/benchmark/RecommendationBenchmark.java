@@ -0,0 +1,86 @@
+package ru.yandex.practicum.filmorate.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import ru.yandex.practicum.filmorate.storage.film.CoLikeIndex;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.LongStream;
+
+// Индекс совместных лайков без приложения: userCount * likesPerUser лайков (по умолчанию 10M) строятся в памяти,
+// популярность фильмов неравномерная - первые id лайкают чаще. Выходит около 87 млн пар, а во время перестройки
+// в памяти две копии индекса, поэтому запуск с -jvmArgs -Xmx4g
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+public class RecommendationBenchmark {
+    @Param("1000000")
+    private int userCount;
+
+    @Param("10")
+    private int likesPerUser;
+
+    @Param("100000")
+    private int filmCount;
+
+    private Map<Long, long[]> likes;
+    private CoLikeIndex index;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        Random random = new Random(42);
+        likes = new HashMap<>();
+        for (long userId = 1; userId <= userCount; userId++) {
+            likes.put(userId, LongStream.generate(() -> skewedFilmId(random))
+                    .distinct()
+                    .limit(likesPerUser)
+                    .sorted()
+                    .toArray());
+        }
+        index = new CoLikeIndex(null, null, 100, 0);
+        index.rebuild(new HashMap<>(likes));
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        index.shutdown();
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public void rebuild() {
+        index.rebuild(new HashMap<>(likes));
+    }
+
+    @Benchmark
+    public List<Long> recommend() {
+        return index.recommend(ThreadLocalRandom.current().nextLong(1, userCount + 1), 10);
+    }
+
+    @Benchmark
+    public void likeAndUnlike() { // лайк и его снятие: по две правки счётчиков на каждый фильм пользователя
+        long userId = ThreadLocalRandom.current().nextLong(1, userCount + 1);
+        long filmId = filmCount + ThreadLocalRandom.current().nextLong(1, filmCount + 1); // ещё не лайкнутый
+        index.add(filmId, userId);
+        index.remove(filmId, userId);
+    }
+
+    private long skewedFilmId(Random random) {
+        double value = random.nextDouble();
+        return (long) (value * value * filmCount) + 1;
+    }
+}
@@ -0,0 +1,100 @@
+package ru.yandex.practicum.filmorate.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.storage.film.FilmPopularityIndex;
+import ru.yandex.practicum.filmorate.storage.film.FilmSearchIndex;
+
+import java.time.LocalDate;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+// Поисковый индекс без приложения: filmCount фильмов (по умолчанию 1M) с названиями из трёх слов
+// и описаниями из десяти слов словаря на 20 тыс. слов, частота слов неравномерная - первые встречаются чаще
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+public class SearchBenchmark {
+    private static final Set<FilmSearchIndex.Field> TITLE = EnumSet.of(FilmSearchIndex.Field.TITLE);
+    private static final Set<FilmSearchIndex.Field> ALL = EnumSet.allOf(FilmSearchIndex.Field.class);
+    private static final String[] SYLLABLES = {"ма", "тр", "ки", "но", "ла", "ве", "ст", "ро", "fi", "lm", "ka", "to"};
+
+    @Param("1000000")
+    private int filmCount;
+
+    @Param("20000")
+    private int vocabularySize;
+
+    private String[] vocabulary;
+    private FilmSearchIndex index;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        Random random = new Random(42);
+        vocabulary = new String[vocabularySize];
+        for (int i = 0; i < vocabularySize; i++) {
+            StringBuilder word = new StringBuilder();
+            for (int n = i; word.length() < 6 || n > 0; n /= SYLLABLES.length) {
+                word.append(SYLLABLES[n % SYLLABLES.length]);
+            }
+            vocabulary[i] = word.toString();
+        }
+        FilmPopularityIndex popularity = new FilmPopularityIndex(null);
+        index = new FilmSearchIndex(null, popularity);
+        for (long filmId = 1; filmId <= filmCount; filmId++) {
+            Film film = Film.builder()
+                    .id(filmId)
+                    .name(words(random, 3))
+                    .description(words(random, 10))
+                    .releaseDate(LocalDate.of(2000, 1, 1))
+                    .genres(List.of())
+                    .build();
+            popularity.put(film, random.nextInt(1000));
+            index.put(film);
+        }
+    }
+
+    @Benchmark
+    public List<Long> searchTitleWord() { // одно слово целиком
+        return index.search(vocabulary[skewed(ThreadLocalRandom.current())], TITLE, 10);
+    }
+
+    @Benchmark
+    public List<Long> searchTitlePrefixes() { // два префикса: объединение по словарю и пересечение
+        Random random = ThreadLocalRandom.current();
+        String first = vocabulary[skewed(random)];
+        String second = vocabulary[skewed(random)];
+        return index.search(first.substring(0, 4) + " " + second.substring(0, 4), TITLE, 10);
+    }
+
+    @Benchmark
+    public List<Long> searchTitleAndDescription() {
+        Random random = ThreadLocalRandom.current();
+        return index.search(vocabulary[skewed(random)] + " " + vocabulary[skewed(random)], ALL, 10);
+    }
+
+    private String words(Random random, int count) {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < count; i++) {
+            text.append(i == 0 ? "" : " ").append(vocabulary[skewed(random)]);
+        }
+        return text.toString();
+    }
+
+    private int skewed(Random random) {
+        double value = random.nextDouble();
+        return (int) (value * value * vocabularySize);
+    }
+}
@@ -0,0 +1,179 @@
+package ru.yandex.practicum.filmorate.benchmark;
+
+import lombok.extern.slf4j.Slf4j;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+import ru.yandex.practicum.filmorate.FilmorateApplication;
+import ru.yandex.practicum.filmorate.storage.EntityCache;
+import ru.yandex.practicum.filmorate.storage.film.CoLikeIndex;
+import ru.yandex.practicum.filmorate.storage.film.FilmPopularityIndex;
+import ru.yandex.practicum.filmorate.storage.film.FilmSearchIndex;
+import ru.yandex.practicum.filmorate.storage.user.FriendGraph;
+
+import java.sql.Date;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+@State(Scope.Benchmark)
+@Slf4j
+public class SeededApplication {
+    private static final int BATCH_SIZE = 10_000;
+    private static final int MAX_LIKES_PER_FILM = 10;
+    private static final int FRIENDS_PER_USER = 50;
+
+    @Param({"1000", "100000", "1000000"})
+    public int filmCount;
+
+    // -p appLogLevel=INFO,DEBUG -p syncLogging=true,false показывает цену логирования на горячих путях
+    @Param({"INFO"})
+    public String appLogLevel;
+
+    @Param({"false"})
+    public boolean syncLogging;
+
+    // -p virtualThreads=false,true -t 1000 сравнивает пул потоков Tomcat с виртуальными потоками
+    @Param({"false"})
+    public boolean virtualThreads;
+
+    public int userCount;
+    public ConfigurableApplicationContext context;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        userCount = Math.max(1000, filmCount / 10);
+        context = new SpringApplicationBuilder(FilmorateApplication.class)
+                .web(WebApplicationType.SERVLET)
+                .profiles(profiles())
+                .properties(
+                        // отдельная база на каждый прогон, чтобы размеры не смешивались
+                        "spring.datasource.url=jdbc:h2:mem:bench" + System.nanoTime() + ";DB_CLOSE_DELAY=-1",
+                        "server.port=0",
+                        "logging.level.root=WARN",
+                        "logging.level.org.zalando.logbook=WARN",
+                        "logging.level.ru.yandex.practicum.filmorate=" + appLogLevel,
+                        "spring.main.banner-mode=off")
+                .run();
+
+        JdbcTemplate jdbcTemplate = context.getBean(JdbcTemplate.class);
+        long started = System.currentTimeMillis();
+        seedUsers(jdbcTemplate);
+        seedFilms(jdbcTemplate);
+        seedFriends(jdbcTemplate);
+        // данные вставлены в обход хранилищ: индексы перечитываются, а кэш, прогретый на пустой базе, сбрасывается
+        context.getBean(FilmPopularityIndex.class).reload();
+        context.getBean(CoLikeIndex.class).reload();
+        context.getBean(FilmSearchIndex.class).reload();
+        context.getBean(FriendGraph.class).reload();
+        context.getBean(EntityCache.class).clear();
+        log.warn("Seeded films={}, users={} in {} ms", filmCount, userCount, System.currentTimeMillis() - started);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    public <T> T getBean(Class<T> type) {
+        return context.getBean(type);
+    }
+
+    public String baseUri() {
+        return "http://localhost:" + context.getEnvironment().getProperty("local.server.port");
+    }
+
+    public long randomFilmId() {
+        return ThreadLocalRandom.current().nextLong(1, filmCount + 1);
+    }
+
+    public long randomUserId() {
+        return ThreadLocalRandom.current().nextLong(1, userCount + 1);
+    }
+
+    private String[] profiles() {
+        List<String> profiles = new ArrayList<>();
+        if (syncLogging) {
+            profiles.add("sync-logging");
+        }
+        if (virtualThreads) {
+            profiles.add("virtual-threads");
+        }
+        return profiles.toArray(new String[0]);
+    }
+
+    private void seedUsers(JdbcTemplate jdbcTemplate) {
+        String sqlQuery = "INSERT INTO \"user\" (user_id, name, email, login, birthday) VALUES (?, ?, ?, ?, ?)";
+
+        List<Object[]> batch = new ArrayList<>(BATCH_SIZE);
+        for (long id = 1; id <= userCount; id++) {
+            batch.add(new Object[]{id, "User " + id, "user" + id + "@mail.ru", "user" + id,
+                    Date.valueOf(LocalDate.of(1990, 1, 1).plusDays(id % 5000))});
+            flushIfFull(jdbcTemplate, sqlQuery, batch);
+        }
+        flush(jdbcTemplate, sqlQuery, batch);
+    }
+
+    private void seedFilms(JdbcTemplate jdbcTemplate) { // у фильма один жанр и от 0 до 9 лайков
+        String sqlQuery = "INSERT INTO film (film_id, name, description, release_date, duration, rating_id, " +
+                "like_count) VALUES (?, ?, ?, ?, ?, ?, ?)";
+        String sqlQueryGenre = "INSERT INTO film_genre (film_id, genre_id) VALUES (?, ?)";
+        String sqlQueryLike = "INSERT INTO \"like\" (film_id, user_id) VALUES (?, ?)";
+
+        List<Object[]> films = new ArrayList<>(BATCH_SIZE);
+        List<Object[]> genres = new ArrayList<>(BATCH_SIZE);
+        List<Object[]> likes = new ArrayList<>(BATCH_SIZE);
+        for (long id = 1; id <= filmCount; id++) {
+            int likeCount = (int) (id % MAX_LIKES_PER_FILM);
+            films.add(new Object[]{id, "Фильм " + id, "Описание фильма " + id,
+                    Date.valueOf(LocalDate.of(1950, 1, 1).plusDays(id % 25000)), 90 + id % 60, id % 5 + 1,
+                    likeCount});
+            genres.add(new Object[]{id, id % 6 + 1});
+            for (int k = 0; k < likeCount; k++) {
+                likes.add(new Object[]{id, (id * 31 + k * 997L) % userCount + 1});
+            }
+            flushIfFull(jdbcTemplate, sqlQuery, films);
+            if (films.isEmpty()) { // жанры и лайки ссылаются на уже записанные фильмы
+                flush(jdbcTemplate, sqlQueryGenre, genres);
+                flush(jdbcTemplate, sqlQueryLike, likes);
+            }
+        }
+        flush(jdbcTemplate, sqlQuery, films);
+        flush(jdbcTemplate, sqlQueryGenre, genres);
+        flush(jdbcTemplate, sqlQueryLike, likes);
+    }
+
+    private void seedFriends(JdbcTemplate jdbcTemplate) {
+        String sqlQuery = "INSERT INTO friend_status (user_id, friend_id) VALUES (?, ?)";
+
+        List<Object[]> batch = new ArrayList<>(BATCH_SIZE);
+        for (long id = 1; id <= userCount; id++) {
+            for (int k = 1; k <= FRIENDS_PER_USER; k++) {
+                batch.add(new Object[]{id, (id + k * 7919L) % userCount + 1});
+                flushIfFull(jdbcTemplate, sqlQuery, batch);
+            }
+        }
+        flush(jdbcTemplate, sqlQuery, batch);
+    }
+
+    private static void flushIfFull(JdbcTemplate jdbcTemplate, String sqlQuery, List<Object[]> batch) {
+        if (batch.size() >= BATCH_SIZE) {
+            flush(jdbcTemplate, sqlQuery, batch);
+        }
+    }
+
+    private static void flush(JdbcTemplate jdbcTemplate, String sqlQuery, List<Object[]> batch) {
+        if (!batch.isEmpty()) {
+            jdbcTemplate.batchUpdate(sqlQuery, batch);
+            batch.clear();
+        }
+    }
+}
@@ -0,0 +1,37 @@
+package ru.yandex.practicum.filmorate.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.storage.film.FilmStorage;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class StorageBenchmark {
+    private FilmStorage filmStorage;
+
+    @Setup(Level.Trial)
+    public void setUp(SeededApplication application) {
+        filmStorage = application.getBean(FilmStorage.class);
+    }
+
+    @Benchmark
+    public List<Film> findAllFilms() {
+        return filmStorage.findAll();
+    }
+
+    @Benchmark
+    public Film findFilmById(SeededApplication application) {
+        return filmStorage.findById(application.randomFilmId());
+    }
+}
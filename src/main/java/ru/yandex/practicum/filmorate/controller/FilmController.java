@@ -1,12 +1,24 @@
 package ru.yandex.practicum.filmorate.controller;
 
+import jakarta.servlet.http.HttpServletRequest;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import ru.yandex.practicum.filmorate.model.BulkResult;
 import ru.yandex.practicum.filmorate.model.Film;
 import ru.yandex.practicum.filmorate.service.FilmService;
+import ru.yandex.practicum.filmorate.service.PopularFilmsStream;
+import ru.yandex.practicum.filmorate.storage.EntityVersions;
 import ru.yandex.practicum.filmorate.storage.film.FilmStorage;
 
+import java.io.IOException;
+import java.io.InputStream;
 import java.util.*;
 
 @RestController
@@ -15,59 +27,114 @@ import java.util.*;
 @RequiredArgsConstructor
 public class FilmController {
     private final FilmService filmService;
+    private final PopularFilmsStream popularFilmsStream;
     private final FilmStorage filmDbStorage;
+    private final JsonStreamWriter jsonStreamWriter;
+    private final JsonStreamReader jsonStreamReader;
+    private final EntityVersions entityVersions;
 
     @GetMapping
-    public List<Film> findAll() {
-        log.info("Method started (findAll)");
-        return filmDbStorage.findAll();
+    public List<Film> findAll(@RequestParam(required = false) Long after,
+                              @RequestParam(required = false) Integer limit) {
+        log.debug("Method started (findAll)");
+        if (after == null && limit == null) {
+            return filmDbStorage.findAll();
+        } else {
+            return filmDbStorage.findPage(after, Pages.pageSize(limit));
+        }
+    }
+
+    @GetMapping(params = "stream")
+    public ResponseEntity<StreamingResponseBody> streamAll(@RequestParam String stream) {
+        log.debug("Method started (streamAll)");
+        return jsonStreamWriter.stream(stream, filmDbStorage::forEach);
     }
 
     @GetMapping("/{id}")
-    public Film findById(@PathVariable Long id) {
-        log.info("Method started (findById)");
+    public Film findById(@PathVariable Long id, WebRequest request) {
+        log.debug("Method started (findById)");
+        if (request.checkNotModified(entityVersions.filmTag(id))) { // у клиента актуальная версия - отвечаем 304
+            return null;
+        }
         return filmDbStorage.findById(id);
     }
 
     @PostMapping
     public Film create(@RequestBody Film film) {
-        log.info("Method started (create)");
+        log.debug("Method started (create)");
         return filmDbStorage.create(film);
     }
 
+    // тело (JSON-массив или NDJSON) читается потоково, результат по каждой записи пишется в ответ по мере сохранения
+    @PostMapping(value = "/bulk", consumes = {MediaType.APPLICATION_JSON_VALUE, "application/x-ndjson"})
+    public ResponseEntity<StreamingResponseBody> createAll(@RequestHeader(HttpHeaders.CONTENT_TYPE) MediaType contentType,
+                                                           HttpServletRequest request) throws IOException {
+        log.debug("Method started (createAll)");
+        InputStream body = request.getInputStream();
+        return jsonStreamWriter.<BulkResult>stream(jsonStreamReader.format(contentType),
+                results -> jsonStreamReader.read(body, Film.class, filmDbStorage::createAll, results));
+    }
+
     @PutMapping
     public Film update(@RequestBody Film film) {
-        log.info("Method started (update)");
+        log.debug("Method started (update)");
         return filmDbStorage.update(film);
     }
 
     @DeleteMapping("/{id}")
     public void delete(@PathVariable Long id) {
-        log.info("Method started (delete)");
+        log.debug("Method started (delete)");
         filmDbStorage.delete(id);
     }
 
     @PutMapping("/{id}/like/{userId}")
     public void addLike(@PathVariable Long id,
                         @PathVariable Long userId) {
-        log.info("Method started (addLike)");
+        log.debug("Method started (addLike)");
         filmService.addLike(id, userId);
     }
 
     @DeleteMapping("/{id}/like/{userId}")
     public void removeLike(@PathVariable Long id,
                            @PathVariable Long userId) {
-        log.info("Method started (removeLike)");
+        log.debug("Method started (removeLike)");
         filmService.removeLike(id, userId);
     }
 
     @GetMapping("/popular")
-    public List<Film> showPopularFilms(@RequestParam(required = false) Long count) {
-        log.info("Method started (showPopularFilms)");
+    public List<Film> showPopularFilms(@RequestParam(required = false) Long count,
+                                       @RequestParam(required = false) Integer genreId,
+                                       @RequestParam(required = false) Integer year,
+                                       WebRequest request) {
+        log.debug("Method started (showPopularFilms)");
+        if (request.checkNotModified(entityVersions.popularTag(count, genreId, year))) {
+            return null;
+        }
+        if (count == null) {
+            return filmService.showPopularFilms(genreId, year);
+        } else {
+            return filmService.showPopularFilms(count, genreId, year);
+        }
+    }
+
+    // первое событие snapshot - рейтинг целиком, дальше события update только с изменившимися позициями
+    @GetMapping(value = "/popular/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter streamPopularFilms(@RequestParam(required = false) Long count,
+                                         @RequestParam(required = false) Integer genreId,
+                                         @RequestParam(required = false) Integer year) {
+        log.debug("Method started (streamPopularFilms)");
+        return popularFilmsStream.subscribe(count, genreId, year);
+    }
+
+    @GetMapping("/search")
+    public List<Film> searchFilms(@RequestParam String query,
+                                  @RequestParam(required = false) List<String> by,
+                                  @RequestParam(required = false) Long count) {
+        log.debug("Method started (searchFilms)");
         if (count == null) {
-            return filmService.showPopularFilms();
+            return filmService.searchFilms(query, by);
         } else {
-            return filmService.showPopularFilms(count);
+            return filmService.searchFilms(query, by, count);
         }
     }
 }
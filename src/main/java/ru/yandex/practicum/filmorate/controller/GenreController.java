@@ -6,7 +6,9 @@ import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.WebRequest;
 import ru.yandex.practicum.filmorate.model.Genre;
+import ru.yandex.practicum.filmorate.storage.EntityVersions;
 import ru.yandex.practicum.filmorate.storage.GenreDbStorage;
 
 import java.util.List;
@@ -17,16 +19,23 @@ import java.util.List;
 @Slf4j
 public class GenreController {
     private final GenreDbStorage genreDbStorage;
+    private final EntityVersions entityVersions;
 
     @GetMapping
-    public List<Genre> findAll() {
-        log.info("Method started (findAll)");
+    public List<Genre> findAll(WebRequest request) {
+        log.debug("Method started (findAll)");
+        if (request.checkNotModified(entityVersions.dictionaryTag("genres"))) {
+            return null;
+        }
         return genreDbStorage.findAll();
     }
 
     @GetMapping("/{id}")
-    public Genre findById(@PathVariable Integer id) {
-        log.info("Method started (findById)");
+    public Genre findById(@PathVariable Integer id, WebRequest request) {
+        log.debug("Method started (findById)");
+        if (request.checkNotModified(entityVersions.dictionaryTag("genres-" + id))) {
+            return null;
+        }
         return genreDbStorage.findById(id);
     }
 }
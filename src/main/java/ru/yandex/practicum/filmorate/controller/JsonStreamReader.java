@@ -0,0 +1,105 @@
+package ru.yandex.practicum.filmorate.controller;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.model.BulkResult;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+@Component
+@Slf4j
+public class JsonStreamReader {
+    private final ObjectMapper objectMapper;
+    private final int chunkSize;
+
+    public JsonStreamReader(ObjectMapper objectMapper,
+                            @Value("${filmorate.bulk.chunk-size:1000}") int chunkSize) {
+        this.objectMapper = objectMapper;
+        this.chunkSize = chunkSize;
+    }
+
+    public String format(MediaType contentType) { // ответ приходит в том же формате, что и загрузка
+        return JsonStreamWriter.APPLICATION_NDJSON.isCompatibleWith(contentType) ? "ndjson" : "json";
+    }
+
+    // читает JSON-массив или NDJSON по одной записи и передаёт их в importer пачками по chunkSize,
+    // в памяти одновременно находится не больше одной пачки
+    public <T> void read(InputStream inputStream, Class<T> type, Function<List<T>, List<BulkResult>> importer,
+                         Consumer<BulkResult> results) {
+        log.debug("Method started (read)");
+        List<T> chunk = new ArrayList<>(chunkSize);
+        List<Long> indexes = new ArrayList<>(chunkSize);
+        long index = 0;
+        try (JsonParser parser = objectMapper.getFactory().createParser(inputStream)) {
+            JsonToken token = parser.nextToken();
+            if (token == JsonToken.START_ARRAY) {
+                token = parser.nextToken();
+            }
+            while (token != null && token != JsonToken.END_ARRAY) {
+                JsonNode node = parser.readValueAsTree();
+                try {
+                    chunk.add(objectMapper.treeToValue(node, type));
+                    indexes.add(index);
+                } catch (JsonProcessingException e) { // запись не разбирается в модель - пропускаем только её
+                    log.warn("Bulk item index={} is not readable: {}", index, e.getOriginalMessage());
+                    results.accept(error(index, "Некорректная запись: " + e.getOriginalMessage()));
+                }
+                index++;
+                if (chunk.size() >= chunkSize) {
+                    importChunk(chunk, indexes, importer, results);
+                }
+                token = parser.nextToken();
+            }
+            importChunk(chunk, indexes, importer, results);
+        } catch (JsonProcessingException e) { // сломан сам JSON - дальше читать нельзя
+            log.warn("Bulk upload is malformed at index={}: {}", index, e.getOriginalMessage());
+            importChunk(chunk, indexes, importer, results);
+            results.accept(error(index, "Ошибка разбора JSON: " + e.getOriginalMessage()));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private <T> void importChunk(List<T> chunk, List<Long> indexes, Function<List<T>, List<BulkResult>> importer,
+                                 Consumer<BulkResult> results) {
+        if (chunk.isEmpty()) {
+            return;
+        }
+        List<BulkResult> imported;
+        try {
+            imported = importer.apply(chunk);
+        } catch (RuntimeException e) { // транзакция пачки откатилась целиком
+            log.warn("Bulk chunk of {} items is not saved. Reason: {}", chunk.size(), e.getMessage());
+            imported = chunk.stream()
+                    .map(item -> BulkResult.builder().error("Пачка не сохранена: " + e.getMessage()).build())
+                    .toList();
+        }
+        for (int i = 0; i < imported.size(); i++) {
+            BulkResult result = imported.get(i);
+            result.setIndex(indexes.get(i));
+            results.accept(result);
+        }
+        chunk.clear();
+        indexes.clear();
+    }
+
+    private static BulkResult error(long index, String message) {
+        return BulkResult.builder()
+                .index(index)
+                .error(message)
+                .build();
+    }
+}
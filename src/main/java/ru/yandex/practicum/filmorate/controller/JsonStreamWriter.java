@@ -0,0 +1,70 @@
+package ru.yandex.practicum.filmorate.controller;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import ru.yandex.practicum.filmorate.exception.ValidationException;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.function.Consumer;
+
+@Component
+@Slf4j
+public class JsonStreamWriter {
+    public static final MediaType APPLICATION_NDJSON = MediaType.parseMediaType("application/x-ndjson");
+
+    private final ObjectMapper objectMapper;
+    private final ObjectWriter objectWriter;
+
+    public JsonStreamWriter(ObjectMapper objectMapper) {
+        this.objectMapper = objectMapper;
+        this.objectWriter = objectMapper.writer().without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+    }
+
+    public <T> ResponseEntity<StreamingResponseBody> stream(String format, Consumer<Consumer<T>> source) {
+        log.debug("Method started (stream)");
+        return switch (format) {
+            case "ndjson" -> ResponseEntity.ok()
+                    .contentType(APPLICATION_NDJSON)
+                    .body(outputStream -> write(outputStream, source, false));
+            case "json" -> ResponseEntity.ok()
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .body(outputStream -> write(outputStream, source, true));
+            default -> {
+                log.warn("Unknown stream format={}", format);
+                throw new ValidationException("Неизвестный формат выгрузки: " + format + " (ожидается ndjson или json)");
+            }
+        };
+    }
+
+    private <T> void write(OutputStream outputStream, Consumer<Consumer<T>> source, boolean array)
+            throws IOException {
+        try (JsonGenerator generator = objectMapper.getFactory().createGenerator(outputStream)) {
+            generator.setRootValueSeparator(null);
+            if (array) {
+                generator.writeStartArray();
+            }
+            source.accept(value -> { // строки пишутся по мере чтения курсора, список в памяти не собирается
+                try {
+                    objectWriter.writeValue(generator, value);
+                    if (!array) {
+                        generator.writeRaw('\n');
+                    }
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+            if (array) {
+                generator.writeEndArray();
+            }
+        }
+    }
+}
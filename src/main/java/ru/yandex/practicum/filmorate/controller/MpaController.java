@@ -6,7 +6,9 @@ import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.WebRequest;
 import ru.yandex.practicum.filmorate.model.Rating;
+import ru.yandex.practicum.filmorate.storage.EntityVersions;
 import ru.yandex.practicum.filmorate.storage.RatingDbStorage;
 
 import java.util.List;
@@ -17,16 +19,23 @@ import java.util.List;
 @Slf4j
 public class MpaController {
     private final RatingDbStorage ratingDbStorage;
+    private final EntityVersions entityVersions;
 
     @GetMapping
-    public List<Rating> findAll() {
-        log.info("Method started (findAll)");
+    public List<Rating> findAll(WebRequest request) {
+        log.debug("Method started (findAll)");
+        if (request.checkNotModified(entityVersions.dictionaryTag("mpa"))) {
+            return null;
+        }
         return ratingDbStorage.findAll();
     }
 
     @GetMapping("/{id}")
-    public Rating findById(@PathVariable Integer id) {
-        log.info("Method started (findById)");
+    public Rating findById(@PathVariable Integer id, WebRequest request) {
+        log.debug("Method started (findById)");
+        if (request.checkNotModified(entityVersions.dictionaryTag("mpa-" + id))) {
+            return null;
+        }
         return ratingDbStorage.findById(id);
     }
 }
\ No newline at end of file
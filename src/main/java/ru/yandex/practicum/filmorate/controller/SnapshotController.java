@@ -0,0 +1,37 @@
+package ru.yandex.practicum.filmorate.controller;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.annotation.Profile;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import ru.yandex.practicum.filmorate.service.SnapshotService;
+
+import java.nio.channels.Channels;
+
+@RestController
+@RequestMapping("/snapshot")
+@Profile("!in-memory")
+@Slf4j
+@RequiredArgsConstructor
+public class SnapshotController {
+    private final SnapshotService snapshotService;
+
+    @GetMapping
+    public ResponseEntity<StreamingResponseBody> export() {
+        log.debug("Method started (export)");
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_OCTET_STREAM)
+                .header(HttpHeaders.CONTENT_DISPOSITION, ContentDisposition.attachment()
+                        .filename("filmorate.snapshot")
+                        .build()
+                        .toString())
+                .body(outputStream -> snapshotService.export(Channels.newChannel(outputStream)));
+    }
+}
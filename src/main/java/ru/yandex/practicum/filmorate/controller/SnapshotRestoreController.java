@@ -0,0 +1,33 @@
+package ru.yandex.practicum.filmorate.controller;
+
+import jakarta.servlet.http.HttpServletRequest;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Profile;
+import org.springframework.http.MediaType;
+import org.springframework.web.bind.annotation.PutMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+import ru.yandex.practicum.filmorate.service.SnapshotService;
+
+import java.io.IOException;
+import java.nio.channels.Channels;
+
+// Замена всей базы снимком. Проверки прав в приложении нет, поэтому обработчик есть только при
+// filmorate.snapshot.restore.enabled=true - его включают на время переноса данных
+@RestController
+@RequestMapping("/snapshot")
+@Profile("!in-memory")
+@ConditionalOnProperty(name = "filmorate.snapshot.restore.enabled", havingValue = "true")
+@Slf4j
+@RequiredArgsConstructor
+public class SnapshotRestoreController {
+    private final SnapshotService snapshotService;
+
+    @PutMapping(consumes = MediaType.APPLICATION_OCTET_STREAM_VALUE)
+    public long restore(HttpServletRequest request) throws IOException {
+        log.debug("Method started (restore)");
+        return snapshotService.restore(Channels.newChannel(request.getInputStream()));
+    }
+}
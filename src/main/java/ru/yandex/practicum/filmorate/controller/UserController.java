@@ -1,12 +1,25 @@
 package ru.yandex.practicum.filmorate.controller;
 
+import jakarta.servlet.http.HttpServletRequest;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import ru.yandex.practicum.filmorate.model.BulkResult;
+import ru.yandex.practicum.filmorate.model.Event;
+import ru.yandex.practicum.filmorate.model.Film;
 import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.service.FilmService;
 import ru.yandex.practicum.filmorate.service.UserService;
+import ru.yandex.practicum.filmorate.storage.EntityVersions;
 import ru.yandex.practicum.filmorate.storage.user.UserStorage;
 
+import java.io.IOException;
+import java.io.InputStream;
 import java.util.*;
 
 @RestController
@@ -16,61 +29,106 @@ import java.util.*;
 public class UserController {
     private final UserStorage userDbStorage;
     private final UserService userService;
+    private final FilmService filmService;
+    private final JsonStreamWriter jsonStreamWriter;
+    private final JsonStreamReader jsonStreamReader;
+    private final EntityVersions entityVersions;
 
     @GetMapping
-    public List<User> findAll() {
-        log.info("Method started (findAll)");
-        return userDbStorage.findAll();
+    public List<User> findAll(@RequestParam(required = false) Long after,
+                              @RequestParam(required = false) Integer limit) {
+        log.debug("Method started (findAll)");
+        if (after == null && limit == null) {
+            return userDbStorage.findAll();
+        } else {
+            return userDbStorage.findPage(after, Pages.pageSize(limit));
+        }
+    }
+
+    @GetMapping(params = "stream")
+    public ResponseEntity<StreamingResponseBody> streamAll(@RequestParam String stream) {
+        log.debug("Method started (streamAll)");
+        return jsonStreamWriter.stream(stream, userDbStorage::forEach);
     }
 
     @GetMapping("/{id}")
-    public User findById(@PathVariable Long id) {
-        log.info("Method started (findById)");
+    public User findById(@PathVariable Long id, WebRequest request) {
+        log.debug("Method started (findById)");
+        if (request.checkNotModified(entityVersions.userTag(id))) {
+            return null;
+        }
         return userDbStorage.findById(id);
     }
 
     @PostMapping
     public User create(@RequestBody User user) {
-        log.info("Method started (create)");
+        log.debug("Method started (create)");
         return userDbStorage.create(user);
     }
 
+    // тело (JSON-массив или NDJSON) читается потоково, результат по каждой записи пишется в ответ по мере сохранения
+    @PostMapping(value = "/bulk", consumes = {MediaType.APPLICATION_JSON_VALUE, "application/x-ndjson"})
+    public ResponseEntity<StreamingResponseBody> createAll(@RequestHeader(HttpHeaders.CONTENT_TYPE) MediaType contentType,
+                                                           HttpServletRequest request) throws IOException {
+        log.debug("Method started (createAll)");
+        InputStream body = request.getInputStream();
+        return jsonStreamWriter.<BulkResult>stream(jsonStreamReader.format(contentType),
+                results -> jsonStreamReader.read(body, User.class, userDbStorage::createAll, results));
+    }
+
     @PutMapping
     public User update(@RequestBody User user) {
-        log.info("Method started (update)");
+        log.debug("Method started (update)");
         return userDbStorage.update(user);
     }
 
     @DeleteMapping("/{id}")
     public void delete(@PathVariable Long id) {
-        log.info("Method started (delete)");
+        log.debug("Method started (delete)");
         userDbStorage.delete(id);
     }
 
     @PutMapping("/{id}/friends/{friendId}")
     public void addFriend(@PathVariable Long id,
                           @PathVariable Long friendId) {
-        log.info("Method started (addFriend)");
+        log.debug("Method started (addFriend)");
         userService.addFriend(id, friendId);
     }
 
     @DeleteMapping("/{id}/friends/{friendId}")
     public void removeFriend(@PathVariable Long id,
                              @PathVariable Long friendId) {
-        log.info("Method started (removeFriend)");
+        log.debug("Method started (removeFriend)");
         userService.removeFriend(id, friendId);
     }
 
     @GetMapping("/{id}/friends")
     public List<User> getFriends(@PathVariable Long id) {
-        log.info("Method started (getFriends)");
+        log.debug("Method started (getFriends)");
         return userService.getFriends(id);
     }
 
     @GetMapping("/{firstId}/friends/common/{secondId}")
     public List<User> mutualFriends(@PathVariable Long firstId,
                                     @PathVariable Long secondId) {
-        log.info("Method started (mutualFriends)");
+        log.debug("Method started (mutualFriends)");
         return userService.mutualFriends(firstId, secondId);
     }
-}
\ No newline at end of file
+
+    @GetMapping("/{id}/feed")
+    public List<Event> getFeed(@PathVariable Long id) {
+        log.debug("Method started (getFeed)");
+        return userService.getFeed(id);
+    }
+
+    @GetMapping("/{id}/recommendations")
+    public List<Film> showRecommendations(@PathVariable Long id,
+                                          @RequestParam(required = false) Long count) {
+        log.debug("Method started (showRecommendations)");
+        if (count == null) {
+            return filmService.showRecommendations(id);
+        } else {
+            return filmService.showRecommendations(id, count);
+        }
+    }
+}
@@ -0,0 +1,95 @@
+package ru.yandex.practicum.filmorate.controller;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.servlet.AsyncEvent;
+import jakarta.servlet.AsyncListener;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.annotation.Profile;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+import ru.yandex.practicum.filmorate.exception.ErrorResponse;
+import ru.yandex.practicum.filmorate.service.WriteGate;
+
+import java.io.IOException;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+// Изменяющие запросы проходят через WriteGate: во время восстановления снимка они получают 503,
+// а восстановление ждёт уже начатые. Асинхронный ответ (пакетная загрузка) держит вход до своего завершения
+@Component
+@Profile("!in-memory")
+@Slf4j
+@RequiredArgsConstructor
+public class WriteGateFilter extends OncePerRequestFilter {
+    private static final Set<String> READ_METHODS = Set.of(HttpMethod.GET.name(), HttpMethod.HEAD.name(),
+            HttpMethod.OPTIONS.name());
+
+    private final WriteGate writeGate;
+    private final ObjectMapper objectMapper;
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) { // само восстановление ворота закрывает
+        return READ_METHODS.contains(request.getMethod()) || request.getRequestURI().startsWith("/snapshot");
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        long stamp = writeGate.tryEnter();
+        if (stamp == 0) {
+            log.warn("Write rejected during snapshot restore: {} {}", request.getMethod(), request.getRequestURI());
+            response.setStatus(HttpStatus.SERVICE_UNAVAILABLE.value());
+            response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+            objectMapper.writeValue(response.getOutputStream(),
+                    new ErrorResponse("Идёт восстановление снимка, изменения временно не принимаются"));
+            return;
+        }
+        Runnable leave = leaveOnce(stamp);
+        try {
+            chain.doFilter(request, response);
+        } finally {
+            if (request.isAsyncStarted()) {
+                request.getAsyncContext().addListener(new LeaveOnComplete(leave));
+            } else {
+                leave.run();
+            }
+        }
+    }
+
+    private Runnable leaveOnce(long stamp) {
+        AtomicBoolean left = new AtomicBoolean();
+        return () -> {
+            if (left.compareAndSet(false, true)) {
+                writeGate.leave(stamp);
+            }
+        };
+    }
+
+    // onComplete приходит и после тайм-аута или ошибки асинхронного ответа
+    private record LeaveOnComplete(Runnable leave) implements AsyncListener {
+        @Override
+        public void onComplete(AsyncEvent event) {
+            leave.run();
+        }
+
+        @Override
+        public void onTimeout(AsyncEvent event) {
+        }
+
+        @Override
+        public void onError(AsyncEvent event) {
+        }
+
+        @Override
+        public void onStartAsync(AsyncEvent event) {
+        }
+    }
+}
@@ -0,0 +1,84 @@
+package ru.yandex.practicum.filmorate.model;
+
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.IntFunction;
+
+// Неизменяемое компактное представление фильма для хранения в памяти (кэш, in-memory хранилище).
+// Дата хранится днём эпохи, рейтинг и жанры - id из справочников, а одинаковые наборы жанров - одним массивом
+// на всех, поэтому equals записи работает и для жанров. Общий массив наружу не выдаётся: конструктор берёт
+// копию переданного, а genreIds() возвращает копию. Наружу отдаётся новый Film из общих экземпляров
+// Genre и Rating.
+public record CompactFilm(long id, String name, String description, int releaseDay, int duration, int ratingId,
+                          short[] genreIds) {
+    private static final int NO_DATE = Integer.MIN_VALUE;
+    private static final int NO_RATING = 0;
+    private static final Map<GenreSet, short[]> GENRE_SETS = new ConcurrentHashMap<>();
+
+    public CompactFilm {
+        genreIds = GENRE_SETS.computeIfAbsent(new GenreSet(genreIds.clone()), GenreSet::ids);
+    }
+
+    public static CompactFilm of(Film film) {
+        return new CompactFilm(
+                film.getId(),
+                film.getName(),
+                film.getDescription(),
+                film.getReleaseDate() == null ? NO_DATE : (int) film.getReleaseDate().toEpochDay(),
+                Math.toIntExact(film.getDuration()),
+                film.getMpa() == null ? NO_RATING : film.getMpa().getId(),
+                sortedGenreIds(film.getGenres()));
+    }
+
+    @Override
+    public short[] genreIds() {
+        return genreIds.clone();
+    }
+
+    public Film toFilm(IntFunction<Genre> genres, IntFunction<Rating> ratings) {
+        Genre[] filmGenres = new Genre[genreIds.length];
+        for (int i = 0; i < genreIds.length; i++) {
+            filmGenres[i] = genres.apply(genreIds[i]);
+        }
+        return Film.builder()
+                .id(id)
+                .name(name)
+                .description(description)
+                .releaseDate(releaseDay == NO_DATE ? null : LocalDate.ofEpochDay(releaseDay))
+                .duration((long) duration)
+                .mpa(ratingId == NO_RATING ? null : ratings.apply(ratingId))
+                .genres(List.of(filmGenres))
+                .build();
+    }
+
+    private static short[] sortedGenreIds(List<Genre> genres) { // без повторов
+        int[] ids = genres == null ? new int[0] : genres.stream()
+                .mapToInt(Genre::getId)
+                .distinct()
+                .sorted()
+                .toArray();
+        short[] genreIds = new short[ids.length];
+        for (int i = 0; i < ids.length; i++) {
+            if (ids[i] != (short) ids[i]) {
+                throw new IllegalArgumentException("Genre id out of range: " + ids[i]);
+            }
+            genreIds[i] = (short) ids[i];
+        }
+        return genreIds;
+    }
+
+    private record GenreSet(short[] ids) { // ключ сравнивается по содержимому массива, а не по ссылке
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof GenreSet other && Arrays.equals(ids, other.ids);
+        }
+
+        @Override
+        public int hashCode() {
+            return Arrays.hashCode(ids);
+        }
+    }
+}
@@ -0,0 +1,14 @@
+package ru.yandex.practicum.filmorate.model;
+
+// Событие ленты пользователя: лайк или дружба, добавленные или снятые. timestamp - миллисекунды от эпохи,
+// entityId - id фильма для LIKE и id друга для FRIEND
+public record Event(long eventId, long timestamp, long userId, EventType eventType, Operation operation,
+                    long entityId) {
+    public enum EventType {
+        LIKE, FRIEND
+    }
+
+    public enum Operation {
+        ADD, REMOVE
+    }
+}
@@ -2,68 +2,134 @@ package ru.yandex.practicum.filmorate.service;
 
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Service;
+import ru.yandex.practicum.filmorate.exception.ValidationException;
+import ru.yandex.practicum.filmorate.model.Event;
 import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.storage.event.EventLog;
+import ru.yandex.practicum.filmorate.storage.film.CoLikeIndex;
+import ru.yandex.practicum.filmorate.storage.film.FilmSearchIndex;
 import ru.yandex.practicum.filmorate.storage.film.FilmStorage;
-import ru.yandex.practicum.filmorate.storage.mappers.FilmRowMapper;
+import ru.yandex.practicum.filmorate.storage.film.LikeWriteBuffer;
 import ru.yandex.practicum.filmorate.storage.user.UserStorage;
-import ru.yandex.practicum.filmorate.validation.Validator;
 
+import java.util.EnumSet;
 import java.util.List;
+import java.util.Locale;
+import java.util.Optional;
+import java.util.Set;
 
 @Service
 @Slf4j
 @RequiredArgsConstructor
 public class FilmService {
+    private static final long DEFAULT_POPULAR_COUNT = 10;
+    private static final long DEFAULT_RECOMMENDATIONS_COUNT = 10;
+    private static final long DEFAULT_SEARCH_COUNT = 10;
+
     private final FilmStorage filmDbStorage;
     private final UserStorage userDbStorage;
-    private final JdbcTemplate jdbcTemplate;
-    private final FilmRowMapper filmRowMapper;
-    private final Validator validator;
+    private final CoLikeIndex coLikeIndex;
+    private final FilmSearchIndex filmSearchIndex;
+    private final EventLog eventLog;
+    private final Optional<LikeWriteBuffer> likeWriteBuffer; // включается filmorate.likes.write-behind.enabled
 
     public void addLike(Long filmId, Long userId) {
-        log.info("Method started (addLike)");
-        String sqlQuery = "INSERT INTO \"like\" VALUES (?, ?)";
+        log.debug("Method started (addLike)");
+        // для лайков из буфера отложенной записи событие пишет FilmDbStorage.applyLikes, когда лайк применён
+        likeWriteBuffer.ifPresentOrElse(buffer -> buffer.addLike(filmId, userId), () -> {
+            if (filmDbStorage.addLike(filmId, userId)) {
+                eventLog.record(userId, Event.EventType.LIKE, Event.Operation.ADD, filmId);
+            }
+        });
+        log.debug("like added filmId={}", filmId);
+    }
+
+    public void removeLike(Long filmId, Long userId) {
+        log.debug("Method started (removeLike)");
+        likeWriteBuffer.ifPresentOrElse(buffer -> buffer.removeLike(filmId, userId), () -> {
+            if (filmDbStorage.removeLike(filmId, userId)) {
+                eventLog.record(userId, Event.EventType.LIKE, Event.Operation.REMOVE, filmId);
+            }
+        });
+        log.debug("like remove filmId={}", filmId);
+    }
 
-        validator.checkForFilmInDatabase(filmId);
-        validator.checkForUserInDatabase(userId);
+    public List<Film> showPopularFilms() {
+        log.debug("Method started (showPopularFilms)");
+        return showPopularFilms(DEFAULT_POPULAR_COUNT);
+    }
 
-        jdbcTemplate.update(sqlQuery, filmId, userId);
-        log.info("like added filmId={}", filmId);
+    public List<Film> showPopularFilms(Long count) {
+        log.debug("Method started (showPopularFilms(Long count))");
+        return showPopularFilms(count, null, null);
     }
 
-    public void removeLike(Long filmId, Long userId) {
-        log.info("Method started (removeLike)");
-        String sqlQuery = "DELETE FROM \"like\" WHERE film_id = ? AND user_id = ?";
+    public List<Film> showPopularFilms(Integer genreId, Integer year) {
+        log.debug("Method started (showPopularFilms(Integer genreId, Integer year))");
+        return showPopularFilms(DEFAULT_POPULAR_COUNT, genreId, year);
+    }
 
-        validator.checkForFilmInDatabase(filmId);
-        validator.checkForUserInDatabase(userId);
+    public List<Film> showPopularFilms(Long count, Integer genreId, Integer year) { // null - без фильтра
+        log.debug("Method started (showPopularFilms(Long count, Integer genreId, Integer year))");
+        if (count <= 0) {
+            log.warn("The number of popular films must be positive, count={}", count);
+            throw new ValidationException("Количество популярных фильмов должно быть положительным");
+        }
 
-        jdbcTemplate.update(sqlQuery, filmId, userId);
-        log.info("like remove filmId={}", filmId);
+        return filmDbStorage.findPopular((int) Math.min(count, Integer.MAX_VALUE), genreId, year);
     }
 
-    public List<Film> showPopularFilms() {
-        log.info("Method started (showPopularFilms)");
-        String sqlQuery = "SELECT f.film_id, name, description, release_date, duration, rating_id\n" +
-                "FROM film AS f\n" +
-                "JOIN \"like\" AS l ON f.film_id = l.film_id\n" +
-                "GROUP BY f.film_id\n" +
-                "ORDER BY COUNT(l.user_id) DESC";
-
-        return jdbcTemplate.query(sqlQuery, filmRowMapper);
+    public List<Film> showRecommendations(Long userId) {
+        log.debug("Method started (showRecommendations)");
+        return showRecommendations(userId, DEFAULT_RECOMMENDATIONS_COUNT);
     }
 
-    public List<Film> showPopularFilms(Long count) {
-        log.info("Method started (showPopularFilms(Long count))");
-        String sqlQuery = "SELECT f.film_id, name, description, release_date, duration, rating_id\n" +
-                "FROM film AS f\n" +
-                "JOIN \"like\" AS l ON f.film_id = l.film_id\n" +
-                "GROUP BY f.film_id\n" +
-                "ORDER BY COUNT(l.user_id) DESC\n" +
-                "LIMIT ?";
-
-        return jdbcTemplate.query(sqlQuery, filmRowMapper, count);
+    public List<Film> showRecommendations(Long userId, Long count) {
+        log.debug("Method started (showRecommendations(Long userId, Long count))");
+        if (count <= 0) {
+            log.warn("The number of recommended films must be positive, count={}", count);
+            throw new ValidationException("Количество рекомендуемых фильмов должно быть положительным");
+        }
+        userDbStorage.findById(userId);
+
+        // лайки из буфера отложенной записи попадут в рекомендации после его сброса
+        return filmDbStorage.findByIds(coLikeIndex.recommend(userId, (int) Math.min(count, Integer.MAX_VALUE)));
+    }
+
+    public List<Film> searchFilms(String query, List<String> by) {
+        log.debug("Method started (searchFilms)");
+        return searchFilms(query, by, DEFAULT_SEARCH_COUNT);
+    }
+
+    public List<Film> searchFilms(String query, List<String> by, Long count) { // by - title и/или description
+        log.debug("Method started (searchFilms(String query, List<String> by, Long count))");
+        if (query == null || query.isBlank()) {
+            log.warn("Empty search query");
+            throw new ValidationException("Поисковый запрос не должен быть пустым");
+        }
+        if (count <= 0) {
+            log.warn("The number of found films must be positive, count={}", count);
+            throw new ValidationException("Количество найденных фильмов должно быть положительным");
+        }
+
+        return filmDbStorage.findByIds(filmSearchIndex.search(query, searchFields(by),
+                (int) Math.min(count, Integer.MAX_VALUE)));
+    }
+
+    private Set<FilmSearchIndex.Field> searchFields(List<String> by) {
+        if (by == null || by.isEmpty()) {
+            return EnumSet.of(FilmSearchIndex.Field.TITLE);
+        }
+        Set<FilmSearchIndex.Field> fields = EnumSet.noneOf(FilmSearchIndex.Field.class);
+        for (String field : by) {
+            try {
+                fields.add(FilmSearchIndex.Field.valueOf(field.trim().toUpperCase(Locale.ROOT)));
+            } catch (IllegalArgumentException e) {
+                log.warn("Unknown search field by={}", field);
+                throw new ValidationException("Искать можно только по title и description");
+            }
+        }
+        return fields;
     }
 }
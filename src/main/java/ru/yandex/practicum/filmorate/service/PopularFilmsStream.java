@@ -0,0 +1,259 @@
+package ru.yandex.practicum.filmorate.service;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import ru.yandex.practicum.filmorate.exception.ValidationException;
+import ru.yandex.practicum.filmorate.storage.film.FilmPopularityIndex;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+// Поток изменений рейтинга популярных фильмов (SSE). Раз в окно filmorate.popular.stream.window-ms один
+// производитель проверяет версию FilmPopularityIndex и, если рейтинг мог измениться, пересчитывает его по разу
+// на каждый набор параметров подписчиков и рассылает только изменившиеся позиции. У подписчика своя ограниченная
+// очередь и свой виртуальный поток отправки: медленный клиент не задерживает остальных, а переполнивший
+// очередь отключается и может переподключиться за новым снимком
+@Service
+@Slf4j
+public class PopularFilmsStream {
+    private static final long DEFAULT_COUNT = 10;
+
+    private final FilmPopularityIndex filmPopularityIndex;
+    private final int clientBuffer;
+    private final int maxCount;
+    private final long timeout;
+    // подписка и рассылка не пересекаются, поэтому дельты подписчика всегда идут от его снимка
+    private final Lock lock = new ReentrantLock();
+    private final Map<Key, Topic> topics = new HashMap<>();
+    private long publishedVersion = -1;
+
+    public PopularFilmsStream(FilmPopularityIndex filmPopularityIndex,
+                              @Value("${filmorate.popular.stream.client-buffer:16}") int clientBuffer,
+                              @Value("${filmorate.popular.stream.max-count:100}") int maxCount,
+                              @Value("${filmorate.popular.stream.timeout-ms:1800000}") long timeout) {
+        this.filmPopularityIndex = filmPopularityIndex;
+        this.clientBuffer = clientBuffer;
+        this.maxCount = maxCount;
+        this.timeout = timeout;
+    }
+
+    public SseEmitter subscribe(Long count, Integer genreId, Integer year) {
+        return subscribe(new SseEmitter(timeout), count, genreId, year);
+    }
+
+    public SseEmitter subscribe(SseEmitter emitter, Long count, Integer genreId, Integer year) {
+        log.debug("Method started (subscribe)");
+        long size = count == null ? DEFAULT_COUNT : count;
+        if (size <= 0 || size > maxCount) {
+            log.warn("Incorrect popular stream size count={}", count);
+            throw new ValidationException("Количество популярных фильмов должно быть от 1 до " + maxCount);
+        }
+        Key key = new Key((int) size, genreId, year);
+        Subscriber subscriber = new Subscriber(emitter, clientBuffer);
+        emitter.onCompletion(() -> unsubscribe(key, subscriber, false));
+        emitter.onTimeout(() -> unsubscribe(key, subscriber, true)); // клиент переподключится за новым снимком
+        emitter.onError(e -> unsubscribe(key, subscriber, false));
+        lock.lock();
+        try {
+            Topic topic = topics.computeIfAbsent(key, k -> new Topic(ranking(k)));
+            topic.subscribers().add(subscriber);
+            subscriber.offer(new Message("snapshot", new Update(topic.ranking, List.of())));
+        } finally {
+            lock.unlock();
+        }
+        subscriber.start();
+        log.debug("Popular stream subscribed, count={}, genreId={}, year={}", size, genreId, year);
+        return emitter;
+    }
+
+    @Scheduled(fixedDelayString = "${filmorate.popular.stream.window-ms:500}")
+    public int publish() { // число разосланных обновлений
+        // версия читается до пересчёта: изменения во время рассылки попадут в следующее окно
+        long version = filmPopularityIndex.version();
+        lock.lock();
+        try {
+            if (version == publishedVersion) {
+                return 0;
+            }
+            publishedVersion = version;
+            int sent = 0;
+            for (Map.Entry<Key, Topic> entry : topics.entrySet()) {
+                Topic topic = entry.getValue();
+                List<Position> ranking = ranking(entry.getKey());
+                Update update = diff(topic.ranking, ranking);
+                topic.ranking = ranking;
+                if (update.ranking().isEmpty() && update.removed().isEmpty()) {
+                    continue;
+                }
+                Message message = new Message("update", update);
+                topic.subscribers().removeIf(subscriber -> !subscriber.offer(message));
+                sent += topic.subscribers().size();
+            }
+            topics.values().removeIf(topic -> topic.subscribers().isEmpty());
+            return sent;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int subscribers() {
+        lock.lock();
+        try {
+            return topics.values().stream().mapToInt(topic -> topic.subscribers().size()).sum();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @PreDestroy
+    public void close() {
+        log.info("Closing popular stream, subscribers={}", subscribers());
+        lock.lock();
+        try {
+            topics.values().forEach(topic -> topic.subscribers().forEach(subscriber -> subscriber.close(true)));
+            topics.clear();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void unsubscribe(Key key, Subscriber subscriber, boolean complete) {
+        subscriber.close(complete);
+        lock.lock();
+        try {
+            Topic topic = topics.get(key);
+            if (topic != null && topic.subscribers().remove(subscriber) && topic.subscribers().isEmpty()) {
+                topics.remove(key);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private List<Position> ranking(Key key) {
+        List<Long> filmIds = filmPopularityIndex.findTop(key.count(), key.genreId(), key.year());
+        List<Position> ranking = new ArrayList<>(filmIds.size());
+        for (int i = 0; i < filmIds.size(); i++) {
+            ranking.add(new Position(i + 1, filmIds.get(i), filmPopularityIndex.likes(filmIds.get(i))));
+        }
+        return ranking;
+    }
+
+    // изменившиеся позиции (другой фильм или другое число лайков) и фильмы, выбывшие из рейтинга
+    private static Update diff(List<Position> previous, List<Position> current) {
+        List<Position> changed = new ArrayList<>();
+        Set<Long> filmIds = new HashSet<>();
+        for (int i = 0; i < current.size(); i++) {
+            Position position = current.get(i);
+            filmIds.add(position.filmId());
+            if (i >= previous.size() || !previous.get(i).equals(position)) {
+                changed.add(position);
+            }
+        }
+        List<Long> removed = previous.stream()
+                .map(Position::filmId)
+                .filter(filmId -> !filmIds.contains(filmId))
+                .toList();
+        return new Update(changed, removed);
+    }
+
+    public record Position(int rank, long filmId, long likes) {
+    }
+
+    public record Update(List<Position> ranking, List<Long> removed) {
+    }
+
+    private record Key(int count, Integer genreId, Integer year) {
+    }
+
+    private record Message(String name, Update update) {
+    }
+
+    private static class Topic {
+        private final List<Subscriber> subscribers = new ArrayList<>();
+        private List<Position> ranking;
+
+        Topic(List<Position> ranking) {
+            this.ranking = ranking;
+        }
+
+        List<Subscriber> subscribers() {
+            return subscribers;
+        }
+    }
+
+    // Очередь производитель только пополняет и не ждёт, отправляет клиенту отдельный виртуальный поток
+    private static class Subscriber {
+        private final SseEmitter emitter;
+        private final BlockingQueue<Message> queue;
+        private final AtomicBoolean closed = new AtomicBoolean();
+        private volatile Thread sender;
+
+        Subscriber(SseEmitter emitter, int capacity) {
+            this.emitter = emitter;
+            this.queue = new ArrayBlockingQueue<>(capacity);
+        }
+
+        void start() {
+            sender = Thread.ofVirtual().name("popular-stream").start(this::send);
+            if (closed.get()) { // отключён до запуска потока
+                sender.interrupt();
+            }
+        }
+
+        boolean offer(Message message) {
+            if (closed.get()) {
+                return false;
+            }
+            if (!queue.offer(message)) {
+                log.warn("Popular stream subscriber is too slow, disconnecting");
+                close(true);
+                return false;
+            }
+            return true;
+        }
+
+        void close(boolean complete) { // complete = false, если ответ уже завершил контейнер
+            if (closed.compareAndSet(false, true)) {
+                Thread thread = sender;
+                if (thread != null) {
+                    thread.interrupt();
+                }
+                if (complete) {
+                    emitter.complete();
+                }
+            }
+        }
+
+        private void send() {
+            try {
+                while (!closed.get()) {
+                    Message message = queue.take();
+                    emitter.send(SseEmitter.event()
+                            .name(message.name())
+                            .data(message.update(), MediaType.APPLICATION_JSON));
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (IOException | IllegalStateException e) { // клиент отключился или ответ уже завершён
+                log.debug("Popular stream subscriber disconnected: {}", e.getMessage());
+                close(true);
+            }
+        }
+    }
+}
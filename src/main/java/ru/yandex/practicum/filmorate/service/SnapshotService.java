@@ -0,0 +1,76 @@
+package ru.yandex.practicum.filmorate.service;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Service;
+import ru.yandex.practicum.filmorate.storage.EntityCache;
+import ru.yandex.practicum.filmorate.storage.EntityVersions;
+import ru.yandex.practicum.filmorate.storage.event.EventLog;
+import ru.yandex.practicum.filmorate.storage.film.CoLikeIndex;
+import ru.yandex.practicum.filmorate.storage.film.FilmPopularityIndex;
+import ru.yandex.practicum.filmorate.storage.film.FilmSearchIndex;
+import ru.yandex.practicum.filmorate.storage.film.LikeWriteBuffer;
+import ru.yandex.practicum.filmorate.storage.snapshot.SnapshotDbStorage;
+import ru.yandex.practicum.filmorate.storage.user.FriendGraph;
+
+import java.io.IOException;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.Optional;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+@Service
+@Profile("!in-memory")
+@Slf4j
+@RequiredArgsConstructor
+public class SnapshotService {
+    private final SnapshotDbStorage snapshotDbStorage;
+    private final FilmPopularityIndex filmPopularityIndex;
+    private final CoLikeIndex coLikeIndex;
+    private final FilmSearchIndex filmSearchIndex;
+    private final FriendGraph friendGraph;
+    private final EntityVersions entityVersions;
+    private final EntityCache entityCache;
+    private final EventLog eventLog;
+    private final Optional<LikeWriteBuffer> likeWriteBuffer;
+    private final WriteGate writeGate;
+    private final Lock restoreLock = new ReentrantLock(); // восстановления идут по очереди: промежуточные таблицы общие
+
+    public long export(WritableByteChannel channel) throws IOException {
+        log.debug("Method started (export)");
+        likeWriteBuffer.ifPresent(LikeWriteBuffer::flush); // лайки из буфера тоже попадают в снимок
+        return snapshotDbStorage.export(channel);
+    }
+
+    // Снимок сначала целиком читается и проверяется в промежуточных таблицах, пока сервис работает как обычно.
+    // Замена рабочих таблиц идёт при закрытых WriteGate: изменения в это время отклоняются, поэтому новые
+    // фильмы и пользователи не получают id, совпадающих с восстанавливаемыми
+    public long restore(ReadableByteChannel channel) throws IOException {
+        log.debug("Method started (restore)");
+        restoreLock.lock();
+        try {
+            long rows = snapshotDbStorage.stage(channel);
+            long stamp = writeGate.close();
+            try {
+                likeWriteBuffer.ifPresent(LikeWriteBuffer::flush);
+                // очередь событий сбрасывается до очистки таблиц, иначе старые события попадут в новую базу
+                eventLog.reset();
+                snapshotDbStorage.replaceWithStaged();
+                filmPopularityIndex.reload(); // индексы в памяти строятся заново по восстановленным таблицам
+                friendGraph.reload();
+                coLikeIndex.reload();
+                filmSearchIndex.reload();
+                entityCache.clear();
+                entityVersions.reset();
+                eventLog.reset(); // таблица event очищена: буферы лент и нумерация событий начинаются заново
+            } finally {
+                writeGate.open(stamp);
+            }
+            return rows;
+        } finally {
+            restoreLock.unlock();
+        }
+    }
+}
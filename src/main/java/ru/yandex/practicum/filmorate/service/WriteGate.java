@@ -0,0 +1,34 @@
+package ru.yandex.practicum.filmorate.service;
+
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.locks.StampedLock;
+
+// Пропускает изменяющие запросы, пока таблицы не заменяются снимком. Восстановление закрывает ворота: новые
+// изменения сразу отклоняются, а уже начатые восстановление дожидается. StampedLock, а не ReentrantReadWriteLock:
+// ответ пакетной загрузки пишется в другом потоке, и отпускать вход приходится не тому потоку, что его занял
+@Component
+@Profile("!in-memory")
+public class WriteGate {
+    private final StampedLock lock = new StampedLock();
+    private volatile boolean closed;
+
+    public long tryEnter() { // 0 - идёт восстановление, изменение нужно отклонить
+        return closed ? 0 : lock.tryReadLock();
+    }
+
+    public void leave(long stamp) {
+        lock.unlockRead(stamp);
+    }
+
+    long close() { // ждёт завершения начатых изменений
+        closed = true;
+        return lock.writeLock();
+    }
+
+    void open(long stamp) {
+        closed = false;
+        lock.unlockWrite(stamp);
+    }
+}
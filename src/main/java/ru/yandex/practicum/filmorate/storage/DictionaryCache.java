@@ -0,0 +1,62 @@
+package ru.yandex.practicum.filmorate.storage;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+import java.util.function.ToIntFunction;
+
+@Slf4j
+public class DictionaryCache<T> {
+    private final Supplier<List<T>> loader;
+    private final ToIntFunction<T> idExtractor;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private volatile Snapshot<T> snapshot = new Snapshot<>(new Object[0], List.of());
+
+    public DictionaryCache(Supplier<List<T>> loader, ToIntFunction<T> idExtractor) {
+        this.loader = loader;
+        this.idExtractor = idExtractor;
+    }
+
+    public void reload() { // новый снимок собирается целиком и подменяется одной записью в volatile-поле
+        List<T> values = loader.get().stream()
+                .sorted(Comparator.comparingInt(idExtractor))
+                .toList();
+        int maxId = values.isEmpty() ? 0 : idExtractor.applyAsInt(values.getLast());
+
+        Object[] byId = new Object[maxId + 1];
+        values.forEach(value -> byId[idExtractor.applyAsInt(value)] = value);
+
+        snapshot = new Snapshot<>(byId, values);
+        log.info("Dictionary loaded, size={}", values.size());
+    }
+
+    @SuppressWarnings("unchecked")
+    public T get(Integer id) {
+        Object[] byId = snapshot.byId();
+        if (id != null && id >= 0 && id < byId.length && byId[id] != null) {
+            hits.increment();
+            return (T) byId[id];
+        }
+        misses.increment();
+        return null;
+    }
+
+    public List<T> findAll() {
+        return snapshot.values();
+    }
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    private record Snapshot<T>(Object[] byId, List<T> values) {
+    }
+}
@@ -0,0 +1,123 @@
+package ru.yandex.practicum.filmorate.storage;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Weigher;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.util.unit.DataSize;
+import ru.yandex.practicum.filmorate.model.CompactFilm;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.User;
+
+import java.util.function.Function;
+
+// Кэш фильмов и пользователей по id. Объём ограничен приблизительным размером записей в байтах,
+// вытеснение - W-TinyLFU из Caffeine. Метрики: cache.gets, cache.evictions, cache.size, cache.weight.
+// Фильмы лежат в виде CompactFilm, каждый запрос получает свой экземпляр Film.
+@Component
+@Slf4j
+public class EntityCache implements MeterBinder {
+    // заголовки объектов, поля и массивы строк; наборы жанров, жанры и рейтинг - общие экземпляры
+    private static final int FILM_OVERHEAD = 120;
+    private static final int USER_OVERHEAD = 200;
+
+    private final GenreDbStorage genreDbStorage;
+    private final RatingDbStorage ratingDbStorage;
+    private final Cache<Long, CompactFilm> films;
+    private final Cache<Long, User> users;
+
+    public EntityCache(GenreDbStorage genreDbStorage,
+                       RatingDbStorage ratingDbStorage,
+                       @Value("${filmorate.cache.films.max-memory:32MB}") DataSize filmsMaxMemory,
+                       @Value("${filmorate.cache.users.max-memory:16MB}") DataSize usersMaxMemory) {
+        this.genreDbStorage = genreDbStorage;
+        this.ratingDbStorage = ratingDbStorage;
+        films = build(filmsMaxMemory, (id, film) -> FILM_OVERHEAD + 2 * (length(film.name()) +
+                length(film.description())));
+        users = build(usersMaxMemory, (id, user) -> USER_OVERHEAD + 2 * (length(user.getName()) +
+                length(user.getEmail()) + length(user.getLogin())));
+        log.info("Entity cache limits: films={}, users={}", filmsMaxMemory, usersMaxMemory);
+    }
+
+    public Film findFilm(Long id, Function<Long, Film> loader) {
+        return find(films, id, key -> CompactFilm.of(loader.apply(key)))
+                .toFilm(genreDbStorage::findById, ratingDbStorage::findById);
+    }
+
+    public User findUser(Long id, Function<Long, User> loader) {
+        return find(users, id, loader);
+    }
+
+    public boolean containsFilm(Long id) {
+        return films.getIfPresent(id) != null;
+    }
+
+    public boolean containsUser(Long id) {
+        return users.getIfPresent(id) != null;
+    }
+
+    public void evictFilm(Long id) {
+        evict(films, id);
+    }
+
+    public void evictUser(Long id) {
+        evict(users, id);
+    }
+
+    public void clear() {
+        log.debug("Method started (clear)");
+        films.invalidateAll();
+        users.invalidateAll();
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        bind(registry, films, "films");
+        bind(registry, users, "users");
+    }
+
+    private static <V> Cache<Long, V> build(DataSize maxMemory, Weigher<Long, V> weigher) {
+        return Caffeine.newBuilder()
+                .maximumWeight(maxMemory.toBytes())
+                .weigher(weigher)
+                .executor(Runnable::run) // обслуживание кэша в вызывающем потоке, без общего пула
+                .recordStats()
+                .build();
+    }
+
+    private static <V> V find(Cache<Long, V> cache, Long id, Function<Long, V> loader) {
+        if (TransactionSynchronizationManager.isActualTransactionActive()) {
+            // внутри транзакции читаем мимо кэша: запись может откатиться, а изменённая строка - быть ещё не в кэше
+            return loader.apply(id);
+        }
+        return cache.get(id, loader);
+    }
+
+    private static void evict(Cache<Long, ?> cache, Long id) {
+        cache.invalidate(id);
+        // и ещё раз после фиксации: до неё другой поток мог снова загрузить в кэш старую строку
+        EntityVersions.afterCommit(() -> cache.invalidate(id));
+    }
+
+    private static void bind(MeterRegistry registry, Cache<Long, ?> cache, String name) {
+        CaffeineCacheMetrics.monitor(registry, cache, name);
+        Gauge.builder("cache.weight", cache, c -> c.policy().eviction()
+                        .map(eviction -> eviction.weightedSize().orElse(0))
+                        .orElse(0L))
+                .tag("cache", name)
+                .baseUnit("bytes")
+                .description("Approximate size of cached entries")
+                .register(registry);
+    }
+
+    private static int length(String value) {
+        return value == null ? 0 : value.length();
+    }
+}
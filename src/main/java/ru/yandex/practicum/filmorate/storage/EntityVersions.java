@@ -0,0 +1,82 @@
+package ru.yandex.practicum.filmorate.storage;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Счётчики версий для ETag: чтение сравнивает If-None-Match с версией из памяти и не ходит в базу.
+// В теге есть эпоха запуска, поэтому теги, выданные до перезапуска или восстановления снимка, не совпадут.
+@Component
+@Slf4j
+public class EntityVersions {
+    private final AtomicLong sequence = new AtomicLong();
+    private final Map<Long, Long> films = new ConcurrentHashMap<>(); // удалённые остаются, чтобы старый тег не совпал
+    private final Map<Long, Long> users = new ConcurrentHashMap<>();
+    private final AtomicLong allFilms = new AtomicLong(); // любое изменение фильмов или лайков - для /films/popular
+    private volatile long epoch = System.currentTimeMillis();
+
+    public void filmChanged(Long filmId) {
+        afterCommit(() -> {
+            long version = sequence.incrementAndGet();
+            films.merge(filmId, version, Math::max);
+            allFilms.accumulateAndGet(version, Math::max);
+        });
+    }
+
+    public void filmsChanged() {
+        afterCommit(() -> allFilms.accumulateAndGet(sequence.incrementAndGet(), Math::max));
+    }
+
+    public void userChanged(Long userId) {
+        afterCommit(() -> users.merge(userId, sequence.incrementAndGet(), Math::max));
+    }
+
+    public void reset() { // после восстановления снимка все выданные теги устаревают
+        log.debug("Method started (reset)");
+        epoch = Math.max(System.currentTimeMillis(), epoch + 1);
+        films.clear();
+        users.clear();
+    }
+
+    public String filmTag(Long filmId) {
+        return tag("film-" + filmId, films.getOrDefault(filmId, 0L));
+    }
+
+    public String userTag(Long userId) {
+        return tag("user-" + userId, users.getOrDefault(userId, 0L));
+    }
+
+    public String popularTag(Long count, Integer genreId, Integer year) {
+        return tag("popular-" + Objects.toString(count, "default") + "-" + Objects.toString(genreId, "all") + "-" +
+                Objects.toString(year, "all"), allFilms.get());
+    }
+
+    public String dictionaryTag(String name) { // справочники меняются только миграциями, то есть с перезапуском
+        return tag(name, 0);
+    }
+
+    private String tag(String name, long version) {
+        return "\"" + name + "-" + epoch + "." + version + "\"";
+    }
+
+    // Версия растёт только после фиксации: иначе читатель успел бы получить новый тег вместе со старыми данными
+    // и дальше получал бы 304 на устаревшую копию. Так же после фиксации меняются кэш и индексы в памяти
+    public static void afterCommit(Runnable bump) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    bump.run();
+                }
+            });
+        } else {
+            bump.run();
+        }
+    }
+}
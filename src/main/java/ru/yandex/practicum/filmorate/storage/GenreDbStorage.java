@@ -1,17 +1,24 @@
 package ru.yandex.practicum.filmorate.storage;
 
+import jakarta.annotation.PostConstruct;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.dao.EmptyResultDataAccessException;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Repository;
 import ru.yandex.practicum.filmorate.exception.NotFoundException;
 import ru.yandex.practicum.filmorate.exception.ValidationException;
+import ru.yandex.practicum.filmorate.model.Film;
 import ru.yandex.practicum.filmorate.model.Genre;
 import ru.yandex.practicum.filmorate.storage.mappers.GenreRowMapper;
 
-import java.util.Comparator;
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.stream.Collectors;
 
 @Repository
 @RequiredArgsConstructor
@@ -19,62 +26,153 @@ import java.util.List;
 public class GenreDbStorage {
     private final JdbcTemplate jdbcTemplate;
     private final GenreRowMapper genreRowMapper;
+    private final DictionaryCache<Genre> genres = new DictionaryCache<>(this::loadGenres, Genre::getId);
 
-    public List<Genre> findAll() {
-        log.info("Method started (gettingListOfGenres)");
-        String sqlQuery = "SELECT * FROM genre";
-        List<Genre> genres = jdbcTemplate.query(sqlQuery, genreRowMapper);
+    @PostConstruct
+    public void reload() {
+        log.debug("Method started (reload)");
+        genres.reload();
+    }
 
-        return genres.stream()
-                .sorted(Comparator.comparing(Genre::getId))
-                .toList();
+    public List<Genre> findAll() {
+        log.debug("Method started (gettingListOfGenres)");
+        return genres.findAll();
     }
 
     public Genre findById(Integer id) {
-        log.info("Method started (gettingGenreById)");
-        String sqlQuery = "SELECT * FROM genre WHERE genre_id = ?";
-        try {
-            return jdbcTemplate.queryForObject(sqlQuery, genreRowMapper, id);
-        } catch (EmptyResultDataAccessException e) {
+        log.trace("Method started (gettingGenreById)"); // вызывается на каждую строку выборки фильмов
+        Genre genre = genres.get(id);
+        if (genre == null) {
             log.warn("No genre with id={}", id);
             throw new NotFoundException("Нет жанра с id=" + id);
         }
+        return genre;
+    }
+
+    public long getCacheHits() {
+        return genres.getHits();
+    }
+
+    public long getCacheMisses() {
+        return genres.getMisses();
     }
 
     public List<Genre> gettingFilmGenres(Long filmId) {
-        log.info("Method started (gettingFilmGenres)");
-        String sqlQuery = "SELECT g.genre_id, g.name\n" +
-                "FROM film_genre AS fg\n" +
-                "JOIN genre AS g ON fg.GENRE_ID = g.GENRE_ID\n" +
-                "WHERE fg.film_id = ?";
+        log.debug("Method started (gettingFilmGenres)");
+        String sqlQuery = "SELECT genre_id FROM film_genre WHERE film_id = ? ORDER BY genre_id";
 
-        List<Genre> genres = jdbcTemplate.query(sqlQuery, genreRowMapper, filmId);
+        return jdbcTemplate.queryForList(sqlQuery, Integer.class, filmId).stream()
+                .map(this::findById)
+                .toList();
+    }
 
-        return genres.stream()
-                .sorted(Comparator.comparing(Genre::getId))
+    public Map<Long, List<Genre>> gettingFilmsGenres(List<Long> filmIds) {
+        log.debug("Method started (gettingFilmsGenres)");
+        String sqlQuery = "SELECT film_id, genre_id\n" +
+                "FROM film_genre\n" +
+                "WHERE film_id = ANY(?)\n" +
+                "ORDER BY film_id, genre_id";
+
+        Map<Long, List<Genre>> filmsGenres = new HashMap<>();
+        if (filmIds.isEmpty()) {
+            return filmsGenres;
+        }
+
+        jdbcTemplate.query(sqlQuery, rs -> {
+            filmsGenres.computeIfAbsent(rs.getLong("film_id"), filmId -> new ArrayList<>())
+                    .add(findById(rs.getInt("genre_id")));
+        }, (Object) filmIds.toArray(new Long[0]));
+
+        return filmsGenres;
+    }
+
+    public List<Film> fillingFilmsGenres(List<Film> films) {
+        log.debug("Method started (fillingFilmsGenres)");
+        Map<Long, List<Genre>> filmsGenres = gettingFilmsGenres(films.stream()
+                .map(Film::getId)
+                .toList());
+
+        films.forEach(film -> film.setGenres(filmsGenres.getOrDefault(film.getId(), List.of())));
+        return films;
+    }
+
+    public void addingGenresToFilm(Long filmId, List<Genre> genres) {
+        log.debug("Method started (addingGenresToFilm)");
+        insertingFilmGenres(filmId, genreIds(genres));
+    }
+
+    public void addingGenresToFilms(List<Film> films) { // жанры всей пачки фильмов - одним batch-запросом
+        log.debug("Method started (addingGenresToFilms)");
+        String sqlQuery = "INSERT INTO film_genre (film_id, genre_id) VALUES (?, ?)";
+
+        List<Object[]> rows = films.stream()
+                .flatMap(film -> genreIds(film.getGenres()).stream()
+                        .map(genreId -> new Object[]{film.getId(), genreId}))
                 .toList();
+        if (!rows.isEmpty()) {
+            jdbcTemplate.batchUpdate(sqlQuery, rows);
+        }
+    }
+
+    public void updatingFilmGenres(Long filmId, List<Genre> genres) { // меняются только отличающиеся жанры
+        log.debug("Method started (updatingFilmGenres)");
+        String sqlQuery = "SELECT genre_id FROM film_genre WHERE film_id = ?";
+
+        Set<Integer> newGenres = genreIds(genres);
+        Set<Integer> oldGenres = new TreeSet<>(jdbcTemplate.queryForList(sqlQuery, Integer.class, filmId));
+
+        Set<Integer> removed = new TreeSet<>(oldGenres);
+        removed.removeAll(newGenres);
+        Set<Integer> added = new TreeSet<>(newGenres);
+        added.removeAll(oldGenres);
+
+        removingFilmGenres(filmId, removed);
+        insertingFilmGenres(filmId, added);
     }
 
-    public void addingGenresToFilm(Long filmId, Integer genreId) {
-        log.info("Method started (addingGenresToFilm)");
+    private void insertingFilmGenres(Long filmId, Set<Integer> genreIds) {
         String sqlQuery = "INSERT INTO film_genre (film_id, genre_id) VALUES (?, ?)";
+        if (genreIds.isEmpty()) {
+            return;
+        }
 
         try {
-            log.info("Genre added {}", genreId);
-            jdbcTemplate.update(sqlQuery, filmId, genreId);
+            jdbcTemplate.batchUpdate(sqlQuery, genreIds, genreIds.size(), (ps, genreId) -> {
+                ps.setLong(1, filmId);
+                ps.setInt(2, genreId);
+            });
+            log.info("Genres added {}", genreIds);
         } catch (RuntimeException e) {
             log.warn("The genre is not updated. Reason: {}", e.getMessage());
             throw new ValidationException("Произошла ошибка обновления жанра. Причина: " + e.getMessage());
         }
     }
 
-    public void removeFilmGenres(Long filmId) {
-        log.info("Method started (removeGenresToFilm)");
-        String sqlQuery = "DELETE FROM film_genre WHERE film_id = ?";
+    private void removingFilmGenres(Long filmId, Set<Integer> genreIds) {
+        String sqlQuery = "DELETE FROM film_genre WHERE film_id = ? AND genre_id = ?";
+        if (genreIds.isEmpty()) {
+            return;
+        }
 
-        log.info("Genres removed");
-        jdbcTemplate.update(sqlQuery, filmId);
+        jdbcTemplate.batchUpdate(sqlQuery, genreIds, genreIds.size(), (ps, genreId) -> {
+            ps.setLong(1, filmId);
+            ps.setInt(2, genreId);
+        });
+        log.info("Genres removed {}", genreIds);
     }
 
+    private Set<Integer> genreIds(List<Genre> genres) { // повторяющиеся жанры в запросе схлопываются
+        if (genres == null) {
+            return Set.of();
+        }
+        return genres.stream()
+                .map(Genre::getId)
+                .filter(Objects::nonNull)
+                .collect(Collectors.toCollection(TreeSet::new));
+    }
 
+    private List<Genre> loadGenres() {
+        String sqlQuery = "SELECT * FROM genre";
+        return jdbcTemplate.query(sqlQuery, genreRowMapper);
+    }
 }
@@ -1,15 +1,14 @@
 package ru.yandex.practicum.filmorate.storage;
 
+import jakarta.annotation.PostConstruct;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.dao.EmptyResultDataAccessException;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Repository;
 import ru.yandex.practicum.filmorate.exception.NotFoundException;
 import ru.yandex.practicum.filmorate.model.Rating;
 import ru.yandex.practicum.filmorate.storage.mappers.RatingRowMapper;
 
-import java.util.Comparator;
 import java.util.List;
 
 
@@ -19,25 +18,39 @@ import java.util.List;
 public class RatingDbStorage {
     private final JdbcTemplate jdbcTemplate;
     private final RatingRowMapper ratingRowMapper;
+    private final DictionaryCache<Rating> ratings = new DictionaryCache<>(this::loadRatings, Rating::getId);
 
-    public List<Rating> findAll() {
-        log.info("Method started (gettingListOfRatings)");
-        String sqlQuery = "SELECT * FROM rating";
-        List<Rating> ratings = jdbcTemplate.query(sqlQuery, ratingRowMapper);
+    @PostConstruct
+    public void reload() {
+        log.debug("Method started (reload)");
+        ratings.reload();
+    }
 
-        return ratings.stream()
-                .sorted(Comparator.comparing(Rating::getId))
-                .toList();
+    public List<Rating> findAll() {
+        log.debug("Method started (gettingListOfRatings)");
+        return ratings.findAll();
     }
 
     public Rating findById(Integer id) {
-        log.info("Method started (gettingRatingById)");
-        String sqlQuery = "SELECT * FROM rating WHERE rating_id = ?";
-        try {
-            return jdbcTemplate.queryForObject(sqlQuery, ratingRowMapper, id);
-        } catch (EmptyResultDataAccessException e) {
+        log.trace("Method started (gettingRatingById)"); // вызывается на каждую строку выборки фильмов
+        Rating rating = ratings.get(id);
+        if (rating == null) {
             log.warn("No rating with id={}", id);
             throw new NotFoundException("Нет рейтинга с id=" + id);
         }
+        return rating;
+    }
+
+    public long getCacheHits() {
+        return ratings.getHits();
+    }
+
+    public long getCacheMisses() {
+        return ratings.getMisses();
+    }
+
+    private List<Rating> loadRatings() {
+        String sqlQuery = "SELECT * FROM rating";
+        return jdbcTemplate.query(sqlQuery, ratingRowMapper);
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,47 @@
+package ru.yandex.practicum.filmorate.storage.event;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+import ru.yandex.practicum.filmorate.model.Event;
+import ru.yandex.practicum.filmorate.storage.mappers.EventRowMapper;
+
+import java.util.List;
+
+@Repository
+@Slf4j
+@RequiredArgsConstructor
+public class EventDbStorage {
+    private final JdbcTemplate jdbcTemplate;
+    private final EventRowMapper eventRowMapper;
+
+    public long findLastId() {
+        log.debug("Method started (findLastId)");
+        String sqlQuery = "SELECT COALESCE(MAX(event_id), 0) FROM event";
+
+        return jdbcTemplate.queryForObject(sqlQuery, Long.class);
+    }
+
+    public List<Event> findLast(Long userId, int limit) { // последние события пользователя, от новых к старым
+        log.debug("Method started (findLast)");
+        String sqlQuery = "SELECT * FROM event WHERE user_id = ? ORDER BY event_id DESC LIMIT ?";
+
+        return jdbcTemplate.query(sqlQuery, eventRowMapper, userId, limit);
+    }
+
+    public void createAll(List<Event> events) { // пачка из EventLog - один batch-запрос
+        log.debug("Method started (createAll)");
+        String sqlQuery = "INSERT INTO event (event_id, event_time, user_id, event_type, operation, entity_id) " +
+                "VALUES (?, ?, ?, ?, ?, ?)";
+
+        jdbcTemplate.batchUpdate(sqlQuery, events, events.size(), (ps, event) -> {
+            ps.setLong(1, event.eventId());
+            ps.setLong(2, event.timestamp());
+            ps.setLong(3, event.userId());
+            ps.setString(4, event.eventType().name());
+            ps.setString(5, event.operation().name());
+            ps.setLong(6, event.entityId());
+        });
+    }
+}
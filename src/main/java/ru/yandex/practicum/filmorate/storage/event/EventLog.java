@@ -0,0 +1,227 @@
+package ru.yandex.practicum.filmorate.storage.event;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.model.Event;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+// Лента действий пользователей. Событие получает id и сразу попадает в очередь на запись и в кольцевой буфер
+// последних событий пользователя, а в таблицу event очередь пишется пачками по расписанию, поэтому запись лайка
+// или дружбы не ждёт базу. Буфер пользователя заполняется из базы при первом чтении его ленты, буферы
+// редко читаемых пользователей вытесняются.
+@Component
+@Slf4j
+public class EventLog {
+    private final EventDbStorage eventDbStorage;
+    private final int feedSize;
+    private final int batchSize;
+    private final int capacity;
+    private final AtomicLong idSequence = new AtomicLong();
+    private final Queue<Event> pending = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger pendingSize = new AtomicInteger(); // размер ConcurrentLinkedQueue считается обходом
+    private final Lock flushLock = new ReentrantLock();
+    private final Cache<Long, Feed> feeds;
+
+    public EventLog(EventDbStorage eventDbStorage,
+                    @Value("${filmorate.feed.size:100}") int feedSize,
+                    @Value("${filmorate.feed.cached-users:100000}") long cachedUsers,
+                    @Value("${filmorate.feed.batch-size:1000}") int batchSize,
+                    @Value("${filmorate.feed.capacity:100000}") int capacity) {
+        this.eventDbStorage = eventDbStorage;
+        this.feedSize = feedSize;
+        this.batchSize = batchSize;
+        this.capacity = capacity;
+        this.feeds = Caffeine.newBuilder()
+                .maximumSize(cachedUsers)
+                .executor(Runnable::run) // обслуживание кэша в вызывающем потоке, без общего пула
+                .build();
+    }
+
+    @PostConstruct
+    public void init() {
+        idSequence.set(eventDbStorage.findLastId());
+        log.info("Event log started, last event id={}", idSequence.get());
+    }
+
+    public void record(Long userId, Event.EventType eventType, Event.Operation operation, Long entityId) {
+        log.debug("Method started (record)");
+        Event event = new Event(idSequence.incrementAndGet(), System.currentTimeMillis(), userId, eventType,
+                operation, entityId);
+        pending.add(event);
+        Feed feed = feeds.getIfPresent(userId);
+        if (feed != null) { // буфер ещё не загружен - событие он получит из очереди или из базы при загрузке
+            feed.add(event);
+        }
+        if (pendingSize.incrementAndGet() >= capacity) { // очередь переполнена - пишет сам вызывающий поток
+            log.debug("Event queue is full, flushing in caller thread");
+            flush();
+        }
+    }
+
+    public List<Event> findFeed(Long userId) { // последние feedSize событий, от старых к новым
+        log.debug("Method started (findFeed)");
+        Feed feed = feeds.get(userId, id -> new Feed(feedSize));
+        return feed.events(() -> load(userId));
+    }
+
+    @Scheduled(fixedDelayString = "${filmorate.feed.flush-interval-ms:200}")
+    public int flush() {
+        flushLock.lock(); // пока идёт сброс, буферы не загружаются: событие не должно пропасть между очередью и базой
+        try {
+            int flushed = 0;
+            List<Event> batch = new ArrayList<>(batchSize);
+            for (Event event = pending.poll(); event != null; event = pending.poll()) {
+                pendingSize.decrementAndGet();
+                batch.add(event);
+                if (batch.size() >= batchSize) {
+                    flushed += write(batch);
+                }
+            }
+            flushed += write(batch);
+            return flushed;
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    @PreDestroy
+    public void drain() {
+        log.info("Draining event queue, size={}", pendingSize.get());
+        flush();
+    }
+
+    public void clear() {
+        log.debug("Method started (clear)");
+        feeds.invalidateAll();
+    }
+
+    public void reset() { // после замены таблиц из снимка: старые события не пишутся, нумерация - по новой таблице
+        log.debug("Method started (reset)");
+        flushLock.lock();
+        try {
+            int dropped = 0;
+            while (pending.poll() != null) {
+                pendingSize.decrementAndGet();
+                dropped++;
+            }
+            feeds.invalidateAll();
+            idSequence.set(eventDbStorage.findLastId());
+            log.info("Event log reset, dropped {} pending events, last event id={}", dropped, idSequence.get());
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    private List<Event> load(Long userId) { // вызывается под блокировкой буфера пользователя
+        flushLock.lock();
+        try {
+            List<Event> events = new ArrayList<>(eventDbStorage.findLast(userId, feedSize));
+            pending.stream()
+                    .filter(event -> event.userId() == userId)
+                    .forEach(events::add);
+            return events;
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    private int write(List<Event> batch) {
+        if (batch.isEmpty()) {
+            return 0;
+        }
+        int size = batch.size();
+        try {
+            eventDbStorage.createAll(batch);
+        } catch (RuntimeException e) { // возвращаем события в очередь, id у них уже есть, порядок восстановит база
+            log.error("Failed to flush events, returning {} events to the queue", size, e);
+            pending.addAll(batch);
+            pendingSize.addAndGet(size);
+            throw e;
+        } finally {
+            batch.clear();
+        }
+        return size;
+    }
+
+    // Кольцевой буфер последних событий пользователя, упорядоченный по id. События одного пользователя из разных
+    // потоков могут прийти не по порядку id, тогда новое вставляется на своё место, а повтор пропускается.
+    private static class Feed {
+        private final Event[] events;
+        private final Lock lock = new ReentrantLock();
+        private int head; // позиция самого старого события
+        private int size;
+        private boolean loaded;
+
+        Feed(int capacity) {
+            this.events = new Event[capacity];
+        }
+
+        void add(Event event) {
+            lock.lock();
+            try {
+                insert(event);
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        List<Event> events(Supplier<List<Event>> loader) {
+            lock.lock();
+            try {
+                if (!loaded) {
+                    loader.get().forEach(this::insert);
+                    loaded = true;
+                }
+                Event[] result = new Event[size];
+                for (int i = 0; i < size; i++) {
+                    result[i] = at(i);
+                }
+                return List.of(result);
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        private void insert(Event event) {
+            int position = size;
+            while (position > 0 && at(position - 1).eventId() > event.eventId()) {
+                position--;
+            }
+            if (position > 0 && at(position - 1).eventId() == event.eventId()) {
+                return;
+            }
+            if (size == events.length) {
+                if (position == 0) {
+                    return; // старше всех событий полного буфера
+                }
+                head = (head + 1) % events.length; // вытесняем самое старое
+                size--;
+                position--;
+            }
+            for (int i = size; i > position; i--) {
+                events[(head + i) % events.length] = at(i - 1);
+            }
+            events[(head + position) % events.length] = event;
+            size++;
+        }
+
+        private Event at(int index) {
+            return events[(head + index) % events.length];
+        }
+    }
+}
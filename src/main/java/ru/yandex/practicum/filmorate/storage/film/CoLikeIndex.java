@@ -0,0 +1,470 @@
+package ru.yandex.practicum.filmorate.storage.film;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.env.Environment;
+import org.springframework.core.env.Profiles;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+// Индекс совместных лайков: для каждого фильма - сколько пользователей лайкнули его вместе с каждым другим фильмом.
+// Пользователь с числом лайков больше max-user-likes в пары не входит, иначе один такой пользователь добавлял бы
+// квадратичное число пар. Счётчики правятся на каждый лайк, а периодическая перестройка по таблице "like"
+// исправляет расхождения, например от откатившихся транзакций.
+@Component
+@Slf4j
+public class CoLikeIndex {
+    private static final long[] EMPTY = new long[0];
+    private static final int LEAF_SIZE = 256;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final Environment environment;
+    private final int maxUserLikes;
+    private final ForkJoinPool pool;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Lock rebuildLock = new ReentrantLock(); // перестройки идут по очереди и делят один журнал
+    // отсортированные id фильмов по пользователю и счётчики пар по фильму; всё меняется под write-блокировкой
+    private Map<Long, long[]> likes = new HashMap<>();
+    private Map<Long, CountMap> coLikes = new HashMap<>();
+    private List<Change> journal; // изменения, пришедшие во время перестройки; null - перестройки нет
+
+    public CoLikeIndex(JdbcTemplate jdbcTemplate,
+                       Environment environment,
+                       @Value("${filmorate.recommendations.max-user-likes:100}") int maxUserLikes,
+                       @Value("${filmorate.recommendations.rebuild-parallelism:0}") int parallelism) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.environment = environment;
+        this.maxUserLikes = maxUserLikes;
+        this.pool = new ForkJoinPool(parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors());
+    }
+
+    @PostConstruct
+    public void reload() {
+        log.debug("Method started (reload)");
+        String sqlQuery = "SELECT user_id, film_id FROM \"like\" ORDER BY user_id, film_id";
+
+        rebuildLock.lock();
+        try {
+            startJournal(); // журнал ведётся ещё до чтения, чтобы не потерять лайки, пришедшие во время перестройки
+            Map<Long, long[]> loaded = new HashMap<>();
+            long[] current = {0};
+            LongList filmIds = new LongList();
+            jdbcTemplate.query(sqlQuery, rs -> {
+                long userId = rs.getLong("user_id");
+                if (userId != current[0] && filmIds.size() > 0) {
+                    loaded.put(current[0], filmIds.drain());
+                }
+                current[0] = userId;
+                filmIds.add(rs.getLong("film_id"));
+            });
+            if (filmIds.size() > 0) {
+                loaded.put(current[0], filmIds.drain());
+            }
+            rebuild(loaded);
+        } finally {
+            locked(lock.writeLock(), () -> journal = null);
+            rebuildLock.unlock();
+        }
+    }
+
+    @Scheduled(initialDelayString = "${filmorate.recommendations.rebuild-interval-ms:3600000}",
+            fixedDelayString = "${filmorate.recommendations.rebuild-interval-ms:3600000}")
+    public void scheduledReload() {
+        if (environment.acceptsProfiles(Profiles.of("in-memory"))) {
+            return; // в этом профиле лайков в таблице нет, индекс ведёт InMemoryFilmStorage
+        }
+        reload();
+    }
+
+    // likesByUser - отсортированные id фильмов по пользователю; карта переходит во владение индекса
+    public void rebuild(Map<Long, long[]> likesByUser) {
+        log.debug("Method started (rebuild)");
+        rebuildLock.lock();
+        try {
+            startJournal();
+            Map<Long, CountMap> built = build(likesByUser);
+            locked(lock.writeLock(), () -> {
+                likes = likesByUser;
+                coLikes = built;
+                journal.forEach(change -> apply(change.userId(), change.filmId(), change.liked()));
+                log.info("Co-like index rebuilt, users={}, films={}, pairs={}, replayed={}", likes.size(),
+                        coLikes.size(), coLikes.values().stream().mapToLong(CountMap::size).sum(), journal.size());
+            });
+        } finally {
+            locked(lock.writeLock(), () -> journal = null);
+            rebuildLock.unlock();
+        }
+    }
+
+    public void add(Long filmId, Long userId) {
+        locked(lock.writeLock(), () -> change(userId, filmId, true));
+    }
+
+    public void remove(Long filmId, Long userId) {
+        locked(lock.writeLock(), () -> change(userId, filmId, false));
+    }
+
+    public void removeFilm(Long filmId, Collection<Long> userIds) { // userIds - все, кто лайкал фильм
+        locked(lock.writeLock(), () -> {
+            userIds.forEach(userId -> change(userId, filmId, false));
+            coLikes.remove(filmId);
+        });
+    }
+
+    public void removeUser(Long userId) {
+        locked(lock.writeLock(), () -> {
+            for (long filmId : likes.getOrDefault(userId, EMPTY)) {
+                change(userId, filmId, false);
+            }
+        });
+    }
+
+    public int countCoLikes(Long filmId, Long otherId) {
+        lock.readLock().lock();
+        try {
+            CountMap counts = coLikes.get(filmId);
+            return counts == null ? 0 : counts.get(otherId);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // фильмы, которые чаще всего лайкали вместе с фильмами пользователя, кроме уже лайкнутых им самим
+    public List<Long> recommend(Long userId, int count) {
+        lock.readLock().lock();
+        try {
+            long[] liked = likes.getOrDefault(userId, EMPTY);
+            CountMap scores = new CountMap();
+            for (long filmId : liked) {
+                CountMap counts = coLikes.get(filmId);
+                if (counts != null) {
+                    counts.forEach((otherId, value) -> {
+                        if (Arrays.binarySearch(liked, otherId) < 0) {
+                            scores.add(otherId, value);
+                        }
+                    });
+                }
+            }
+            return top(scores, count);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        pool.shutdownNow();
+    }
+
+    private void startJournal() {
+        locked(lock.writeLock(), () -> {
+            if (journal == null) {
+                journal = new ArrayList<>();
+            }
+        });
+    }
+
+    private void change(long userId, long filmId, boolean liked) { // вызывается под write-блокировкой
+        if (journal != null) {
+            journal.add(new Change(userId, filmId, liked));
+        }
+        apply(userId, filmId, liked);
+    }
+
+    private void apply(long userId, long filmId, boolean liked) { // повторное применение ничего не меняет
+        long[] before = likes.getOrDefault(userId, EMPTY);
+        int position = Arrays.binarySearch(before, filmId);
+        if (liked == position >= 0) {
+            return;
+        }
+        long[] after = liked ? insert(before, -position - 1, filmId) : delete(before, position);
+        if (after.length == 0) {
+            likes.remove(userId);
+        } else {
+            likes.put(userId, after);
+        }
+
+        int delta = liked ? 1 : -1;
+        if (before.length <= maxUserLikes && after.length <= maxUserLikes) {
+            long[] others = liked ? before : after;
+            for (long otherId : others) {
+                addPair(filmId, otherId, delta);
+                addPair(otherId, filmId, delta);
+            }
+        } else if (before.length <= maxUserLikes) { // пользователь перестал учитываться в парах
+            addPairs(before, -1);
+        } else if (after.length <= maxUserLikes) { // пользователь снова учитывается
+            addPairs(after, 1);
+        }
+    }
+
+    private void addPairs(long[] filmIds, int delta) {
+        for (int i = 0; i < filmIds.length; i++) {
+            for (int j = i + 1; j < filmIds.length; j++) {
+                addPair(filmIds[i], filmIds[j], delta);
+                addPair(filmIds[j], filmIds[i], delta);
+            }
+        }
+    }
+
+    private void addPair(long filmId, long otherId, int delta) {
+        CountMap counts = coLikes.computeIfAbsent(filmId, id -> new CountMap());
+        counts.add(otherId, delta);
+        if (counts.size() == 0) {
+            coLikes.remove(filmId);
+        }
+    }
+
+    private Map<Long, CountMap> build(Map<Long, long[]> likesByUser) {
+        // фильм -> списки лайков его поклонников; строка счётчиков каждого фильма считается независимо
+        Map<Long, List<long[]>> fans = new HashMap<>();
+        for (long[] filmIds : likesByUser.values()) {
+            if (filmIds.length > 1 && filmIds.length <= maxUserLikes) {
+                for (long filmId : filmIds) {
+                    fans.computeIfAbsent(filmId, id -> new ArrayList<>()).add(filmIds);
+                }
+            }
+        }
+        long[] filmIds = fans.keySet().stream()
+                .mapToLong(Long::longValue)
+                .toArray();
+        CountMap[] rows = new CountMap[filmIds.length];
+        pool.invoke(new BuildTask(filmIds, fans, rows, 0, filmIds.length));
+
+        Map<Long, CountMap> built = HashMap.newHashMap(filmIds.length);
+        for (int i = 0; i < filmIds.length; i++) {
+            built.put(filmIds[i], rows[i]);
+        }
+        return built;
+    }
+
+    private static List<Long> top(CountMap scores, int count) {
+        if (count <= 0) {
+            return List.of();
+        }
+        // куча из count лучших: больше совместных лайков, при равенстве - меньший id
+        PriorityQueue<long[]> best = new PriorityQueue<>(Math.max(1, Math.min(count, scores.size())),
+                (a, b) -> a[1] != b[1] ? Long.compare(a[1], b[1]) : Long.compare(b[0], a[0]));
+        scores.forEach((filmId, score) -> {
+            if (best.size() < count) {
+                best.add(new long[]{filmId, score});
+            } else if (score > best.peek()[1] || score == best.peek()[1] && filmId < best.peek()[0]) {
+                best.poll();
+                best.add(new long[]{filmId, score});
+            }
+        });
+        Long[] result = new Long[best.size()];
+        for (int i = result.length - 1; i >= 0; i--) {
+            result[i] = best.poll()[0];
+        }
+        return List.of(result);
+    }
+
+    private static long[] insert(long[] ids, int position, long value) {
+        long[] result = new long[ids.length + 1];
+        System.arraycopy(ids, 0, result, 0, position);
+        result[position] = value;
+        System.arraycopy(ids, position, result, position + 1, ids.length - position);
+        return result;
+    }
+
+    private static long[] delete(long[] ids, int position) {
+        long[] result = new long[ids.length - 1];
+        System.arraycopy(ids, 0, result, 0, position);
+        System.arraycopy(ids, position + 1, result, position, ids.length - position - 1);
+        return result;
+    }
+
+    private static void locked(Lock lock, Runnable action) {
+        lock.lock();
+        try {
+            action.run();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private record Change(long userId, long filmId, boolean liked) {
+    }
+
+    private static class BuildTask extends RecursiveAction {
+        private final long[] filmIds;
+        private final Map<Long, List<long[]>> fans;
+        private final CountMap[] rows;
+        private final int from;
+        private final int to;
+
+        BuildTask(long[] filmIds, Map<Long, List<long[]>> fans, CountMap[] rows, int from, int to) {
+            this.filmIds = filmIds;
+            this.fans = fans;
+            this.rows = rows;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > LEAF_SIZE) {
+                int middle = (from + to) >>> 1;
+                invokeAll(new BuildTask(filmIds, fans, rows, from, middle),
+                        new BuildTask(filmIds, fans, rows, middle, to));
+                return;
+            }
+            for (int i = from; i < to; i++) {
+                long filmId = filmIds[i];
+                CountMap counts = new CountMap();
+                for (long[] liked : fans.get(filmId)) {
+                    for (long otherId : liked) {
+                        if (otherId != filmId) {
+                            counts.add(otherId, 1);
+                        }
+                    }
+                }
+                rows[i] = counts;
+            }
+        }
+    }
+
+    // Открытая адресация с линейным пробированием: ключи и счётчики в двух массивах int, без объектов на запись,
+    // 8 байт на ячейку. Ключ 0 означает пустую ячейку - id фильмов начинаются с 1 и должны укладываться в int.
+    static class CountMap {
+        private int[] keys = new int[4];
+        private int[] values = new int[4];
+        private int size;
+
+        int size() {
+            return size;
+        }
+
+        int get(long key) {
+            if (key <= 0 || key > Integer.MAX_VALUE) {
+                return 0;
+            }
+            int mask = keys.length - 1;
+            for (int i = slot((int) key, mask); keys[i] != 0; i = (i + 1) & mask) {
+                if (keys[i] == key) {
+                    return values[i];
+                }
+            }
+            return 0;
+        }
+
+        void add(long filmId, int delta) { // счётчик, дошедший до нуля, удаляется
+            int key = Math.toIntExact(filmId);
+            int mask = keys.length - 1;
+            int i = slot(key, mask);
+            while (keys[i] != 0 && keys[i] != key) {
+                i = (i + 1) & mask;
+            }
+            if (keys[i] == 0) {
+                if (delta <= 0) {
+                    return;
+                }
+                keys[i] = key;
+                values[i] = delta;
+                if (++size * 4 > keys.length * 3) {
+                    resize();
+                }
+                return;
+            }
+            values[i] += delta;
+            if (values[i] <= 0) {
+                removeAt(i);
+            }
+        }
+
+        void forEach(Visitor visitor) {
+            for (int i = 0; i < keys.length; i++) {
+                if (keys[i] != 0) {
+                    visitor.visit(keys[i], values[i]);
+                }
+            }
+        }
+
+        private void removeAt(int hole) { // сдвигаем следующие ключи цепочки, чтобы поиск не оборвался на дыре
+            int mask = keys.length - 1;
+            size--;
+            int i = hole;
+            while (true) {
+                i = (i + 1) & mask;
+                if (keys[i] == 0) {
+                    break;
+                }
+                int home = slot(keys[i], mask);
+                if (((i - home) & mask) >= ((i - hole) & mask)) {
+                    keys[hole] = keys[i];
+                    values[hole] = values[i];
+                    hole = i;
+                }
+            }
+            keys[hole] = 0;
+            values[hole] = 0;
+        }
+
+        private void resize() {
+            int[] oldKeys = keys;
+            int[] oldValues = values;
+            keys = new int[oldKeys.length * 2];
+            values = new int[oldKeys.length * 2];
+            int mask = keys.length - 1;
+            for (int j = 0; j < oldKeys.length; j++) {
+                if (oldKeys[j] != 0) {
+                    int i = slot(oldKeys[j], mask);
+                    while (keys[i] != 0) {
+                        i = (i + 1) & mask;
+                    }
+                    keys[i] = oldKeys[j];
+                    values[i] = oldValues[j];
+                }
+            }
+        }
+
+        private static int slot(int key, int mask) {
+            int hash = key * 0x9E3779B9; // последовательные id иначе легли бы в соседние ячейки
+            return (hash ^ (hash >>> 16)) & mask;
+        }
+
+        interface Visitor {
+            void visit(long key, int value);
+        }
+    }
+
+    private static class LongList {
+        private long[] values = new long[4];
+        private int size;
+
+        void add(long value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = value;
+        }
+
+        int size() {
+            return size;
+        }
+
+        long[] drain() {
+            long[] result = Arrays.copyOf(values, size);
+            size = 0;
+            return result;
+        }
+    }
+}
@@ -3,65 +3,140 @@ package ru.yandex.practicum.filmorate.storage.film;
 import jakarta.transaction.Transactional;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.annotation.Profile;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.DuplicateKeyException;
 import org.springframework.dao.EmptyResultDataAccessException;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.jdbc.support.GeneratedKeyHolder;
 import org.springframework.stereotype.Repository;
 import ru.yandex.practicum.filmorate.exception.NotFoundException;
 import ru.yandex.practicum.filmorate.exception.ValidationException;
+import ru.yandex.practicum.filmorate.model.BulkResult;
+import ru.yandex.practicum.filmorate.model.Event;
 import ru.yandex.practicum.filmorate.model.Film;
-import ru.yandex.practicum.filmorate.model.Genre;
+import ru.yandex.practicum.filmorate.storage.EntityCache;
+import ru.yandex.practicum.filmorate.storage.EntityVersions;
 import ru.yandex.practicum.filmorate.storage.GenreDbStorage;
+import ru.yandex.practicum.filmorate.storage.event.EventLog;
 import ru.yandex.practicum.filmorate.storage.mappers.FilmRowMapper;
 import ru.yandex.practicum.filmorate.validation.Validator;
 
 import java.sql.Date;
 import java.sql.PreparedStatement;
+import java.sql.SQLException;
 import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
 @Repository
+@Profile("!in-memory")
 @Slf4j
 @RequiredArgsConstructor
 public class FilmDbStorage implements FilmStorage {
+    private static final int STREAM_FETCH_SIZE = 500;
+
     private final JdbcTemplate jdbcTemplate;
     private final Validator validator;
     private final FilmRowMapper filmRowMapper;
     private final GenreDbStorage genreDbStorage;
+    private final FilmPopularityIndex filmPopularityIndex;
+    private final CoLikeIndex coLikeIndex;
+    private final FilmSearchIndex filmSearchIndex;
+    private final EntityVersions entityVersions;
+    private final EntityCache entityCache;
+    private final EventLog eventLog;
 
     @Override
     public List<Film> findAll() {
-        log.info("Method started (findAll)");
+        log.debug("Method started (findAll)");
         String sqlQuery = "SELECT * FROM film";
 
-        return jdbcTemplate.query(sqlQuery, filmRowMapper);
+        return genreDbStorage.fillingFilmsGenres(jdbcTemplate.query(sqlQuery, filmRowMapper));
+    }
+
+    @Override
+    public List<Film> findPage(Long after, int limit) {
+        log.debug("Method started (findPage)");
+        String sqlQuery = "SELECT * FROM film WHERE film_id > ? ORDER BY film_id LIMIT ?";
+
+        return genreDbStorage.fillingFilmsGenres(jdbcTemplate.query(sqlQuery, filmRowMapper,
+                after == null ? 0 : after, limit));
+    }
+
+    @Override
+    public void forEach(Consumer<Film> action) { // фильмы читаются курсором и отдаются по одному
+        log.debug("Method started (forEach)");
+        String sqlQuery = "SELECT f.*, fg.genre_id\n" +
+                "FROM film AS f\n" +
+                "LEFT JOIN film_genre AS fg ON f.film_id = fg.film_id\n" +
+                "ORDER BY f.film_id, fg.genre_id";
+
+        Film[] current = new Film[1];
+        jdbcTemplate.query(connection -> {
+            PreparedStatement ps = connection.prepareStatement(sqlQuery);
+            ps.setFetchSize(STREAM_FETCH_SIZE);
+            return ps;
+        }, rs -> {
+            long filmId = rs.getLong("film_id");
+            if (current[0] == null || current[0].getId() != filmId) {
+                if (current[0] != null) {
+                    action.accept(current[0]);
+                }
+                current[0] = filmRowMapper.mapRow(rs, rs.getRow());
+                current[0].setGenres(new ArrayList<>());
+            }
+            int genreId = rs.getInt("genre_id");
+            if (!rs.wasNull()) {
+                current[0].getGenres().add(genreDbStorage.findById(genreId));
+            }
+        });
+        if (current[0] != null) {
+            action.accept(current[0]);
+        }
     }
 
     @Override
     public Film findById(Long id) {
-        log.info("Method started (findById)");
+        log.debug("Method started (findById)");
+        return entityCache.findFilm(id, this::loadById);
+    }
+
+    private Film loadById(Long id) {
         String sqlQuery = "SELECT * FROM film WHERE film_id = ?";
 
         try {
-            return jdbcTemplate.queryForObject(sqlQuery, filmRowMapper, id);
+            Film film = jdbcTemplate.queryForObject(sqlQuery, filmRowMapper, id);
+            film.setGenres(genreDbStorage.gettingFilmGenres(id));
+            return film;
         } catch (EmptyResultDataAccessException e) {
             log.warn("No film with id={}", id);
             throw new NotFoundException("Нет фильма с id=" + id);
         }
     }
 
+    @Transactional
     @Override
     public Film create(Film film) {
-        log.info("Method started (create)");
+        log.debug("Method started (create)");
         String sqlQuery = "INSERT INTO film (name, description, release_date, duration, rating_id) " +
                 "VALUES(?, ?, ?, ?, ?)";
 
-        if (!validator.checkForFilmInDatabase(film.getName())) {
-            validator.filmValidation(film);
-            validator.checkForRatingInDatabase(film.getMpa().getId());
-            validator.checkForGenreInDatabase(film.getGenres());
+        validator.filmValidation(film);
+        validator.checkForRatingInDatabase(film.getMpa().getId());
+        validator.checkForGenreInDatabase(film.getGenres());
 
-            GeneratedKeyHolder keyHolder = new GeneratedKeyHolder();
+        GeneratedKeyHolder keyHolder = new GeneratedKeyHolder();
+        try {
             jdbcTemplate.update(connection -> {
                 PreparedStatement ps = connection.prepareStatement(sqlQuery, Statement.RETURN_GENERATED_KEYS);
                 ps.setString(1, film.getName());
@@ -71,34 +146,119 @@ public class FilmDbStorage implements FilmStorage {
                 ps.setObject(5, film.getMpa().getId());
                 return ps;
             }, keyHolder);
-            Long filmId = keyHolder.getKeyAs(Long.class);
+        } catch (DuplicateKeyException e) { // фильм с таким названием уже есть - обновляем его
+            log.info("Film with name={} already exists", film.getName());
+            film.setId(findIdByName(film.getName()));
+            return update(film);
+        }
+        Long filmId = keyHolder.getKeyAs(Long.class);
+        entityVersions.filmChanged(filmId);
 
-            if (film.getGenres() != null) { // добавление в таблицу film_genre данных о жанрах добавляемого фильма
-                film.getGenres().stream()
-                        .map(Genre::getId)
-                        .forEach(genreId -> genreDbStorage.addingGenresToFilm(filmId, genreId));
+        genreDbStorage.addingGenresToFilm(filmId, film.getGenres()); // один batch-запрос в таблицу film_genre
+        film.setId(filmId);
+        EntityVersions.afterCommit(() -> { // откат транзакции не должен оставить фильм в индексах
+            filmPopularityIndex.put(film, 0);
+            filmSearchIndex.put(film);
+        });
+
+        log.info("Adding a film (name = {})", film.getName());
+        return findById(filmId);
+    }
+
+    @Transactional
+    @Override
+    public List<BulkResult> createAll(List<Film> films) { // одна транзакция и по одному batch-запросу на пачку
+        log.debug("Method started (createAll)");
+        String sqlQuery = "INSERT INTO film (name, description, release_date, duration, rating_id) " +
+                "VALUES(?, ?, ?, ?, ?)";
+        String sqlQueryNames = "SELECT name FROM film WHERE name = ANY(?)";
+
+        BulkResult[] results = new BulkResult[films.size()];
+        Set<String> names = new HashSet<>();
+        for (int i = 0; i < films.size(); i++) {
+            Film film = films.get(i);
+            try {
+                validator.filmValidation(film);
+                if (film.getMpa() == null) {
+                    throw new ValidationException("Не указан рейтинг фильма");
+                }
+                validator.checkForRatingInDatabase(film.getMpa().getId());
+                validator.checkForGenreInDatabase(film.getGenres());
+                if (!names.add(film.getName())) {
+                    throw new ValidationException("Фильм с названием " + film.getName() + " уже есть в загрузке");
+                }
+            } catch (ValidationException | NotFoundException e) {
+                results[i] = BulkResult.builder().error(e.getMessage()).build();
+            }
+        }
+
+        Set<String> existing = new HashSet<>(jdbcTemplate.queryForList(sqlQueryNames, String.class,
+                (Object) names.toArray(new String[0])));
+        List<Film> created = new ArrayList<>();
+        for (int i = 0; i < films.size(); i++) {
+            if (results[i] == null && existing.contains(films.get(i).getName())) {
+                results[i] = BulkResult.builder()
+                        .error("Фильм с названием " + films.get(i).getName() + " уже существует")
+                        .build();
+            } else if (results[i] == null) {
+                created.add(films.get(i));
             }
+        }
+        if (created.isEmpty()) {
+            return List.of(results);
+        }
 
-            log.info("Adding a film (name = {})", film.getName());
-            return findById(filmId);
-        } else {
-            Long filmId = findIdByName(film.getName());
-            film.setId(filmId);
-            return update(film);
+        GeneratedKeyHolder keyHolder = new GeneratedKeyHolder();
+        jdbcTemplate.batchUpdate(connection -> connection.prepareStatement(sqlQuery, new String[]{"film_id"}),
+                new BatchPreparedStatementSetter() {
+                    @Override
+                    public void setValues(PreparedStatement ps, int i) throws SQLException {
+                        Film film = created.get(i);
+                        ps.setString(1, film.getName());
+                        ps.setString(2, film.getDescription());
+                        ps.setDate(3, Date.valueOf(film.getReleaseDate()));
+                        ps.setLong(4, film.getDuration());
+                        ps.setObject(5, film.getMpa().getId());
+                    }
+
+                    @Override
+                    public int getBatchSize() {
+                        return created.size();
+                    }
+                }, keyHolder);
+        List<Map<String, Object>> keys = keyHolder.getKeyList();
+        for (int i = 0; i < created.size(); i++) {
+            created.get(i).setId(((Number) keys.get(i).get("FILM_ID")).longValue());
+        }
+        genreDbStorage.addingGenresToFilms(created);
+
+        EntityVersions.afterCommit(() -> { // индексы трогаем после фиксации всей пачки
+            created.forEach(film -> filmPopularityIndex.put(film, 0));
+            created.forEach(filmSearchIndex::put);
+        });
+        created.forEach(film -> entityVersions.filmChanged(film.getId()));
+        int next = 0;
+        for (int i = 0; i < films.size(); i++) {
+            if (results[i] == null) {
+                results[i] = BulkResult.builder().id(created.get(next++).getId()).build();
+            }
         }
+        log.info("Adding {} films in bulk", created.size());
+        return List.of(results);
     }
 
     @Transactional
     @Override
     public Film update(Film film) {
-        log.info("Method started (update)");
+        log.debug("Method started (update)");
         String sqlQuery = "UPDATE film SET name = ?, description = ?, release_date = ?, duration = ?, rating_id = ? " +
                 "WHERE film_id = ?";
 
         validator.filmValidation(film);
 
+        int updated;
         try {
-            jdbcTemplate.update(sqlQuery,
+            updated = jdbcTemplate.update(sqlQuery,
                     film.getName(),
                     film.getDescription(),
                     film.getReleaseDate(),
@@ -110,29 +270,174 @@ public class FilmDbStorage implements FilmStorage {
             throw new ValidationException("Произошла ошибка обновления фильма. Причина: " + e.getMessage());
         }
 
-        if (film.getGenres() == null) { // блок обновления жанров связанных с этим фильмом
-            genreDbStorage.removeFilmGenres(film.getId());
-        } else {
-            genreDbStorage.removeFilmGenres(film.getId());
-            film.getGenres().stream()
-                    .map(Genre::getId)
-                    .forEach(genreId -> genreDbStorage.addingGenresToFilm(film.getId(), genreId));
+        if (updated == 0) {
+            log.warn("No film with id={}", film.getId());
+            throw new NotFoundException("Нет фильма с id=" + film.getId());
         }
 
+        genreDbStorage.updatingFilmGenres(film.getId(), film.getGenres()); // блок обновления жанров этого фильма
+        EntityVersions.afterCommit(() -> {
+            filmPopularityIndex.reclassify(film);
+            filmSearchIndex.put(film);
+        });
+        entityCache.evictFilm(film.getId());
+        entityVersions.filmChanged(film.getId());
+
         log.info("The film has been updated (name = {})", film.getName());
         return findById(film.getId());
     }
 
+    @Transactional
     @Override
     public void delete(Long id) {
-        log.info("Method started (delete)");
+        log.debug("Method started (delete)");
         String sqlQuery = "DELETE FROM film WHERE film_id = ?";
+        String sqlQueryLikes = "SELECT user_id FROM \"like\" WHERE film_id = ?";
 
+        List<Long> fans = jdbcTemplate.queryForList(sqlQueryLikes, Long.class, id); // лайки удалятся каскадно
         jdbcTemplate.update(sqlQuery, id);
+        EntityVersions.afterCommit(() -> {
+            filmPopularityIndex.remove(id);
+            coLikeIndex.removeFilm(id, fans);
+            filmSearchIndex.remove(id);
+        });
+        entityCache.evictFilm(id);
+        entityVersions.filmChanged(id);
+    }
+
+    @Transactional
+    @Override
+    public boolean addLike(Long filmId, Long userId) {
+        log.debug("Method started (addLike)");
+        String sqlQuery = "INSERT INTO \"like\" (film_id, user_id)\n" +
+                "SELECT ?, ? WHERE NOT EXISTS (SELECT 1 FROM \"like\" WHERE film_id = ? AND user_id = ?)";
+        String sqlQueryCount = "UPDATE film SET like_count = like_count + 1 WHERE film_id = ?";
+
+        int inserted;
+        try {
+            inserted = jdbcTemplate.update(sqlQuery, filmId, userId, filmId, userId);
+        } catch (DuplicateKeyException e) { // тот же лайк параллельно вставил другой запрос
+            return false;
+        } catch (DataIntegrityViolationException e) { // нарушен внешний ключ: выясняем, кого нет
+            validator.checkForFilmInDatabase(filmId);
+            validator.checkForUserInDatabase(userId);
+            throw e;
+        }
+
+        if (inserted == 0) {
+            return false;
+        }
+        jdbcTemplate.update(sqlQueryCount, filmId);
+        EntityVersions.afterCommit(() -> {
+            filmPopularityIndex.addLikes(filmId, 1);
+            coLikeIndex.add(filmId, userId);
+        });
+        entityVersions.filmChanged(filmId);
+        return true;
+    }
+
+    @Transactional
+    @Override
+    public boolean removeLike(Long filmId, Long userId) {
+        log.debug("Method started (removeLike)");
+        String sqlQuery = "DELETE FROM \"like\" WHERE film_id = ? AND user_id = ?";
+        String sqlQueryCount = "UPDATE film SET like_count = like_count - 1 WHERE film_id = ?";
+
+        if (jdbcTemplate.update(sqlQuery, filmId, userId) == 0) { // лайка не было: проверяем фильм и пользователя
+            validator.checkForFilmInDatabase(filmId);
+            validator.checkForUserInDatabase(userId);
+            return false;
+        }
+        jdbcTemplate.update(sqlQueryCount, filmId);
+        EntityVersions.afterCommit(() -> {
+            filmPopularityIndex.addLikes(filmId, -1);
+            coLikeIndex.remove(filmId, userId);
+        });
+        entityVersions.filmChanged(filmId);
+        return true;
+    }
+
+    @Transactional
+    public void applyLikes(List<FilmLike> likes, List<FilmLike> unlikes) { // пачка из буфера отложенной записи
+        log.debug("Method started (applyLikes)");
+        String sqlQuery = "INSERT INTO \"like\" (film_id, user_id)\n" +
+                "SELECT ?, ? WHERE NOT EXISTS (SELECT 1 FROM \"like\" WHERE film_id = ? AND user_id = ?)\n" +
+                "AND EXISTS (SELECT 1 FROM film WHERE film_id = ?)\n" +
+                "AND EXISTS (SELECT 1 FROM \"user\" WHERE user_id = ?)";
+        String sqlQueryDelete = "DELETE FROM \"like\" WHERE film_id = ? AND user_id = ?";
+        String sqlQueryCount = "UPDATE film SET like_count = like_count + ? WHERE film_id = ?";
+
+        // фильм или пользователь могли быть удалены, пока лайк ждал в буфере - такие строки просто не вставятся
+        int[] inserted = jdbcTemplate.batchUpdate(sqlQuery, likes.stream()
+                .map(like -> new Object[]{like.filmId(), like.userId(), like.filmId(), like.userId(),
+                        like.filmId(), like.userId()})
+                .toList());
+        int[] deleted = jdbcTemplate.batchUpdate(sqlQueryDelete, unlikes.stream()
+                .map(like -> new Object[]{like.filmId(), like.userId()})
+                .toList());
+
+        // в ленту попадают только применённые лайки: повторы, снятие не поставленных и лайки удалённых фильмов
+        // или пользователей ничего не меняют в таблице
+        Map<Long, Long> deltas = new HashMap<>();
+        List<FilmLike> applied = new ArrayList<>();
+        List<FilmLike> removed = new ArrayList<>();
+        for (int i = 0; i < inserted.length; i++) {
+            if (inserted[i] > 0) {
+                FilmLike like = likes.get(i);
+                deltas.merge(like.filmId(), 1L, Long::sum);
+                applied.add(like);
+                eventLog.record(like.userId(), Event.EventType.LIKE, Event.Operation.ADD, like.filmId());
+            }
+        }
+        for (int i = 0; i < deleted.length; i++) {
+            if (deleted[i] > 0) {
+                FilmLike unlike = unlikes.get(i);
+                deltas.merge(unlike.filmId(), -1L, Long::sum);
+                removed.add(unlike);
+                eventLog.record(unlike.userId(), Event.EventType.LIKE, Event.Operation.REMOVE, unlike.filmId());
+            }
+        }
+        deltas.values().removeIf(delta -> delta == 0);
+
+        jdbcTemplate.batchUpdate(sqlQueryCount, deltas.entrySet().stream()
+                .map(delta -> new Object[]{delta.getValue(), delta.getKey()})
+                .toList());
+        EntityVersions.afterCommit(() -> {
+            applied.forEach(like -> coLikeIndex.add(like.filmId(), like.userId()));
+            removed.forEach(unlike -> coLikeIndex.remove(unlike.filmId(), unlike.userId()));
+            deltas.forEach(filmPopularityIndex::addLikes);
+        });
+        deltas.keySet().forEach(entityVersions::filmChanged);
+    }
+
+    @Override
+    public List<Film> findPopular(int count, Integer genreId, Integer year) {
+        log.debug("Method started (findPopular)");
+        // порядок задаёт индекс популярности
+        return findByIds(filmPopularityIndex.findTop(count, genreId, year));
+    }
+
+    @Override
+    public List<Film> findByIds(List<Long> ids) { // фильмы в порядке ids, удалённые пропускаются
+        log.debug("Method started (findByIds)");
+        String sqlQuery = "SELECT * FROM film WHERE film_id = ANY(?)";
+
+        if (ids.isEmpty()) {
+            return List.of();
+        }
+
+        Map<Long, Film> films = jdbcTemplate.query(sqlQuery, filmRowMapper, (Object) ids.toArray(new Long[0]))
+                .stream()
+                .collect(Collectors.toMap(Film::getId, Function.identity()));
+
+        return genreDbStorage.fillingFilmsGenres(ids.stream()
+                .map(films::get)
+                .filter(Objects::nonNull)
+                .toList());
     }
 
     public Long findIdByName(String name) {
-        log.info("Method started (findByName)");
+        log.debug("Method started (findByName)");
         String sqlQuery = "SELECT film_id FROM film WHERE name = ?";
 
         try {
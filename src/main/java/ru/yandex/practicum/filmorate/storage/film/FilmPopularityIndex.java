@@ -0,0 +1,221 @@
+package ru.yandex.practicum.filmorate.storage.film;
+
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.Genre;
+
+import java.sql.Date;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.Objects;
+import java.util.Queue;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+
+// Рейтинг фильмов по лайкам: общий и отдельные по жанру, по году выхода и по паре (жанр, год).
+// Фильм лежит во всех своих корзинах, лайк переставляет его в каждой, поэтому выборка с фильтром
+// стоит столько же, сколько и без него
+@Component
+@Slf4j
+@RequiredArgsConstructor
+public class FilmPopularityIndex {
+    private static final Comparator<Entry> BY_POPULARITY = Comparator.comparingLong(Entry::likes).reversed()
+            .thenComparingLong(Entry::filmId);
+    private static final Bucket ALL = new Bucket(null, null);
+
+    private final JdbcTemplate jdbcTemplate;
+    private final AtomicLong version = new AtomicLong(); // растёт при каждом изменении рейтингов
+    // изменения идут под read-блокировкой параллельно друг другу, write-блокировка нужна только для подмены рейтингов
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Lock reloadLock = new ReentrantLock(); // перезагрузки идут по очереди и делят один журнал
+    private volatile Rankings rankings = new Rankings();
+    // изменения, пришедшие во время перезагрузки, повторяются на новых рейтингах; null - перезагрузки нет
+    private volatile Queue<Consumer<Rankings>> journal;
+
+    @PostConstruct
+    public void reload() {
+        log.debug("Method started (reload)");
+        String sqlQuery = "SELECT film_id, like_count, release_date FROM film";
+        String sqlQueryGenres = "SELECT film_id, genre_id FROM film_genre";
+
+        reloadLock.lock();
+        try {
+            // журнал ведётся ещё до чтения; лайк, записанный между чтением и журналом, может учесться дважды -
+            // это исправит следующая перезагрузка
+            locked(lock.writeLock(), () -> journal = new ConcurrentLinkedQueue<>());
+            Map<Long, Set<Integer>> genres = new HashMap<>();
+            jdbcTemplate.query(sqlQueryGenres, rs -> {
+                genres.computeIfAbsent(rs.getLong("film_id"), id -> new TreeSet<>()).add(rs.getInt("genre_id"));
+            });
+            Rankings loaded = new Rankings(); // читатели до подмены видят прежние рейтинги целиком
+            jdbcTemplate.query(sqlQuery, rs -> {
+                long filmId = rs.getLong("film_id");
+                Date releaseDate = rs.getDate("release_date");
+                loaded.put(filmId, rs.getLong("like_count"), buckets(releaseDate == null ? null :
+                        releaseDate.toLocalDate().getYear(), genres.getOrDefault(filmId, Set.of())));
+            });
+            locked(lock.writeLock(), () -> {
+                journal.forEach(change -> change.accept(loaded));
+                rankings = loaded;
+                version.incrementAndGet();
+                log.info("Popularity index loaded, size={}, buckets={}, replayed={}", loaded.entries.size(),
+                        loaded.buckets.size(), journal.size());
+            });
+        } finally {
+            locked(lock.writeLock(), () -> journal = null);
+            reloadLock.unlock();
+        }
+    }
+
+    public void put(Film film, long likes) {
+        List<Bucket> buckets = buckets(film);
+        change(current -> current.put(film.getId(), likes, buckets));
+    }
+
+    public void reclassify(Film film) { // после изменения даты выхода или жанров; лайки остаются прежними
+        List<Bucket> buckets = buckets(film);
+        change(current -> current.entries.computeIfPresent(film.getId(), (id, old) ->
+                current.replace(old, new Ranked(old.entry(), buckets))));
+    }
+
+    public void addLikes(Long filmId, long delta) {
+        // удалённый фильм не должен вернуться в рейтинг из-за запоздавшего лайка
+        change(current -> current.entries.computeIfPresent(filmId, (id, old) ->
+                current.replace(old, new Ranked(new Entry(id, old.entry().likes() + delta), old.buckets()))));
+    }
+
+    public void remove(Long filmId) {
+        change(current -> current.entries.computeIfPresent(filmId, (id, old) -> current.replace(old, null)));
+    }
+
+    public boolean contains(Long filmId) {
+        return rankings.entries.containsKey(filmId);
+    }
+
+    public long likes(Long filmId) {
+        Ranked ranked = rankings.entries.get(filmId);
+        return ranked == null ? 0 : ranked.entry().likes();
+    }
+
+    public long version() { // по смене версии подписчики потока популярных фильмов узнают, что рейтинг мог измениться
+        return version.get();
+    }
+
+    public List<Long> findTop(int count) {
+        return findTop(count, null, null);
+    }
+
+    public List<Long> findTop(int count, Integer genreId, Integer year) { // null - без фильтра по признаку
+        Rankings current = rankings;
+        NavigableSet<Entry> ranking = current.buckets.getOrDefault(new Bucket(genreId, year),
+                Collections.emptyNavigableSet());
+        List<Long> filmIds = new ArrayList<>(Math.min(count, current.entries.size()));
+        Set<Long> seen = new HashSet<>(); // во время обновления фильм может на мгновение оказаться в двух позициях
+        for (Entry entry : ranking) {
+            if (filmIds.size() >= count) {
+                break;
+            }
+            if (seen.add(entry.filmId())) {
+                filmIds.add(entry.filmId());
+            }
+        }
+        return filmIds;
+    }
+
+    private void change(Consumer<Rankings> change) {
+        locked(lock.readLock(), () -> {
+            change.accept(rankings);
+            Queue<Consumer<Rankings>> changes = journal;
+            if (changes != null) {
+                changes.add(change);
+            }
+        });
+    }
+
+    private static void locked(Lock lock, Runnable action) {
+        lock.lock();
+        try {
+            action.run();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private static List<Bucket> buckets(Film film) {
+        Set<Integer> genreIds = film.getGenres() == null ? Set.of() : film.getGenres().stream()
+                .map(Genre::getId)
+                .filter(Objects::nonNull)
+                .collect(Collectors.toSet());
+        return buckets(film.getReleaseDate() == null ? null : film.getReleaseDate().getYear(), genreIds);
+    }
+
+    // без даты выхода фильм попадает только в общую корзину и корзины своих жанров
+    private static List<Bucket> buckets(Integer year, Collection<Integer> genreIds) {
+        List<Bucket> buckets = new ArrayList<>(2 + genreIds.size() * 2);
+        buckets.add(ALL);
+        if (year != null) {
+            buckets.add(new Bucket(null, year));
+        }
+        for (Integer genreId : genreIds) {
+            buckets.add(new Bucket(genreId, null));
+            if (year != null) {
+                buckets.add(new Bucket(genreId, year));
+            }
+        }
+        return buckets;
+    }
+
+    private record Entry(long filmId, long likes) {
+    }
+
+    private record Bucket(Integer genreId, Integer year) {
+    }
+
+    private record Ranked(Entry entry, List<Bucket> buckets) {
+    }
+
+    // Фильмы и корзины одного поколения: перезагрузка строит новые и подменяет ими прежние целиком
+    private class Rankings {
+        // пустые корзины не удаляются: их не больше, чем жанров, умноженных на годы
+        private final Map<Bucket, NavigableSet<Entry>> buckets = new ConcurrentHashMap<>();
+        private final Map<Long, Ranked> entries = new ConcurrentHashMap<>();
+
+        void put(Long filmId, long likes, List<Bucket> filmBuckets) {
+            entries.compute(filmId, (id, old) -> replace(old, new Ranked(new Entry(id, likes), filmBuckets)));
+        }
+
+        Ranked replace(Ranked old, Ranked current) { // вызывается под блокировкой ключа в ConcurrentHashMap.compute
+            if (old != null) {
+                old.buckets().forEach(bucket -> buckets.get(bucket).remove(old.entry()));
+            }
+            if (current != null) {
+                current.buckets().forEach(bucket -> buckets
+                        .computeIfAbsent(bucket, key -> new ConcurrentSkipListSet<>(BY_POPULARITY))
+                        .add(current.entry()));
+            }
+            version.incrementAndGet();
+            return current;
+        }
+    }
+}
@@ -0,0 +1,265 @@
+package ru.yandex.practicum.filmorate.storage.film;
+
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.model.Film;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.PriorityQueue;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Supplier;
+
+// Обратный индекс для поиска фильмов: слово названия или описания -> отсортированные id фильмов.
+// Каждое слово запроса ищется как префикс, найденные фильмы должны содержать все слова запроса
+// и сортируются по числу лайков из FilmPopularityIndex
+@Component
+@Slf4j
+@RequiredArgsConstructor
+public class FilmSearchIndex {
+    private static final long[] EMPTY = new long[0];
+
+    private final JdbcTemplate jdbcTemplate;
+    private final FilmPopularityIndex filmPopularityIndex;
+    // всё меняется под write-блокировкой, поиск идёт под read-блокировкой
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Map<Field, NavigableMap<String, Postings>> terms = new EnumMap<>(Map.of(
+            Field.TITLE, new TreeMap<>(),
+            Field.DESCRIPTION, new TreeMap<>()));
+    private final Map<Long, Document> documents = new HashMap<>();
+
+    public enum Field {
+        TITLE, DESCRIPTION
+    }
+
+    @PostConstruct
+    public void reload() {
+        log.debug("Method started (reload)");
+        String sqlQuery = "SELECT film_id, name, description FROM film ORDER BY film_id";
+
+        locked(lock.writeLock(), () -> {
+            documents.clear();
+            terms.values().forEach(Map::clear);
+            jdbcTemplate.query(sqlQuery, rs -> {
+                index(rs.getLong("film_id"), rs.getString("name"), rs.getString("description"));
+            });
+            log.info("Search index loaded, films={}, terms={}", documents.size(),
+                    terms.values().stream().mapToInt(Map::size).sum());
+            return null;
+        });
+    }
+
+    public void put(Film film) { // новый фильм или новые название и описание существующего
+        locked(lock.writeLock(), () -> {
+            unindex(film.getId());
+            index(film.getId(), film.getName(), film.getDescription());
+            return null;
+        });
+    }
+
+    public void remove(Long filmId) {
+        locked(lock.writeLock(), () -> {
+            unindex(filmId);
+            return null;
+        });
+    }
+
+    public List<Long> search(String query, Collection<Field> fields, int count) {
+        String[] words = tokenize(query);
+        // длинные слова совпадают с меньшим числом фильмов - с них пересечение сужается быстрее
+        Arrays.sort(words, Comparator.comparingInt(String::length).reversed());
+        long[] found = locked(lock.readLock(), () -> {
+            long[] result = null;
+            for (String word : words) {
+                long[] matches = matches(word, fields);
+                result = result == null ? matches : intersect(result, matches);
+                if (result.length == 0) {
+                    break;
+                }
+            }
+            return result == null ? EMPTY : result;
+        });
+        return top(found, count);
+    }
+
+    // слова - последовательности букв и цифр любого алфавита в нижнем регистре, ё приравнивается к е
+    static String[] tokenize(String text) {
+        if (text == null) {
+            return new String[0];
+        }
+        TreeSet<String> words = new TreeSet<>();
+        String normalized = text.toLowerCase(Locale.ROOT).replace('ё', 'е');
+        int start = -1;
+        for (int i = 0; i <= normalized.length(); i++) {
+            boolean letter = i < normalized.length() && Character.isLetterOrDigit(normalized.charAt(i));
+            if (letter && start < 0) {
+                start = i;
+            } else if (!letter && start >= 0) {
+                words.add(normalized.substring(start, i));
+                start = -1;
+            }
+        }
+        return words.toArray(new String[0]);
+    }
+
+    private void index(long filmId, String name, String description) { // вызывается под write-блокировкой
+        Document document = new Document(tokenize(name), tokenize(description));
+        documents.put(filmId, document);
+        for (Field field : Field.values()) {
+            for (String word : document.words(field)) {
+                terms.get(field).computeIfAbsent(word, key -> new Postings()).add(filmId);
+            }
+        }
+    }
+
+    private void unindex(long filmId) { // вызывается под write-блокировкой
+        Document document = documents.remove(filmId);
+        if (document == null) {
+            return;
+        }
+        for (Field field : Field.values()) {
+            for (String word : document.words(field)) {
+                Postings postings = terms.get(field).get(word);
+                postings.remove(filmId);
+                if (postings.size() == 0) {
+                    terms.get(field).remove(word);
+                }
+            }
+        }
+    }
+
+    private long[] matches(String prefix, Collection<Field> fields) { // отсортированные id без повторов
+        List<Postings> lists = new ArrayList<>();
+        for (Field field : fields) {
+            lists.addAll(terms.get(field).subMap(prefix, true, prefix + Character.MAX_VALUE, false).values());
+        }
+        if (lists.size() == 1) {
+            return lists.get(0).toArray();
+        }
+        long[] ids = new long[lists.stream().mapToInt(Postings::size).sum()];
+        int size = 0;
+        for (Postings postings : lists) {
+            size = postings.copyTo(ids, size);
+        }
+        Arrays.sort(ids);
+        int distinct = 0;
+        for (int i = 0; i < ids.length; i++) {
+            if (i == 0 || ids[i] != ids[i - 1]) {
+                ids[distinct++] = ids[i];
+            }
+        }
+        return Arrays.copyOf(ids, distinct);
+    }
+
+    private List<Long> top(long[] filmIds, int count) {
+        if (count <= 0 || filmIds.length == 0) {
+            return List.of();
+        }
+        // куча из count лучших: больше лайков, при равенстве - меньший id
+        Comparator<long[]> worstFirst = (a, b) -> a[1] != b[1] ? Long.compare(a[1], b[1]) : Long.compare(b[0], a[0]);
+        PriorityQueue<long[]> best = new PriorityQueue<>(Math.min(count, filmIds.length), worstFirst);
+        for (long filmId : filmIds) {
+            long[] candidate = {filmId, filmPopularityIndex.likes(filmId)};
+            if (best.size() < count) {
+                best.add(candidate);
+            } else if (worstFirst.compare(candidate, best.peek()) > 0) {
+                best.poll();
+                best.add(candidate);
+            }
+        }
+        Long[] result = new Long[best.size()];
+        for (int i = result.length - 1; i >= 0; i--) {
+            result[i] = best.poll()[0];
+        }
+        return List.of(result);
+    }
+
+    private static long[] intersect(long[] first, long[] second) {
+        long[] result = new long[Math.min(first.length, second.length)];
+        int size = 0;
+        for (int i = 0, j = 0; i < first.length && j < second.length; ) {
+            if (first[i] < second[j]) {
+                i++;
+            } else if (first[i] > second[j]) {
+                j++;
+            } else {
+                result[size++] = first[i];
+                i++;
+                j++;
+            }
+        }
+        return Arrays.copyOf(result, size);
+    }
+
+    private static <T> T locked(Lock lock, Supplier<T> action) {
+        lock.lock();
+        try {
+            return action.get();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private record Document(String[] title, String[] description) {
+        String[] words(Field field) {
+            return field == Field.TITLE ? title : description;
+        }
+    }
+
+    // Отсортированный массив id: новые фильмы получают возрастающие id, поэтому вставка почти всегда в конец
+    private static class Postings {
+        private long[] ids = new long[2];
+        private int size;
+
+        int size() {
+            return size;
+        }
+
+        void add(long filmId) {
+            int position = Arrays.binarySearch(ids, 0, size, filmId);
+            if (position >= 0) {
+                return;
+            }
+            position = -position - 1;
+            if (size == ids.length) {
+                ids = Arrays.copyOf(ids, size * 2);
+            }
+            System.arraycopy(ids, position, ids, position + 1, size - position);
+            ids[position] = filmId;
+            size++;
+        }
+
+        void remove(long filmId) {
+            int position = Arrays.binarySearch(ids, 0, size, filmId);
+            if (position < 0) {
+                return;
+            }
+            System.arraycopy(ids, position + 1, ids, position, size - position - 1);
+            size--;
+        }
+
+        long[] toArray() {
+            return Arrays.copyOf(ids, size);
+        }
+
+        int copyTo(long[] target, int offset) {
+            System.arraycopy(ids, 0, target, offset, size);
+            return offset + size;
+        }
+    }
+}
@@ -1,17 +1,33 @@
 package ru.yandex.practicum.filmorate.storage.film;
 
+import ru.yandex.practicum.filmorate.model.BulkResult;
 import ru.yandex.practicum.filmorate.model.Film;
 
 import java.util.List;
+import java.util.function.Consumer;
 
 public interface FilmStorage {
     Film create(Film film);
 
+    List<BulkResult> createAll(List<Film> films);
+
     Film update(Film film);
 
     void delete(Long id);
 
     List<Film> findAll();
 
+    List<Film> findPage(Long after, int limit);
+
+    void forEach(Consumer<Film> action);
+
     Film findById(Long id);
+
+    boolean addLike(Long filmId, Long userId);
+
+    boolean removeLike(Long filmId, Long userId);
+
+    List<Film> findPopular(int count, Integer genreId, Integer year);
+
+    List<Film> findByIds(List<Long> ids);
 }
@@ -1,117 +1,280 @@
 package ru.yandex.practicum.filmorate.storage.film;
 
-import lombok.Getter;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.annotation.Profile;
 import org.springframework.stereotype.Component;
 import ru.yandex.practicum.filmorate.exception.NotFoundException;
 import ru.yandex.practicum.filmorate.exception.ValidationException;
+import ru.yandex.practicum.filmorate.model.BulkResult;
+import ru.yandex.practicum.filmorate.model.CompactFilm;
 import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.Genre;
+import ru.yandex.practicum.filmorate.storage.EntityVersions;
+import ru.yandex.practicum.filmorate.storage.GenreDbStorage;
+import ru.yandex.practicum.filmorate.storage.RatingDbStorage;
+import ru.yandex.practicum.filmorate.storage.user.InMemoryUserStorage;
+import ru.yandex.practicum.filmorate.validation.Validator;
 
-import java.time.LocalDate;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
 
 @Component
+@Profile("in-memory")
 @Slf4j
-@Getter
+@RequiredArgsConstructor
 public class InMemoryFilmStorage implements FilmStorage {
-    private final Map<Long, Film> films = new HashMap<>();
+    private final Validator validator;
+    private final GenreDbStorage genreDbStorage;
+    private final RatingDbStorage ratingDbStorage;
+    private final InMemoryUserStorage userStorage;
+    private final FilmPopularityIndex filmPopularityIndex;
+    private final CoLikeIndex coLikeIndex;
+    private final FilmSearchIndex filmSearchIndex;
+    private final EntityVersions entityVersions;
+    // фильмы хранятся компактно и неизменяемыми, каждый вызов получает свой экземпляр Film
+    private final Map<Long, CompactFilm> films = new ConcurrentHashMap<>();
+    private final NavigableMap<Long, CompactFilm> filmsInOrder = new ConcurrentSkipListMap<>();
+    private final Map<String, Long> idsByName = new ConcurrentHashMap<>();
+    private final Map<Long, Set<Long>> likes = new ConcurrentHashMap<>();
+    private final Map<Long, Set<Long>> likedFilms = new ConcurrentHashMap<>();
+    private final AtomicLong idSequence = new AtomicLong();
+    // создание, изменение и удаление идут под write-блокировкой, лайки - под общей read-блокировкой
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    @PostConstruct
+    public void init() {
+        userStorage.addDeleteListener(this::removeUserLikes);
+    }
 
     @Override
     public List<Film> findAll() {
-        log.info("Method started (findAll)");
-        return new ArrayList<>(films.values());
+        log.debug("Method started (findAll)");
+        return filmsInOrder.values().stream()
+                .map(this::toFilm)
+                .collect(Collectors.toCollection(ArrayList::new));
+    }
+
+    @Override
+    public List<Film> findPage(Long after, int limit) {
+        log.debug("Method started (findPage)");
+        return filmsInOrder.tailMap(after == null ? 0 : after, false).values().stream()
+                .limit(limit)
+                .map(this::toFilm)
+                .toList();
+    }
+
+    @Override
+    public void forEach(Consumer<Film> action) {
+        log.debug("Method started (forEach)");
+        filmsInOrder.values().forEach(film -> action.accept(toFilm(film)));
     }
 
     @Override
     public Film findById(Long id) {
-        log.info("Method started (findById)");
-        if (!films.containsKey(id)) {
-            log.warn("No movie with id={}", id);
+        log.debug("Method started (findById)");
+        CompactFilm film = id == null ? null : films.get(id);
+        if (film == null) {
+            log.warn("No film with id={}", id);
             throw new NotFoundException("Нет фильма с id=" + id);
         }
-        log.info("Film received id={}", id);
-        return films.values().stream()
-                .filter(film -> Objects.equals(film.getId(), id))
-                .findFirst().get();
+        return toFilm(film);
     }
 
     @Override
     public Film create(Film film) {
-        log.info("Method started (create)");
-        validation(film);
-        film.setId(getNextId());
-        log.debug("Adding id (id={})", film.getId());
-        films.put(film.getId(), film);
-        log.info("Adding a movie id={}", film.getId());
-        return film;
+        log.debug("Method started (create)");
+        validator.filmValidation(film);
+        normalize(film);
+
+        return locked(lock.writeLock(), () -> {
+            Long existingId = idsByName.get(film.getName());
+            if (existingId != null) { // фильм с таким названием уже есть - обновляем его
+                log.info("Film with name={} already exists", film.getName());
+                film.setId(existingId);
+                return update(film);
+            }
+            film.setId(idSequence.incrementAndGet());
+            index(film);
+            filmPopularityIndex.put(film, 0);
+            filmSearchIndex.put(film);
+            entityVersions.filmChanged(film.getId());
+            log.info("Adding a film id={}", film.getId());
+            return film;
+        });
+    }
+
+    @Override
+    public List<BulkResult> createAll(List<Film> films) { // в памяти пакетная запись не нужна - создаём по одному
+        log.debug("Method started (createAll)");
+        return films.stream()
+                .map(film -> {
+                    try {
+                        return BulkResult.builder().id(create(film).getId()).build();
+                    } catch (ValidationException | NotFoundException e) {
+                        return BulkResult.builder().error(e.getMessage()).build();
+                    }
+                })
+                .toList();
     }
 
     @Override
     public Film update(Film film) {
-        log.info("Method started (update)");
+        log.debug("Method started (update)");
         if (film.getId() == null) {
             log.warn("Movie id not specified");
             throw new ValidationException("Не указан id фильма");
         }
-        if (films.containsKey(film.getId())) {
-            validation(film);
-            log.info("The film id={} has been updated", film.getId());
-            films.put(film.getId(), film);
+        validator.filmValidation(film);
+        normalize(film);
+
+        return locked(lock.writeLock(), () -> {
+            Film old = findById(film.getId());
+            Long nameOwner = idsByName.get(film.getName());
+            if (nameOwner != null && !nameOwner.equals(film.getId())) {
+                log.warn("Film with name={} already exists", film.getName());
+                throw new ValidationException("Произошла ошибка обновления фильма. Причина: фильм с названием " +
+                        film.getName() + " уже существует");
+            }
+            idsByName.remove(old.getName());
+            index(film);
+            filmPopularityIndex.reclassify(film);
+            filmSearchIndex.put(film);
+            entityVersions.filmChanged(film.getId());
+            log.info("The film has been updated (name = {})", film.getName());
             return film;
-        } else {
-            log.warn("There is no movie with id={}", film.getId());
-            throw new NotFoundException("Фильма с id=" + film.getId() + " нет");
-        }
+        });
     }
 
     @Override
     public void delete(Long id) {
-        log.info("Method started (delete)");
-        if (!films.containsKey(id)) {
-            log.warn("There is no movie with id={}", id);
-            throw new NotFoundException("Фильма с id=" + id + " нет");
-        }
-        log.info("The film id={} has been delete", id);
-        films.remove(id);
+        log.debug("Method started (delete)");
+        locked(lock.writeLock(), () -> {
+            Film film = findById(id);
+            films.remove(id);
+            filmsInOrder.remove(id);
+            idsByName.remove(film.getName());
+            Set<Long> fans = likes.getOrDefault(id, Set.of());
+            // пользователя могут удалять одновременно под блокировкой InMemoryUserStorage
+            fans.forEach(userId -> removeFrom(likedFilms, userId, id));
+            coLikeIndex.removeFilm(id, fans);
+            likes.remove(id);
+            filmPopularityIndex.remove(id);
+            filmSearchIndex.remove(id);
+            entityVersions.filmChanged(id);
+            log.info("The film id={} has been delete", id);
+            return null;
+        });
     }
 
-    private long getNextId() {
-        long maxId = films.keySet()
-                .stream()
-                .mapToLong(id -> id)
-                .max()
-                .orElse(0);
-        return ++maxId;
+    @Override
+    public boolean addLike(Long filmId, Long userId) {
+        log.debug("Method started (addLike)");
+        return locked(lock.readLock(), () -> {
+            findById(filmId);
+            return userStorage.whileExists(List.of(userId), () -> {
+                if (!likes.computeIfAbsent(filmId, id -> ConcurrentHashMap.newKeySet()).add(userId)) {
+                    return false;
+                }
+                likedFilms.computeIfAbsent(userId, id -> ConcurrentHashMap.newKeySet()).add(filmId);
+                filmPopularityIndex.addLikes(filmId, 1);
+                coLikeIndex.add(filmId, userId);
+                entityVersions.filmChanged(filmId);
+                return true;
+            });
+        });
     }
 
-    private void validation(Film film) {
-        if (film.getName() == null || film.getName().isBlank()) {
-            log.warn("The title of the film is not specified");
-            throw new ValidationException("Не указано название фильма");
-        }
-        if (film.getDescription() == null || film.getDescription().isBlank()) {
-            log.warn("No movie description provided");
-            throw new ValidationException("Не указано описание фильма");
-        }
-        if (film.getDescription().length() > 200) {
-            log.warn("The movie description contains more than 200 characters");
-            throw new ValidationException("Описание фильма превышает 200 символов");
-        }
-        if (film.getReleaseDate() == null) {
-            log.warn("The release date of the film is not specified");
-            throw new ValidationException("Не указана дата выхода фильма");
-        }
-        if (film.getReleaseDate().isBefore(LocalDate.of(1895, 12, 28))) {
-            log.warn("The release date of the film is incorrect");
-            throw new ValidationException("Дата выхода фильма неверная");
-        }
-        if (film.getDuration() == null) {
-            log.warn("The duration of the film is not specified");
-            throw new ValidationException("Не указана продолжительность фильма");
+    @Override
+    public boolean removeLike(Long filmId, Long userId) {
+        log.debug("Method started (removeLike)");
+        return locked(lock.readLock(), () -> {
+            findById(filmId);
+            return userStorage.whileExists(List.of(userId), () -> {
+                if (!removeFrom(likes, filmId, userId)) {
+                    return false;
+                }
+                removeFrom(likedFilms, userId, filmId);
+                filmPopularityIndex.addLikes(filmId, -1);
+                coLikeIndex.remove(filmId, userId);
+                entityVersions.filmChanged(filmId);
+                return true;
+            });
+        });
+    }
+
+    @Override
+    public List<Film> findPopular(int count, Integer genreId, Integer year) {
+        log.debug("Method started (findPopular)");
+        return findByIds(filmPopularityIndex.findTop(count, genreId, year));
+    }
+
+    @Override
+    public List<Film> findByIds(List<Long> ids) {
+        log.debug("Method started (findByIds)");
+        return ids.stream()
+                .map(films::get)
+                .filter(Objects::nonNull)
+                .map(this::toFilm)
+                .toList();
+    }
+
+    private void removeUserLikes(Long userId) { // вызывается из InMemoryUserStorage.delete под его write-блокировкой
+        Set<Long> filmIds = likedFilms.remove(userId);
+        if (filmIds == null) {
+            return;
         }
-        if (film.getDuration() < 0) {
-            log.warn("The length of a movie cannot be negative");
-            throw new ValidationException("Продолжительность фильма не может быть отрицательной");
+        coLikeIndex.removeUser(userId);
+        filmIds.forEach(filmId -> {
+            if (removeFrom(likes, filmId, userId)) {
+                filmPopularityIndex.addLikes(filmId, -1);
+                entityVersions.filmChanged(filmId);
+            }
+        });
+    }
+
+    private void normalize(Film film) { // рейтинг и жанры заменяются экземплярами из справочника
+        film.setMpa(ratingDbStorage.findById(film.getMpa().getId()));
+        film.setGenres(film.getGenres() == null ? List.of() : film.getGenres().stream()
+                .map(Genre::getId)
+                .distinct()
+                .sorted()
+                .map(genreDbStorage::findById)
+                .toList());
+    }
+
+    private void index(Film film) {
+        CompactFilm compact = CompactFilm.of(film);
+        films.put(film.getId(), compact);
+        filmsInOrder.put(film.getId(), compact);
+        idsByName.put(film.getName(), film.getId());
+    }
+
+    private Film toFilm(CompactFilm film) {
+        return film.toFilm(genreDbStorage::findById, ratingDbStorage::findById);
+    }
+
+    // набора может не быть: у фильма нет лайков или пользователя удаляют параллельно; Set.of() не поддерживает remove
+    private static boolean removeFrom(Map<Long, Set<Long>> sets, Long key, Long value) {
+        Set<Long> set = sets.get(key);
+        return set != null && set.remove(value);
+    }
+
+    private static <T> T locked(Lock lock, Supplier<T> action) {
+        lock.lock();
+        try {
+            return action.get();
+        } finally {
+            lock.unlock();
         }
     }
 }
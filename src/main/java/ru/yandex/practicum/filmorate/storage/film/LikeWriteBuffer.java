@@ -0,0 +1,150 @@
+package ru.yandex.practicum.filmorate.storage.film;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Profile;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.exception.NotFoundException;
+import ru.yandex.practicum.filmorate.validation.Validator;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+@Component
+@Profile("!in-memory")
+@ConditionalOnProperty(name = "filmorate.likes.write-behind.enabled", havingValue = "true")
+@Slf4j
+public class LikeWriteBuffer {
+    private static final int DRAIN_ATTEMPTS = 3;
+    private static final long DRAIN_RETRY_DELAY_MS = 500;
+
+    private final FilmDbStorage filmDbStorage;
+    private final FilmPopularityIndex filmPopularityIndex;
+    private final Validator validator;
+    private final int batchSize;
+    private final int capacity;
+    // на пару фильм-пользователь хранится только последняя операция: true - лайк, false - снятие лайка
+    private final Map<FilmLike, Boolean> pending = new ConcurrentHashMap<>();
+    private final Lock flushLock = new ReentrantLock();
+
+    public LikeWriteBuffer(FilmDbStorage filmDbStorage,
+                           FilmPopularityIndex filmPopularityIndex,
+                           Validator validator,
+                           @Value("${filmorate.likes.write-behind.batch-size:1000}") int batchSize,
+                           @Value("${filmorate.likes.write-behind.capacity:100000}") int capacity) {
+        this.filmDbStorage = filmDbStorage;
+        this.filmPopularityIndex = filmPopularityIndex;
+        this.validator = validator;
+        this.batchSize = batchSize;
+        this.capacity = capacity;
+    }
+
+    public void addLike(Long filmId, Long userId) {
+        log.debug("Method started (addLike)");
+        enqueue(filmId, userId, true);
+    }
+
+    public void removeLike(Long filmId, Long userId) {
+        log.debug("Method started (removeLike)");
+        enqueue(filmId, userId, false);
+    }
+
+    public int size() {
+        return pending.size();
+    }
+
+    @Scheduled(fixedDelayString = "${filmorate.likes.write-behind.flush-interval-ms:200}")
+    public int flush() {
+        return flush(true);
+    }
+
+    @PreDestroy
+    public void drain() { // при остановке: неудачная пачка не мешает записать остальные, её пробуют ещё раз
+        log.info("Draining like buffer, size={}", pending.size());
+        for (int attempt = 1; attempt <= DRAIN_ATTEMPTS && !pending.isEmpty(); attempt++) {
+            if (attempt > 1) {
+                log.warn("Like buffer drain attempt {} of {}, remaining={}", attempt, DRAIN_ATTEMPTS, pending.size());
+                try {
+                    Thread.sleep(DRAIN_RETRY_DELAY_MS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+            }
+            flush(false);
+        }
+        if (!pending.isEmpty()) {
+            log.error("Like buffer drain gave up, {} like operations dropped", pending.size());
+        }
+    }
+
+    private int flush(boolean stopOnError) {
+        flushLock.lock(); // сбросы идут по очереди, чтобы операции над одной парой не обогнали друг друга
+        try {
+            int flushed = 0;
+            List<FilmLike> likes = new ArrayList<>();
+            List<FilmLike> unlikes = new ArrayList<>();
+            // без остановки на ошибке обходим копию: возвращённые в буфер операции этим сбросом повторно не берутся
+            Collection<Map.Entry<FilmLike, Boolean>> entries = stopOnError ? pending.entrySet()
+                    : List.copyOf(pending.entrySet());
+            for (Map.Entry<FilmLike, Boolean> entry : entries) {
+                if (!pending.remove(entry.getKey(), entry.getValue())) {
+                    continue; // операцию только что заменили, новая уйдёт следующим сбросом
+                }
+                (entry.getValue() ? likes : unlikes).add(entry.getKey());
+                if (likes.size() + unlikes.size() >= batchSize) {
+                    flushed += write(likes, unlikes, stopOnError);
+                }
+            }
+            flushed += write(likes, unlikes, stopOnError);
+            return flushed;
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    private void enqueue(Long filmId, Long userId, boolean like) {
+        if (!filmPopularityIndex.contains(filmId)) { // индекс популярности знает все фильмы - без запроса в базу
+            log.warn("No film with id={}", filmId);
+            throw new NotFoundException("Нет фильма с id=" + filmId);
+        }
+        validator.checkForUserInDatabase(userId);
+
+        FilmLike key = new FilmLike(filmId, userId);
+        if (pending.size() >= capacity && !pending.containsKey(key)) { // буфер полон - пишет сам вызывающий поток
+            log.debug("Like buffer is full, flushing in caller thread");
+            flush();
+        }
+        pending.put(key, like);
+    }
+
+    private int write(List<FilmLike> likes, List<FilmLike> unlikes, boolean stopOnError) {
+        if (likes.isEmpty() && unlikes.isEmpty()) {
+            return 0;
+        }
+        int size = likes.size() + unlikes.size();
+        try {
+            filmDbStorage.applyLikes(likes, unlikes);
+        } catch (RuntimeException e) { // возвращаем операции в буфер, если их ещё не заменили более новые
+            log.error("Failed to flush likes, returning {} operations to the buffer", size, e);
+            likes.forEach(like -> pending.putIfAbsent(like, true));
+            unlikes.forEach(like -> pending.putIfAbsent(like, false));
+            if (stopOnError) {
+                throw e;
+            }
+            return 0;
+        } finally {
+            likes.clear();
+            unlikes.clear();
+        }
+        return size;
+    }
+}
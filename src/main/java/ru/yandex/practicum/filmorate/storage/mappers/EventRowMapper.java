@@ -0,0 +1,25 @@
+package ru.yandex.practicum.filmorate.storage.mappers;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.stereotype.Component;
+import ru.yandex.practicum.filmorate.model.Event;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+@Component
+@Slf4j
+public class EventRowMapper implements RowMapper<Event> {
+    @Override
+    public Event mapRow(ResultSet rs, int rowNum) throws SQLException {
+        log.trace("Method started (mapRow)"); // вызывается на каждую строку выборки
+        return new Event(
+                rs.getLong("event_id"),
+                rs.getLong("event_time"),
+                rs.getLong("user_id"),
+                Event.EventType.valueOf(rs.getString("event_type")),
+                Event.Operation.valueOf(rs.getString("operation")),
+                rs.getLong("entity_id"));
+    }
+}
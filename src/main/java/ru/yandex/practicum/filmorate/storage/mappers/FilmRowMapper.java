@@ -4,9 +4,7 @@ import lombok.extern.slf4j.Slf4j;
 import org.springframework.jdbc.core.RowMapper;
 import org.springframework.stereotype.Component;
 import ru.yandex.practicum.filmorate.model.Film;
-import ru.yandex.practicum.filmorate.model.Genre;
 import ru.yandex.practicum.filmorate.model.Rating;
-import ru.yandex.practicum.filmorate.storage.GenreDbStorage;
 import ru.yandex.practicum.filmorate.storage.RatingDbStorage;
 
 import java.sql.ResultSet;
@@ -16,19 +14,16 @@ import java.util.List;
 @Component
 @Slf4j
 public class FilmRowMapper implements RowMapper<Film> {
-    GenreDbStorage genreDbStorage;
     RatingDbStorage ratingDbStorage;
 
-    public FilmRowMapper(GenreDbStorage genreDbStorage, RatingDbStorage ratingDbStorage) {
-        this.genreDbStorage = genreDbStorage;
+    public FilmRowMapper(RatingDbStorage ratingDbStorage) {
         this.ratingDbStorage = ratingDbStorage;
     }
 
     @Override
     public Film mapRow(ResultSet rs, int rowNum) throws SQLException {
-        log.info("Method started (mapRow)");
+        log.trace("Method started (mapRow)"); // вызывается на каждую строку выборки
         Rating rating = ratingDbStorage.findById(rs.getInt("rating_id"));
-        List<Genre> genres = genreDbStorage.gettingFilmGenres(rs.getLong("film_id"));
 
         return Film.builder()
                 .id(rs.getLong("film_id"))
@@ -36,7 +31,7 @@ public class FilmRowMapper implements RowMapper<Film> {
                 .description(rs.getString("description"))
                 .releaseDate(rs.getDate("release_date").toLocalDate())
                 .duration(rs.getLong("duration"))
-                .genres(genres)
+                .genres(List.of()) // жанры заполняются одним запросом на всю выборку (GenreDbStorage.fillingFilmsGenres)
                 .mpa(rating)
                 .build();
     }
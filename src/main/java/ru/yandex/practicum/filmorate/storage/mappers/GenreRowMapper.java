@@ -14,7 +14,7 @@ public class GenreRowMapper implements RowMapper<Genre> {
 
     @Override
     public Genre mapRow(ResultSet rs, int rowNum) throws SQLException {
-        log.info("Method started (mapRow)");
+        log.trace("Method started (mapRow)"); // вызывается на каждую строку выборки
         return Genre.builder()
                 .id(rs.getInt("genre_id"))
                 .name(rs.getString("name"))
@@ -14,7 +14,7 @@ public class RatingRowMapper implements RowMapper<Rating> {
 
     @Override
     public Rating mapRow(ResultSet rs, int rowNum) throws SQLException {
-        log.info("Method started (mapRow)");
+        log.trace("Method started (mapRow)"); // вызывается на каждую строку выборки
         return Rating.builder()
                 .id(rs.getInt("rating_id"))
                 .name(rs.getString("name"))
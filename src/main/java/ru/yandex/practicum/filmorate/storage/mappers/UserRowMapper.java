@@ -13,7 +13,7 @@ import java.sql.SQLException;
 public class UserRowMapper implements RowMapper<User> {
     @Override
     public User mapRow(ResultSet rs, int rowNum) throws SQLException {
-        log.info("Method started (mapRow)");
+        log.trace("Method started (mapRow)"); // вызывается на каждую строку выборки
         return User.builder()
                 .id(rs.getLong("user_id"))
                 .name(rs.getString("name"))
@@ -0,0 +1,246 @@
+package ru.yandex.practicum.filmorate.storage.snapshot;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.annotation.Profile;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Isolation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.yandex.practicum.filmorate.exception.ValidationException;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.BufferUnderflowException;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.DateTimeException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Function;
+
+@Repository
+@Profile("!in-memory")
+@Slf4j
+@RequiredArgsConstructor
+public class SnapshotDbStorage {
+    // порядок таблиц в снимке совпадает с порядком восстановления: сначала те, на кого ссылаются
+    static final byte USER = 1;
+    static final byte FRIEND_STATUS = 2;
+    static final byte FILM = 3;
+    static final byte FILM_GENRE = 4;
+    static final byte LIKE = 5;
+    private static final int FETCH_SIZE = 1000;
+    private static final int COPY_RANGE = 10_000; // значений первой колонки ключа на один запрос копирования
+    // в порядке номеров таблиц снимка
+    private static final List<Table> TABLES = List.of(
+            new Table("\"user\"", "snapshot_user", "user_id", "user_id, name, email, login, birthday", true),
+            new Table("friend_status", "snapshot_friend_status", "user_id", "user_id, friend_id", false),
+            new Table("film", "snapshot_film", "film_id",
+                    "film_id, name, description, release_date, duration, rating_id, like_count", true),
+            new Table("film_genre", "snapshot_film_genre", "film_id", "film_id, genre_id", false),
+            new Table("\"like\"", "snapshot_like", "film_id", "film_id, user_id", false));
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+
+    // один снимок MVCC на все таблицы, чтобы лайки и дружбы не ссылались на удалённые за время выгрузки строки
+    @Transactional(readOnly = true, isolation = Isolation.REPEATABLE_READ)
+    public long export(WritableByteChannel channel) throws IOException {
+        log.debug("Method started (export)");
+        SnapshotWriter writer = new SnapshotWriter(channel);
+        long[] rows = new long[1];
+        query("SELECT user_id, name, email, login, birthday FROM \"user\" ORDER BY user_id", rs -> {
+            writer.beginRow(USER);
+            writer.writeKey(rs.getLong("user_id"));
+            writer.writeString(rs.getString("name"));
+            writer.writeString(rs.getString("email"));
+            writer.writeString(rs.getString("login"));
+            writer.writeLong(rs.getDate("birthday").toLocalDate().toEpochDay());
+        }, rows);
+        query("SELECT user_id, friend_id FROM friend_status ORDER BY user_id, friend_id", rs -> {
+            writer.beginRow(FRIEND_STATUS);
+            writer.writeKey(rs.getLong("user_id"));
+            writer.writeLong(rs.getLong("friend_id"));
+        }, rows);
+        query("SELECT film_id, name, description, release_date, duration, rating_id, like_count FROM film " +
+                "ORDER BY film_id", rs -> {
+            writer.beginRow(FILM);
+            writer.writeKey(rs.getLong("film_id"));
+            writer.writeString(rs.getString("name"));
+            writer.writeNullableString(rs.getString("description"));
+            Date releaseDate = rs.getDate("release_date");
+            writer.writeNullableLong(releaseDate == null ? null : releaseDate.toLocalDate().toEpochDay());
+            writer.writeLong(rs.getLong("duration"));
+            writer.writeNullableLong(rs.getObject("rating_id", Long.class));
+            writer.writeLong(rs.getLong("like_count"));
+        }, rows);
+        query("SELECT film_id, genre_id FROM film_genre ORDER BY film_id, genre_id", rs -> {
+            writer.beginRow(FILM_GENRE);
+            writer.writeKey(rs.getLong("film_id"));
+            writer.writeLong(rs.getInt("genre_id"));
+        }, rows);
+        query("SELECT film_id, user_id FROM \"like\" ORDER BY film_id, user_id", rs -> {
+            writer.beginRow(LIKE);
+            writer.writeKey(rs.getLong("film_id"));
+            writer.writeLong(rs.getLong("user_id"));
+        }, rows);
+        writer.finish();
+        log.info("Snapshot exported, rows={}", rows[0]);
+        return rows[0];
+    }
+
+    public long restore(ReadableByteChannel channel) throws IOException {
+        long rows = stage(channel);
+        replaceWithStaged();
+        return rows;
+    }
+
+    // Снимок целиком читается в промежуточные таблицы snapshot_* с теми же ограничениями, что и у рабочих.
+    // Обрыв файла, повреждённый блок или несогласованные строки обнаруживаются здесь, пока рабочие таблицы
+    // не тронуты. Транзакция - на блок: журнал отката на миллионы строк не помещается в память.
+    public long stage(ReadableByteChannel channel) throws IOException {
+        log.debug("Method started (stage)");
+        SnapshotReader reader = new SnapshotReader(channel);
+        truncate(Table::staging);
+
+        long rows = 0;
+        boolean staged = false;
+        List<Object[]> batch = new ArrayList<>();
+        try {
+            while (reader.nextBlock()) {
+                byte table = reader.table();
+                for (int i = 0; i < reader.rows(); i++) {
+                    batch.add(readRow(reader, table));
+                }
+                reader.endBlock();
+                transactionTemplate.executeWithoutResult(status -> jdbcTemplate.batchUpdate(insertQuery(table),
+                        batch));
+                rows += batch.size();
+                batch.clear();
+            }
+            staged = true;
+        } catch (BufferUnderflowException e) {
+            throw new ValidationException("Снимок повреждён: строка выходит за границы блока");
+        } catch (DateTimeException e) {
+            throw new ValidationException("Снимок повреждён: " + e.getMessage());
+        } catch (DataIntegrityViolationException e) { // повтор ключа, ссылка на отсутствующую строку, длина
+            throw new ValidationException("Снимок не согласован: " + e.getMostSpecificCause().getMessage());
+        } finally {
+            if (!staged) { // отвергнутый снимок не держит место до следующего восстановления
+                truncate(Table::staging);
+            }
+        }
+        log.info("Snapshot staged, rows={}", rows);
+        return rows;
+    }
+
+    // Рабочие таблицы очищаются и заполняются из промежуточных, уже проверенных. TRUNCATE и ALTER TABLE в H2
+    // всё равно фиксируют транзакцию, поэтому строки копируются запросом на диапазон ключей; если копирование
+    // прервалось, строки остаются в промежуточных таблицах, а восстановление повторяют с тем же файлом.
+    // Вызывающий отвечает за то, чтобы в это время никто больше не писал в таблицы.
+    public void replaceWithStaged() {
+        log.debug("Method started (replaceWithStaged)");
+        jdbcTemplate.execute("TRUNCATE TABLE event"); // лента в снимок не входит и относится к заменяемым строкам
+        truncate(Table::name);
+        long rows = 0;
+        for (Table table : TABLES) {
+            rows += copy(table);
+        }
+        truncate(Table::staging);
+
+        // идентификаторы из снимка вставлены явно, поэтому счётчики IDENTITY переставляются за максимальный id
+        restartIdentity("\"user\"", "user_id");
+        restartIdentity("film", "film_id");
+        log.info("Snapshot restored, rows={}", rows);
+    }
+
+    private long copy(Table table) { // диапазоны идут от ключа к ключу, поэтому пропуски в id не дают пустых запросов
+        String sqlQuery = "INSERT INTO " + table.name() + " (" + table.columns() + ") SELECT " + table.columns() +
+                " FROM " + table.staging() + " WHERE " + table.key() + " BETWEEN ? AND ?";
+        String sqlQueryNext = "SELECT MIN(" + table.key() + ") FROM " + table.staging() + " WHERE " + table.key() +
+                " >= ?";
+
+        long rows = 0;
+        Long from = jdbcTemplate.queryForObject(sqlQueryNext, Long.class, Long.MIN_VALUE);
+        while (from != null) {
+            long to = from + COPY_RANGE - 1;
+            rows += jdbcTemplate.update(sqlQuery, from, to);
+            from = jdbcTemplate.queryForObject(sqlQueryNext, Long.class, to + 1);
+        }
+        return rows;
+    }
+
+    private void truncate(Function<Table, String> names) { // от ссылающихся таблиц к тем, на кого ссылаются
+        for (Table table : TABLES.reversed()) {
+            String name = names.apply(table);
+            if (table.referenced()) {
+                jdbcTemplate.execute("ALTER TABLE " + name + " SET REFERENTIAL_INTEGRITY FALSE");
+                jdbcTemplate.execute("TRUNCATE TABLE " + name);
+                jdbcTemplate.execute("ALTER TABLE " + name + " SET REFERENTIAL_INTEGRITY TRUE");
+            } else {
+                jdbcTemplate.execute("TRUNCATE TABLE " + name);
+            }
+        }
+    }
+
+    private void restartIdentity(String table, String column) {
+        Long max = jdbcTemplate.queryForObject("SELECT COALESCE(MAX(" + column + "), 0) FROM " + table, Long.class);
+        jdbcTemplate.execute("ALTER TABLE " + table + " ALTER COLUMN " + column + " RESTART WITH " + (max + 1));
+    }
+
+    private Object[] readRow(SnapshotReader reader, byte table) {
+        return switch (table) {
+            case USER -> new Object[]{reader.readKey(), reader.readString(), reader.readString(), reader.readString(),
+                    Date.valueOf(LocalDate.ofEpochDay(reader.readLong()))};
+            case FRIEND_STATUS, FILM_GENRE, LIKE -> new Object[]{reader.readKey(), reader.readLong()};
+            case FILM -> {
+                Object[] row = {reader.readKey(), reader.readString(), reader.readNullableString(),
+                        reader.readNullableLong(), reader.readLong(), reader.readNullableLong(), reader.readLong()};
+                row[3] = row[3] == null ? null : Date.valueOf(LocalDate.ofEpochDay((Long) row[3]));
+                yield row;
+            }
+            default -> throw new ValidationException("Снимок повреждён: неизвестная таблица " + table);
+        };
+    }
+
+    private static String insertQuery(byte table) {
+        if (table < USER || table > LIKE) {
+            throw new ValidationException("Снимок повреждён: неизвестная таблица " + table);
+        }
+        Table target = TABLES.get(table - USER);
+        return "INSERT INTO " + target.staging() + " (" + target.columns() + ") VALUES (" +
+                "?, ".repeat(target.columns().split(",").length - 1) + "?)";
+    }
+
+    private void query(String sqlQuery, SnapshotRow row, long[] rows) { // строки читаются курсором
+        jdbcTemplate.query(connection -> {
+            PreparedStatement ps = connection.prepareStatement(sqlQuery);
+            ps.setFetchSize(FETCH_SIZE);
+            return ps;
+        }, (RowCallbackHandler) rs -> {
+            try {
+                row.write(rs);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            rows[0]++;
+        });
+    }
+
+    // рабочая таблица, её промежуточная копия, первая колонка ключа и колонки в порядке строки снимка
+    private record Table(String name, String staging, String key, String columns, boolean referenced) {
+    }
+
+    private interface SnapshotRow {
+        void write(ResultSet rs) throws SQLException, IOException;
+    }
+}
@@ -0,0 +1,108 @@
+package ru.yandex.practicum.filmorate.storage.snapshot;
+
+import ru.yandex.practicum.filmorate.exception.ValidationException;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+// Читает формат SnapshotWriter по одному блоку: в памяти не больше одного блока
+class SnapshotReader {
+    private final ReadableByteChannel channel;
+    private final ByteBuffer header = ByteBuffer.allocate(SnapshotWriter.BLOCK_HEADER_SIZE);
+    private final ByteBuffer block = ByteBuffer.allocateDirect(SnapshotWriter.BLOCK_SIZE * 2);
+    private byte[] chars = new byte[256];
+    private long previousKey;
+
+    SnapshotReader(ReadableByteChannel channel) throws IOException {
+        this.channel = channel;
+        ByteBuffer magic = ByteBuffer.allocate(SnapshotWriter.MAGIC.length);
+        readFully(magic);
+        if (!Arrays.equals(magic.array(), SnapshotWriter.MAGIC)) {
+            throw new ValidationException("Файл не является снимком filmorate или его версия не поддерживается");
+        }
+    }
+
+    byte table() {
+        return header.get(0);
+    }
+
+    int rows() {
+        return header.getInt(1);
+    }
+
+    boolean nextBlock() throws IOException { // false - дошли до завершающего пустого блока
+        header.clear();
+        readFully(header);
+        int length = header.getInt(5);
+        if (rows() == 0) {
+            return false;
+        }
+        if (rows() < 0 || length < 0 || length > block.capacity()) {
+            throw new ValidationException("Снимок повреждён: блок длиной " + length + " байт");
+        }
+        block.clear().limit(length);
+        readFully(block);
+        block.flip();
+        previousKey = 0;
+        return true;
+    }
+
+    void endBlock() { // строки блока прочитаны: лишние байты значат, что блок повреждён
+        if (block.hasRemaining()) {
+            throw new ValidationException("Снимок повреждён: в блоке лишние " + block.remaining() + " байт");
+        }
+    }
+
+    long readKey() {
+        previousKey += readLong();
+        return previousKey;
+    }
+
+    long readLong() {
+        long zigzag = 0;
+        for (int shift = 0; ; shift += 7) {
+            byte b = block.get();
+            zigzag |= (long) (b & 0x7F) << shift;
+            if (b >= 0) {
+                break;
+            }
+        }
+        return (zigzag >>> 1) ^ -(zigzag & 1);
+    }
+
+    Long readNullableLong() {
+        long value = readLong();
+        return value == 0 ? null : value - 1;
+    }
+
+    String readString() {
+        return readString((int) readLong());
+    }
+
+    String readNullableString() {
+        int length = (int) readLong();
+        return length < 0 ? null : readString(length);
+    }
+
+    private String readString(int length) {
+        if (length < 0 || length > block.remaining()) {
+            throw new ValidationException("Снимок повреждён: строка длиной " + length + " байт");
+        }
+        if (length > chars.length) {
+            chars = new byte[length];
+        }
+        block.get(chars, 0, length);
+        return new String(chars, 0, length, StandardCharsets.UTF_8);
+    }
+
+    private void readFully(ByteBuffer target) throws IOException {
+        while (target.hasRemaining()) {
+            if (channel.read(target) < 0) {
+                throw new ValidationException("Снимок обрывается: не хватает " + target.remaining() + " байт");
+            }
+        }
+    }
+}
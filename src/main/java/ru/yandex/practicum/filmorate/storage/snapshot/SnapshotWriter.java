@@ -0,0 +1,90 @@
+package ru.yandex.practicum.filmorate.storage.snapshot;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+
+// Строки пишутся в блоки до BLOCK_SIZE байт: [таблица: byte][строк: int][байт: int][строки].
+// Числа - varint, ключи сортировки - разница с предыдущей строкой блока, строки - длина + UTF-8.
+class SnapshotWriter {
+    static final byte[] MAGIC = {'F', 'L', 'M', 'S', 'N', 'A', 'P', 1};
+    static final int BLOCK_HEADER_SIZE = 9;
+    static final int BLOCK_SIZE = 64 * 1024;
+    private static final int MAX_ROW_SIZE = 8 * 1024; // самая длинная строка схемы - меньше 4 КБ в UTF-8
+
+    private final WritableByteChannel channel;
+    private final ByteBuffer buffer = ByteBuffer.allocateDirect(BLOCK_HEADER_SIZE + BLOCK_SIZE + MAX_ROW_SIZE);
+    private byte table;
+    private int rows;
+    private long previousKey;
+
+    SnapshotWriter(WritableByteChannel channel) throws IOException {
+        this.channel = channel;
+        writeFully(ByteBuffer.wrap(MAGIC));
+        buffer.position(BLOCK_HEADER_SIZE);
+    }
+
+    void beginRow(byte rowTable) throws IOException {
+        if (rowTable != table || buffer.position() >= BLOCK_HEADER_SIZE + BLOCK_SIZE) {
+            flushBlock();
+            table = rowTable;
+        }
+        rows++;
+    }
+
+    void writeKey(long key) { // ключи в блоке идут по возрастанию, разница обычно умещается в 1 байт
+        writeLong(key - previousKey);
+        previousKey = key;
+    }
+
+    void writeLong(long value) {
+        long zigzag = (value << 1) ^ (value >> 63);
+        while ((zigzag & ~0x7FL) != 0) {
+            buffer.put((byte) ((zigzag & 0x7F) | 0x80));
+            zigzag >>>= 7;
+        }
+        buffer.put((byte) zigzag);
+    }
+
+    void writeNullableLong(Long value) { // 0 - null, иначе значение + 1
+        writeLong(value == null ? 0 : value + 1);
+    }
+
+    void writeString(String value) {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        writeLong(bytes.length);
+        buffer.put(bytes);
+    }
+
+    void writeNullableString(String value) {
+        if (value == null) {
+            writeLong(-1);
+        } else {
+            writeString(value);
+        }
+    }
+
+    void finish() throws IOException { // блок без строк - конец файла
+        flushBlock();
+        buffer.clear();
+        buffer.put((byte) 0).putInt(0).putInt(0).flip();
+        writeFully(buffer);
+    }
+
+    private void flushBlock() throws IOException {
+        if (rows > 0) {
+            buffer.put(0, table).putInt(1, rows).putInt(5, buffer.position() - BLOCK_HEADER_SIZE).flip();
+            writeFully(buffer);
+        }
+        buffer.clear().position(BLOCK_HEADER_SIZE);
+        rows = 0;
+        previousKey = 0;
+    }
+
+    private void writeFully(ByteBuffer source) throws IOException {
+        while (source.hasRemaining()) {
+            channel.write(source);
+        }
+    }
+}
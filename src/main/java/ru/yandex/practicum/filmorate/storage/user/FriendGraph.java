@@ -0,0 +1,203 @@
+package ru.yandex.practicum.filmorate.storage.user;
+
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+
+@Component
+@Slf4j
+@RequiredArgsConstructor
+public class FriendGraph {
+    private static final long[] EMPTY = new long[0];
+
+    private final JdbcTemplate jdbcTemplate;
+    // изменения идут под read-блокировкой параллельно друг другу, write-блокировка нужна только для подмены графа
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Lock reloadLock = new ReentrantLock(); // перезагрузки идут по очереди и делят один журнал
+    private volatile Graph graph = new Graph();
+    // изменения, пришедшие во время перезагрузки, повторяются на новом графе; null - перезагрузки нет
+    private volatile Queue<Consumer<Graph>> journal;
+
+    @PostConstruct
+    public void reload() {
+        log.debug("Method started (reload)");
+        String sqlQuery = "SELECT user_id, friend_id FROM friend_status ORDER BY user_id, friend_id";
+
+        reloadLock.lock();
+        try {
+            locked(lock.writeLock(), () -> journal = new ConcurrentLinkedQueue<>()); // журнал ведётся ещё до чтения
+            Map<Long, LongList> loadedFriends = new HashMap<>();
+            Map<Long, LongList> loadedFollowers = new HashMap<>();
+            jdbcTemplate.query(sqlQuery, rs -> {
+                long userId = rs.getLong("user_id");
+                long friendId = rs.getLong("friend_id");
+                loadedFriends.computeIfAbsent(userId, id -> new LongList()).add(friendId);
+                loadedFollowers.computeIfAbsent(friendId, id -> new LongList()).add(userId);
+            });
+
+            Graph loaded = new Graph(); // читатели до подмены видят прежний граф целиком
+            // строки отсортированы по user_id, friend_id, поэтому оба списка уже упорядочены
+            loadedFriends.forEach((userId, ids) -> loaded.friends.put(userId, ids.toArray()));
+            loadedFollowers.forEach((userId, ids) -> loaded.followers.put(userId, ids.toArray()));
+            locked(lock.writeLock(), () -> {
+                journal.forEach(change -> change.accept(loaded)); // добавление и удаление дружбы идемпотентны
+                graph = loaded;
+                log.info("Friend graph loaded, users={}, replayed={}", loaded.friends.size(), journal.size());
+            });
+        } finally {
+            locked(lock.writeLock(), () -> journal = null);
+            reloadLock.unlock();
+        }
+    }
+
+    public long[] getFriends(Long userId) {
+        return graph.friends(userId);
+    }
+
+    public long[] getCommonFriends(Long firstId, Long secondId) {
+        Graph current = graph; // оба списка - из одного графа
+        return intersect(current.friends(firstId), current.friends(secondId));
+    }
+
+    public void add(Long userId, Long friendId) {
+        change(current -> current.add(userId, friendId));
+    }
+
+    public void remove(Long userId, Long friendId) {
+        change(current -> current.remove(userId, friendId));
+    }
+
+    public void removeUser(Long userId) {
+        change(current -> current.removeUser(userId));
+    }
+
+    private void change(Consumer<Graph> change) {
+        locked(lock.readLock(), () -> {
+            change.accept(graph);
+            Queue<Consumer<Graph>> changes = journal;
+            if (changes != null) {
+                changes.add(change);
+            }
+        });
+    }
+
+    private static void locked(Lock lock, Runnable action) {
+        lock.lock();
+        try {
+            action.run();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private static long[] intersect(long[] first, long[] second) { // слияние двух отсортированных массивов за O(n + m)
+        long[] result = new long[Math.min(first.length, second.length)];
+        int size = 0;
+        int i = 0;
+        int j = 0;
+        while (i < first.length && j < second.length) {
+            if (first[i] < second[j]) {
+                i++;
+            } else if (first[i] > second[j]) {
+                j++;
+            } else {
+                result[size++] = first[i];
+                i++;
+                j++;
+            }
+        }
+        return size == result.length ? result : Arrays.copyOf(result, size);
+    }
+
+    private static long[] insert(long[] ids, long value) {
+        if (ids == null) {
+            return new long[]{value};
+        }
+        int position = Arrays.binarySearch(ids, value);
+        if (position >= 0) {
+            return ids;
+        }
+        position = -position - 1;
+        long[] result = new long[ids.length + 1];
+        System.arraycopy(ids, 0, result, 0, position);
+        result[position] = value;
+        System.arraycopy(ids, position, result, position + 1, ids.length - position);
+        return result;
+    }
+
+    private static long[] delete(long[] ids, long value) {
+        int position = Arrays.binarySearch(ids, value);
+        if (position < 0) {
+            return ids;
+        }
+        if (ids.length == 1) {
+            return null; // пустой массив не храним, запись удаляется из карты
+        }
+        long[] result = new long[ids.length - 1];
+        System.arraycopy(ids, 0, result, 0, position);
+        System.arraycopy(ids, position + 1, result, position, ids.length - position - 1);
+        return result;
+    }
+
+    // Друзья и подписчики одного поколения: перезагрузка строит новый граф и подменяет им прежний целиком.
+    // Отсортированные массивы не изменяются после публикации, поэтому чтение идёт без блокировок
+    private static class Graph {
+        private final Map<Long, long[]> friends = new ConcurrentHashMap<>();
+        private final Map<Long, long[]> followers = new ConcurrentHashMap<>();
+
+        long[] friends(Long userId) {
+            return friends.getOrDefault(userId, EMPTY);
+        }
+
+        void add(Long userId, Long friendId) {
+            friends.compute(userId, (id, ids) -> insert(ids, friendId));
+            followers.compute(friendId, (id, ids) -> insert(ids, userId));
+        }
+
+        void remove(Long userId, Long friendId) {
+            friends.computeIfPresent(userId, (id, ids) -> delete(ids, friendId));
+            followers.computeIfPresent(friendId, (id, ids) -> delete(ids, userId));
+        }
+
+        void removeUser(Long userId) {
+            for (long friendId : friends.getOrDefault(userId, EMPTY)) {
+                followers.computeIfPresent(friendId, (id, ids) -> delete(ids, userId));
+            }
+            for (long followerId : followers.getOrDefault(userId, EMPTY)) {
+                friends.computeIfPresent(followerId, (id, ids) -> delete(ids, userId));
+            }
+            friends.remove(userId);
+            followers.remove(userId);
+        }
+    }
+
+    private static class LongList {
+        private long[] values = new long[4];
+        private int size;
+
+        void add(long value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = value;
+        }
+
+        long[] toArray() {
+            return Arrays.copyOf(values, size);
+        }
+    }
+}
@@ -1,118 +1,254 @@
 package ru.yandex.practicum.filmorate.storage.user;
 
-import lombok.Getter;
+import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.annotation.Profile;
 import org.springframework.stereotype.Component;
 import ru.yandex.practicum.filmorate.exception.NotFoundException;
 import ru.yandex.practicum.filmorate.exception.ValidationException;
+import ru.yandex.practicum.filmorate.model.BulkResult;
 import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.storage.EntityVersions;
+import ru.yandex.practicum.filmorate.validation.Validator;
 
-import java.time.LocalDate;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
 
 @Component
+@Profile("in-memory")
 @Slf4j
-@Getter
+@RequiredArgsConstructor
 public class InMemoryUserStorage implements UserStorage {
-    private final Map<Long, User> users = new HashMap<>();
+    private final Validator validator;
+    private final EntityVersions entityVersions;
+    private final Map<Long, User> users = new ConcurrentHashMap<>();
+    private final NavigableMap<Long, User> usersInOrder = new ConcurrentSkipListMap<>();
+    private final Map<String, Long> idsByEmail = new ConcurrentHashMap<>();
+    private final Map<String, Long> idsByLogin = new ConcurrentHashMap<>();
+    private final Map<Long, Set<Long>> friends = new ConcurrentHashMap<>();
+    private final Map<Long, Set<Long>> followers = new ConcurrentHashMap<>();
+    private final List<Consumer<Long>> deleteListeners = new CopyOnWriteArrayList<>();
+    private final AtomicLong idSequence = new AtomicLong();
+    // создание, изменение и удаление идут под write-блокировкой, дружба и лайки - под общей read-блокировкой
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
 
     @Override
     public List<User> findAll() {
-        log.info("Method started (findAll)");
-        return new ArrayList<>(users.values());
+        log.debug("Method started (findAll)");
+        return new ArrayList<>(usersInOrder.values());
+    }
+
+    @Override
+    public List<User> findPage(Long after, int limit) {
+        log.debug("Method started (findPage)");
+        return usersInOrder.tailMap(after == null ? 0 : after, false).values().stream()
+                .limit(limit)
+                .toList();
+    }
+
+    @Override
+    public void forEach(Consumer<User> action) {
+        log.debug("Method started (forEach)");
+        usersInOrder.values().forEach(action);
     }
 
     @Override
     public User findById(Long id) {
-        log.info("Method started (findById)");
-        if (!users.containsKey(id)) {
+        log.debug("Method started (findById)");
+        User user = id == null ? null : users.get(id);
+        if (user == null) {
             log.warn("No user with id={}", id);
             throw new NotFoundException("Нет пользователя с id=" + id);
         }
-        log.info("User with id={} found", id);
-        return users.values().stream()
-                .filter(user -> Objects.equals(user.getId(), id))
-                .findFirst().get();
+        return user;
     }
 
     @Override
     public User create(User user) {
-        log.info("Method started (create)");
-        validation(user);
+        log.debug("Method started (create)");
+        validator.userValidation(user);
         if (user.getName() == null || user.getName().isBlank()) {
             log.debug("Replacing name with login");
             user.setName(user.getLogin());
         }
-        user.setId(getNextId());
-        log.debug("Getting a new id id={}", user.getId());
-        log.debug("Getting a new id id={}", user.getId());
-        users.put(user.getId(), user);
-        log.info("Adding a new user id={}", user.getId());
-        return user;
+
+        return locked(lock.writeLock(), () -> {
+            checkUniqueness(user);
+            user.setId(idSequence.incrementAndGet());
+            index(user);
+            log.info("Adding a new user id={}", user.getId());
+            return user;
+        });
+    }
+
+    @Override
+    public List<BulkResult> createAll(List<User> users) { // в памяти пакетная запись не нужна - создаём по одному
+        log.debug("Method started (createAll)");
+        return users.stream()
+                .map(user -> {
+                    try {
+                        return BulkResult.builder().id(create(user).getId()).build();
+                    } catch (ValidationException e) {
+                        return BulkResult.builder().error(e.getMessage()).build();
+                    }
+                })
+                .toList();
     }
 
     @Override
     public User update(User user) {
-        log.info("Method started (update)");
-        if (users.containsKey(user.getId())) {
-            validation(user);
-            if (user.getName() == null || user.getName().isBlank()) {
-                log.debug("Replacing name with login");
-                user.setName(user.getLogin());
-            }
+        log.debug("Method started (update)");
+        validator.userValidation(user);
+        if (user.getName() == null || user.getName().isBlank()) {
+            log.debug("Replacing name with login");
+            user.setName(user.getLogin());
+        }
+
+        return locked(lock.writeLock(), () -> {
+            User old = findById(user.getId());
+            checkUniqueness(user);
+            idsByEmail.remove(old.getEmail());
+            idsByLogin.remove(old.getLogin());
+            index(user);
+            entityVersions.userChanged(user.getId());
             log.info("User with id={} updated", user.getId());
-            users.put(user.getId(), user);
             return user;
-        } else {
-            log.warn("User with id={} not found", user.getId());
-            throw new NotFoundException("Пользователь с id=" + user.getId() + " не найден");
-        }
+        });
     }
 
     @Override
     public void delete(Long id) {
-        log.info("Method started (delete)");
-        if (!users.containsKey(id)) {
-            log.warn("User with id={} not found", id);
-            throw new NotFoundException("Пользователь с id=" + id + " не найден");
-        }
-        log.info("User with id={} delete", id);
-        users.remove(id);
+        log.debug("Method started (delete)");
+        locked(lock.writeLock(), () -> {
+            User user = findById(id);
+            users.remove(id);
+            usersInOrder.remove(id);
+            idsByEmail.remove(user.getEmail());
+            idsByLogin.remove(user.getLogin());
+
+            friends.getOrDefault(id, Set.of()).forEach(friendId -> removeFrom(followers, friendId, id));
+            followers.getOrDefault(id, Set.of()).forEach(followerId -> removeFrom(friends, followerId, id));
+            friends.remove(id);
+            followers.remove(id);
+
+            deleteListeners.forEach(listener -> listener.accept(id));
+            entityVersions.userChanged(id);
+            log.info("User with id={} delete", id);
+            return null;
+        });
     }
 
-    private long getNextId() {
-        long maxId = users.keySet()
-                .stream()
-                .mapToLong(id -> id)
-                .max()
-                .orElse(0);
-        return ++maxId;
+    @Override
+    public boolean addFriend(Long userId, Long friendId) {
+        log.debug("Method started (addFriend)");
+        return whileExists(List.of(userId, friendId), () -> {
+            followers.computeIfAbsent(friendId, id -> ConcurrentHashMap.newKeySet()).add(userId);
+            return friendsChanged(userId, friendId,
+                    friends.computeIfAbsent(userId, id -> ConcurrentHashMap.newKeySet()).add(friendId));
+        });
     }
 
-    private void validation(User user) {
-        if (user.getEmail() == null || user.getEmail().isBlank()) {
-            log.warn("User email is not specified");
-            throw new ValidationException("Не указан имейл пользователя");
-        }
-        if (!user.getEmail().contains("@")) {
-            log.warn("User's email must contain the @ symbol");
-            throw new ValidationException("Имейл пользователя должен содержать символ @");
-        }
-        if (user.getLogin() == null || user.getLogin().isBlank()) {
-            log.warn("User login not specified");
-            throw new ValidationException("Не указан логин пользователя");
+    @Override
+    public boolean removeFriend(Long userId, Long friendId) {
+        log.debug("Method started (removeFriend)");
+        return whileExists(List.of(userId, friendId), () -> {
+            removeFrom(followers, friendId, userId);
+            return friendsChanged(userId, friendId, removeFrom(friends, userId, friendId));
+        });
+    }
+
+    @Override
+    public List<User> findFriends(Long userId) {
+        log.debug("Method started (findFriends)");
+        findById(userId);
+        return toUsers(friends.getOrDefault(userId, Set.of()));
+    }
+
+    @Override
+    public List<User> findCommonFriends(Long firstId, Long secondId) {
+        log.debug("Method started (findCommonFriends)");
+        findById(firstId);
+        findById(secondId);
+
+        Set<Long> first = friends.getOrDefault(firstId, Set.of());
+        Set<Long> second = friends.getOrDefault(secondId, Set.of());
+        Set<Long> smaller = first.size() <= second.size() ? first : second;
+        Set<Long> larger = smaller == first ? second : first;
+
+        return toUsers(smaller.stream()
+                .filter(larger::contains)
+                .toList());
+    }
+
+    public void addDeleteListener(Consumer<Long> listener) {
+        deleteListeners.add(listener);
+    }
+
+    public <T> T whileExists(Collection<Long> userIds, Supplier<T> action) { // пользователь не удалится до конца action
+        return locked(lock.readLock(), () -> {
+            userIds.forEach(this::findById);
+            return action.get();
+        });
+    }
+
+    private boolean friendsChanged(Long userId, Long friendId, boolean changed) {
+        if (changed) {
+            entityVersions.userChanged(userId);
+            entityVersions.userChanged(friendId);
         }
-        if (user.getLogin().contains(" ")) {
-            log.warn("Login cannot contain spaces");
-            throw new ValidationException("Логин не может содержать пробелы");
+        return changed;
+    }
+
+    private List<User> toUsers(Collection<Long> ids) {
+        return ids.stream()
+                .sorted()
+                .map(users::get)
+                .filter(Objects::nonNull)
+                .toList();
+    }
+
+    private void checkUniqueness(User user) {
+        Long emailOwner = idsByEmail.get(user.getEmail());
+        if (emailOwner != null && !emailOwner.equals(user.getId())) {
+            log.warn("This email = {} already exists. User not saved.", user.getEmail());
+            throw new ValidationException("Email = " + user.getEmail() + " уже существует. Пользователь не " +
+                    (user.getId() == null ? "создан" : "обновлен"));
         }
-        if (user.getBirthday() == null) {
-            log.warn("User's date of birth is not specified");
-            throw new ValidationException("Не указана дата рождения пользователя");
+        Long loginOwner = idsByLogin.get(user.getLogin());
+        if (loginOwner != null && !loginOwner.equals(user.getId())) {
+            log.warn("This login = {} already exists. User not saved.", user.getLogin());
+            throw new ValidationException("Login = " + user.getLogin() + " уже существует. Пользователь не " +
+                    (user.getId() == null ? "создан" : "обновлен"));
         }
-        if (user.getBirthday().isAfter(LocalDate.now())) {
-            log.warn("Date of birth cannot be in the future");
-            throw new ValidationException("Дата рождения не может быть в будущем");
+    }
+
+    private void index(User user) {
+        users.put(user.getId(), user);
+        usersInOrder.put(user.getId(), user);
+        idsByEmail.put(user.getEmail(), user.getId());
+        idsByLogin.put(user.getLogin(), user.getId());
+    }
+
+    // набора может не быть: пользователь ещё ни с кем не дружил; Set.of() не поддерживает remove
+    private static boolean removeFrom(Map<Long, Set<Long>> sets, Long key, Long value) {
+        Set<Long> set = sets.get(key);
+        return set != null && set.remove(value);
+    }
+
+    private static <T> T locked(Lock lock, Supplier<T> action) {
+        lock.lock();
+        try {
+            return action.get();
+        } finally {
+            lock.unlock();
         }
     }
 }
@@ -1,41 +1,93 @@
 package ru.yandex.practicum.filmorate.storage.user;
 
+import jakarta.transaction.Transactional;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.annotation.Profile;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.DuplicateKeyException;
 import org.springframework.dao.EmptyResultDataAccessException;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.jdbc.support.GeneratedKeyHolder;
 import org.springframework.stereotype.Repository;
 import ru.yandex.practicum.filmorate.exception.InternalServerException;
 import ru.yandex.practicum.filmorate.exception.NotFoundException;
+import ru.yandex.practicum.filmorate.exception.ValidationException;
+import ru.yandex.practicum.filmorate.model.BulkResult;
 import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.storage.EntityCache;
+import ru.yandex.practicum.filmorate.storage.EntityVersions;
+import ru.yandex.practicum.filmorate.storage.film.CoLikeIndex;
+import ru.yandex.practicum.filmorate.storage.film.FilmPopularityIndex;
 import ru.yandex.practicum.filmorate.storage.mappers.UserRowMapper;
 import ru.yandex.practicum.filmorate.validation.Validator;
 
 import java.sql.Date;
 import java.sql.PreparedStatement;
+import java.sql.SQLException;
 import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
 
 @Repository
+@Profile("!in-memory")
 @Slf4j
 @RequiredArgsConstructor
 public class UserDbStorage implements UserStorage {
+    private static final int STREAM_FETCH_SIZE = 500;
+
     private final JdbcTemplate jdbcTemplate;
     private final Validator validator;
     private final UserRowMapper userRowMapper;
+    private final FilmPopularityIndex filmPopularityIndex;
+    private final CoLikeIndex coLikeIndex;
+    private final FriendGraph friendGraph;
+    private final EntityVersions entityVersions;
+    private final EntityCache entityCache;
 
     @Override
     public List<User> findAll() {
-        log.info("Method started (findAll)");
+        log.debug("Method started (findAll)");
         String sqlQuery = "SELECT * FROM \"user\"";
 
         return jdbcTemplate.query(sqlQuery, userRowMapper);
     }
 
+    @Override
+    public List<User> findPage(Long after, int limit) {
+        log.debug("Method started (findPage)");
+        String sqlQuery = "SELECT * FROM \"user\" WHERE user_id > ? ORDER BY user_id LIMIT ?";
+
+        return jdbcTemplate.query(sqlQuery, userRowMapper, after == null ? 0 : after, limit);
+    }
+
+    @Override
+    public void forEach(Consumer<User> action) { // пользователи читаются курсором и отдаются по одному
+        log.debug("Method started (forEach)");
+        String sqlQuery = "SELECT * FROM \"user\" ORDER BY user_id";
+
+        jdbcTemplate.query(connection -> {
+            PreparedStatement ps = connection.prepareStatement(sqlQuery);
+            ps.setFetchSize(STREAM_FETCH_SIZE);
+            return ps;
+        }, rs -> {
+            action.accept(userRowMapper.mapRow(rs, rs.getRow()));
+        });
+    }
+
     @Override
     public User findById(Long id) {
-        log.info("Method started (findById)");
+        log.debug("Method started (findById)");
+        return entityCache.findUser(id, this::loadById);
+    }
+
+    private User loadById(Long id) {
         String sqlQuery = "SELECT * FROM \"user\" WHERE user_id = ?";
 
         try {
@@ -48,22 +100,24 @@ public class UserDbStorage implements UserStorage {
 
     @Override
     public User create(User user) {
-        log.info("Method started (create)");
+        log.debug("Method started (create)");
         String sqlQuery = "INSERT INTO \"user\" (name, email, login, birthday) VALUES(?, ?, ?, ?)";
 
         validator.userValidation(user);
-        validator.checkForEmailInDatabase(user.getEmail());
-        validator.checkForLoginInDatabase(user.getLogin());
 
         GeneratedKeyHolder keyHolder = new GeneratedKeyHolder();
-        jdbcTemplate.update(connection -> {
-            PreparedStatement ps = connection.prepareStatement(sqlQuery, Statement.RETURN_GENERATED_KEYS);
-            ps.setString(1, user.getName());
-            ps.setString(2, user.getEmail());
-            ps.setString(3, user.getLogin());
-            ps.setDate(4, Date.valueOf(user.getBirthday()));
-            return ps;
-        }, keyHolder);
+        try {
+            jdbcTemplate.update(connection -> {
+                PreparedStatement ps = connection.prepareStatement(sqlQuery, Statement.RETURN_GENERATED_KEYS);
+                ps.setString(1, user.getName());
+                ps.setString(2, user.getEmail());
+                ps.setString(3, user.getLogin());
+                ps.setDate(4, Date.valueOf(user.getBirthday()));
+                return ps;
+            }, keyHolder);
+        } catch (DuplicateKeyException e) {
+            throw duplicateViolation(user, e);
+        }
 
         Long userId = keyHolder.getKeyAs(Long.class);
         if (userId == null) {
@@ -75,32 +129,215 @@ public class UserDbStorage implements UserStorage {
         return user;
     }
 
+    @Transactional
+    @Override
+    public List<BulkResult> createAll(List<User> users) { // одна транзакция и по одному batch-запросу на пачку
+        log.debug("Method started (createAll)");
+        String sqlQuery = "INSERT INTO \"user\" (name, email, login, birthday) VALUES(?, ?, ?, ?)";
+        String sqlQueryEmails = "SELECT email FROM \"user\" WHERE email = ANY(?)";
+        String sqlQueryLogins = "SELECT login FROM \"user\" WHERE login = ANY(?)";
+
+        BulkResult[] results = new BulkResult[users.size()];
+        Set<String> emails = new HashSet<>();
+        Set<String> logins = new HashSet<>();
+        for (int i = 0; i < users.size(); i++) {
+            User user = users.get(i);
+            try {
+                validator.userValidation(user);
+                if (!emails.add(user.getEmail())) {
+                    throw new ValidationException("Email = " + user.getEmail() + " уже есть в загрузке");
+                }
+                if (!logins.add(user.getLogin())) {
+                    throw new ValidationException("Login = " + user.getLogin() + " уже есть в загрузке");
+                }
+            } catch (ValidationException e) {
+                results[i] = BulkResult.builder().error(e.getMessage()).build();
+            }
+        }
+
+        Set<String> existingEmails = new HashSet<>(jdbcTemplate.queryForList(sqlQueryEmails, String.class,
+                (Object) emails.toArray(new String[0])));
+        Set<String> existingLogins = new HashSet<>(jdbcTemplate.queryForList(sqlQueryLogins, String.class,
+                (Object) logins.toArray(new String[0])));
+        List<User> created = new ArrayList<>();
+        for (int i = 0; i < users.size(); i++) {
+            User user = users.get(i);
+            if (results[i] != null) {
+                continue;
+            }
+            if (existingEmails.contains(user.getEmail())) {
+                results[i] = BulkResult.builder()
+                        .error("Email = " + user.getEmail() + " уже существует. Пользователь не создан")
+                        .build();
+            } else if (existingLogins.contains(user.getLogin())) {
+                results[i] = BulkResult.builder()
+                        .error("Login = " + user.getLogin() + " уже существует. Пользователь не создан")
+                        .build();
+            } else {
+                created.add(user);
+            }
+        }
+        if (created.isEmpty()) {
+            return List.of(results);
+        }
+
+        GeneratedKeyHolder keyHolder = new GeneratedKeyHolder();
+        jdbcTemplate.batchUpdate(connection -> connection.prepareStatement(sqlQuery, new String[]{"user_id"}),
+                new BatchPreparedStatementSetter() {
+                    @Override
+                    public void setValues(PreparedStatement ps, int i) throws SQLException {
+                        User user = created.get(i);
+                        ps.setString(1, user.getName());
+                        ps.setString(2, user.getEmail());
+                        ps.setString(3, user.getLogin());
+                        ps.setDate(4, Date.valueOf(user.getBirthday()));
+                    }
+
+                    @Override
+                    public int getBatchSize() {
+                        return created.size();
+                    }
+                }, keyHolder);
+        List<Map<String, Object>> keys = keyHolder.getKeyList();
+        int next = 0;
+        for (int i = 0; i < users.size(); i++) {
+            if (results[i] == null) {
+                User user = created.get(next);
+                user.setId(((Number) keys.get(next++).get("USER_ID")).longValue());
+                results[i] = BulkResult.builder().id(user.getId()).build();
+            }
+        }
+        log.info("Adding {} users in bulk", created.size());
+        return List.of(results);
+    }
+
     @Override
     public User update(User user) {
-        log.info("Method started (update)");
+        log.debug("Method started (update)");
         String sqlQuery = "UPDATE \"user\" SET name = ?, email = ?, login = ?, birthday = ? WHERE user_id = ?";
 
-        validator.checkForUserInDatabase(user.getId());
         validator.userValidation(user);
 
-        jdbcTemplate.update(sqlQuery,
-                user.getName(),
-                user.getEmail(),
-                user.getLogin(),
-                Date.valueOf(user.getBirthday()),
-                user.getId());
+        int updated;
+        try {
+            updated = jdbcTemplate.update(sqlQuery,
+                    user.getName(),
+                    user.getEmail(),
+                    user.getLogin(),
+                    Date.valueOf(user.getBirthday()),
+                    user.getId());
+        } catch (DuplicateKeyException e) {
+            throw duplicateViolation(user, e);
+        }
+
+        if (updated == 0) {
+            log.warn("No user with id={}", user.getId());
+            throw new NotFoundException("Нет пользователя с id=" + user.getId());
+        }
         log.info("User with id={} updated", user.getId());
+        entityCache.evictUser(user.getId());
+        entityVersions.userChanged(user.getId());
         return user;
     }
 
+    @Transactional
     @Override
     public void delete(Long id) {
-        log.info("Method started (delete)");
+        log.debug("Method started (delete)");
         String sqlQuery = "DELETE FROM \"user\" WHERE user_id = ?";
+        String sqlQueryLikes = "SELECT film_id FROM \"like\" WHERE user_id = ?";
+        String sqlQueryCount = "UPDATE film SET like_count = like_count - 1 " +
+                "WHERE film_id IN (SELECT film_id FROM \"like\" WHERE user_id = ?)";
 
-        validator.checkForUserInDatabase(id);
+        List<Long> likedFilms = jdbcTemplate.queryForList(sqlQueryLikes, Long.class, id); // лайки удалятся каскадно
+        jdbcTemplate.update(sqlQueryCount, id);
 
+        if (jdbcTemplate.update(sqlQuery, id) == 0) {
+            log.warn("No user with id={}", id);
+            throw new NotFoundException("Нет пользователя с id=" + id);
+        }
         log.info("User with id={} delete", id);
-        jdbcTemplate.update(sqlQuery, id);
+        likedFilms.forEach(filmId -> filmPopularityIndex.addLikes(filmId, -1));
+        coLikeIndex.removeUser(id);
+        friendGraph.removeUser(id); // дружбы удалятся каскадно
+        entityCache.evictUser(id);
+        entityVersions.userChanged(id);
+        likedFilms.forEach(entityVersions::filmChanged);
+    }
+
+    @Override
+    public boolean addFriend(Long userId, Long friendId) {
+        log.debug("Method started (addFriend)");
+        String sqlQuery = "INSERT INTO friend_status (user_id, friend_id)\n" +
+                "SELECT ?, ? WHERE NOT EXISTS (SELECT 1 FROM friend_status WHERE user_id = ? AND friend_id = ?)";
+
+        int inserted;
+        try {
+            inserted = jdbcTemplate.update(sqlQuery, userId, friendId, userId, friendId);
+        } catch (DuplicateKeyException e) { // ту же дружбу параллельно вставил другой запрос
+            return false;
+        } catch (DataIntegrityViolationException e) { // нарушен внешний ключ: выясняем, кого нет
+            validator.checkForUserInDatabase(userId);
+            validator.checkForUserInDatabase(friendId);
+            throw e;
+        }
+        friendGraph.add(userId, friendId);
+        if (inserted > 0) {
+            entityVersions.userChanged(userId);
+            entityVersions.userChanged(friendId);
+        }
+        return inserted > 0;
+    }
+
+    @Override
+    public boolean removeFriend(Long userId, Long friendId) {
+        log.debug("Method started (removeFriend)");
+        String sqlQuery = "DELETE FROM friend_status WHERE user_id = ? AND friend_id = ?";
+
+        if (jdbcTemplate.update(sqlQuery, userId, friendId) == 0) { // дружбы не было: проверяем пользователей
+            validator.checkForUserInDatabase(userId);
+            validator.checkForUserInDatabase(friendId);
+            return false;
+        }
+        friendGraph.remove(userId, friendId);
+        entityVersions.userChanged(userId);
+        entityVersions.userChanged(friendId);
+        return true;
+    }
+
+    @Override
+    public List<User> findFriends(Long userId) {
+        log.debug("Method started (findFriends)");
+        long[] friendIds = friendGraph.getFriends(userId);
+        if (friendIds.length == 0) {
+            validator.checkForUserInDatabase(userId);
+        }
+        return findByIds(friendIds);
+    }
+
+    @Override
+    public List<User> findCommonFriends(Long firstId, Long secondId) {
+        log.debug("Method started (findCommonFriends)");
+        long[] friendIds = friendGraph.getCommonFriends(firstId, secondId); // пересечение считается в памяти
+        if (friendIds.length == 0) {
+            validator.checkForUserInDatabase(firstId);
+            validator.checkForUserInDatabase(secondId);
+        }
+        return findByIds(friendIds);
+    }
+
+    private List<User> findByIds(long[] ids) { // один запрос на весь список
+        String sqlQuery = "SELECT * FROM \"user\" WHERE user_id = ANY(?) ORDER BY user_id";
+
+        if (ids.length == 0) {
+            return List.of();
+        }
+        return jdbcTemplate.query(sqlQuery, userRowMapper, (Object) Arrays.stream(ids).boxed().toArray(Long[]::new));
+    }
+
+    private RuntimeException duplicateViolation(User user, DuplicateKeyException e) { // определяем, какое поле занято
+        validator.checkForEmailInDatabase(user);
+        validator.checkForLoginInDatabase(user);
+        return e;
     }
 }
@@ -1,17 +1,33 @@
 package ru.yandex.practicum.filmorate.storage.user;
 
+import ru.yandex.practicum.filmorate.model.BulkResult;
 import ru.yandex.practicum.filmorate.model.User;
 
 import java.util.List;
+import java.util.function.Consumer;
 
 public interface UserStorage {
     User create(User user);
 
+    List<BulkResult> createAll(List<User> users);
+
     User update(User user);
 
     void delete(Long id);
 
     List<User> findAll();
 
+    List<User> findPage(Long after, int limit);
+
+    void forEach(Consumer<User> action);
+
     User findById(Long id);
+
+    boolean addFriend(Long userId, Long friendId);
+
+    boolean removeFriend(Long userId, Long friendId);
+
+    List<User> findFriends(Long userId);
+
+    List<User> findCommonFriends(Long firstId, Long secondId);
 }
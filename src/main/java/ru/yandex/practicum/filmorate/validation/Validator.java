@@ -2,7 +2,6 @@ package ru.yandex.practicum.filmorate.validation;
 
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.dao.EmptyResultDataAccessException;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Component;
 import ru.yandex.practicum.filmorate.exception.NotFoundException;
@@ -10,7 +9,9 @@ import ru.yandex.practicum.filmorate.exception.ValidationException;
 import ru.yandex.practicum.filmorate.model.Film;
 import ru.yandex.practicum.filmorate.model.Genre;
 import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.storage.EntityCache;
 import ru.yandex.practicum.filmorate.storage.GenreDbStorage;
+import ru.yandex.practicum.filmorate.storage.RatingDbStorage;
 
 import java.time.LocalDate;
 import java.util.List;
@@ -19,15 +20,26 @@ import java.util.List;
 @Slf4j
 @RequiredArgsConstructor
 public class Validator {
+    // размеры колонок схемы: длинное значение отклоняется здесь, а не ошибкой всей пачки при массовой вставке
+    private static final int NAME_LENGTH = 50;
+    private static final int EMAIL_LENGTH = 255;
+    private static final int LOGIN_LENGTH = 255;
+
     private final JdbcTemplate jdbcTemplate;
     private final GenreDbStorage genreDbStorage;
+    private final RatingDbStorage ratingDbStorage;
+    private final EntityCache entityCache;
 
     public void filmValidation(Film film) {
-        log.info("Method started (filmValidation)");
+        log.debug("Method started (filmValidation)");
         if (film.getName() == null || film.getName().isBlank()) {
             log.warn("The title of the film is not specified");
             throw new ValidationException("Не указано название фильма");
         }
+        if (film.getName().length() > NAME_LENGTH) {
+            log.warn("The title of the film contains more than {} characters", NAME_LENGTH);
+            throw new ValidationException("Название фильма превышает " + NAME_LENGTH + " символов");
+        }
         if (film.getDescription() == null || film.getDescription().isBlank()) {
             log.warn("No movie description provided");
             throw new ValidationException("Не указано описание фильма");
@@ -55,7 +67,7 @@ public class Validator {
     }
 
     public void userValidation(User user) {
-        log.info("Method started (userValidation)");
+        log.debug("Method started (userValidation)");
         if (user.getEmail() == null || user.getEmail().isBlank()) {
             log.warn("User email is not specified");
             throw new ValidationException("Не указан имейл пользователя");
@@ -64,6 +76,10 @@ public class Validator {
             log.warn("User's email must contain the @ symbol");
             throw new ValidationException("Имейл пользователя должен содержать символ @");
         }
+        if (user.getEmail().length() > EMAIL_LENGTH) {
+            log.warn("User's email contains more than {} characters", EMAIL_LENGTH);
+            throw new ValidationException("Имейл пользователя превышает " + EMAIL_LENGTH + " символов");
+        }
         if (user.getLogin() == null || user.getLogin().isBlank()) {
             log.warn("User login not specified");
             throw new ValidationException("Не указан логин пользователя");
@@ -72,6 +88,14 @@ public class Validator {
             log.warn("Login cannot contain spaces");
             throw new ValidationException("Логин не может содержать пробелы");
         }
+        if (user.getLogin().length() > LOGIN_LENGTH) {
+            log.warn("User login contains more than {} characters", LOGIN_LENGTH);
+            throw new ValidationException("Логин пользователя превышает " + LOGIN_LENGTH + " символов");
+        }
+        if (user.getName() != null && user.getName().length() > NAME_LENGTH) {
+            log.warn("User name contains more than {} characters", NAME_LENGTH);
+            throw new ValidationException("Имя пользователя превышает " + NAME_LENGTH + " символов");
+        }
         if (user.getBirthday() == null) {
             log.warn("User's date of birth is not specified");
             throw new ValidationException("Не указана дата рождения пользователя");
@@ -82,41 +106,23 @@ public class Validator {
         }
     }
 
-    public boolean checkForFilmInDatabase(String name) {
-        log.info("Method started (checkIfFilmIsInDatabase)");
-        String sqlQuery = "SELECT name FROM film WHERE name = ?";
+    public void checkForFilmInDatabase(Long filmId) {
+        log.debug("Method started (checkForFilmInDatabase)");
+        String sqlQuery = "SELECT EXISTS (SELECT 1 FROM film WHERE film_id = ?)";
 
-        try {
-            jdbcTemplate.queryForObject(sqlQuery, String.class, name);
-            return true;
-        } catch (EmptyResultDataAccessException e) {
-            log.info("No film with name={}", name);
-            return false;
+        if (entityCache.containsFilm(filmId)) { // удалённые фильмы из кэша вытесняются сразу
+            return;
         }
-    }
-
-    public boolean checkForFilmInDatabase(Long filmId) {
-        log.info("Method started (checkIfFilmIsInDatabase)");
-        String sqlQuery = "SELECT name FROM film WHERE film_id = ?";
 
-        try {
-            jdbcTemplate.queryForObject(sqlQuery, String.class, filmId);
-            return true;
-        } catch (EmptyResultDataAccessException e) {
-            log.info("No film with name={}", filmId);
-            return false;
+        if (!jdbcTemplate.queryForObject(sqlQuery, Boolean.class, filmId)) {
+            log.warn("No film with id={}", filmId);
+            throw new NotFoundException("Нет фильма с id=" + filmId);
         }
     }
 
     public void checkForRatingInDatabase(Integer ratingId) {
-        log.info("Method started (checkForRatingInDatabase)");
-        String sqlQuery = "SELECT name FROM rating WHERE rating_id = ?";
-        try {
-            jdbcTemplate.queryForObject(sqlQuery, String.class, ratingId);
-        } catch (EmptyResultDataAccessException e) {
-            log.warn("No rating with id={}", ratingId);
-            throw new NotFoundException("Нет рейтинга с id=" + ratingId);
-        }
+        log.debug("Method started (checkForRatingInDatabase)");
+        ratingDbStorage.findById(ratingId);
     }
 
     public void checkForGenreInDatabase(List<Genre> genres) {
@@ -126,38 +132,38 @@ public class Validator {
     }
 
     public void checkForUserInDatabase(Long userId) {
-        log.info("Method started (checkForUserInDatabase)");
-        String sqlQuery = "SELECT name FROM \"user\" WHERE user_id = ?";
+        log.debug("Method started (checkForUserInDatabase)");
+        String sqlQuery = "SELECT EXISTS (SELECT 1 FROM \"user\" WHERE user_id = ?)";
+
+        if (entityCache.containsUser(userId)) {
+            return;
+        }
 
-        try {
-            jdbcTemplate.queryForObject(sqlQuery, String.class, userId);
-        } catch (EmptyResultDataAccessException e) {
+        if (!jdbcTemplate.queryForObject(sqlQuery, Boolean.class, userId)) {
             log.warn("No user with id={}", userId);
             throw new NotFoundException("Нет пользователя с id=" + userId);
         }
     }
 
-    public void checkForEmailInDatabase(String email) {
-        try {
-            String queryEmail = "SELECT email FROM \"user\" WHERE email = ?";
-            jdbcTemplate.queryForObject(queryEmail, String.class, email);
+    public void checkForEmailInDatabase(User user) { // вызывается только после нарушения UNIQUE, чтобы назвать причину
+        log.debug("Method started (checkForEmailInDatabase)");
+        String sqlQuery = "SELECT EXISTS (SELECT 1 FROM \"user\" WHERE email = ? AND user_id IS DISTINCT FROM ?)";
 
-            log.warn("This email = {} already exists. User not created.", email);
-            throw new ValidationException("Email = " + email + " уже существует. Пользователь не создан");
-        } catch (EmptyResultDataAccessException e) {
-            log.info("Email not found");
+        if (jdbcTemplate.queryForObject(sqlQuery, Boolean.class, user.getEmail(), user.getId())) {
+            log.warn("This email = {} already exists. User not saved.", user.getEmail());
+            throw new ValidationException("Email = " + user.getEmail() + " уже существует. Пользователь не " +
+                    (user.getId() == null ? "создан" : "обновлен"));
         }
     }
 
-    public void checkForLoginInDatabase(String login) {
-        try {
-            String queryLogin = "SELECT login FROM \"user\" WHERE login = ?";
-            jdbcTemplate.queryForObject(queryLogin, String.class, login);
+    public void checkForLoginInDatabase(User user) {
+        log.debug("Method started (checkForLoginInDatabase)");
+        String sqlQuery = "SELECT EXISTS (SELECT 1 FROM \"user\" WHERE login = ? AND user_id IS DISTINCT FROM ?)";
 
-            log.warn("This login = {} already exists. User not created.", login);
-            throw new ValidationException("Login = " + login + " уже существует. Пользователь не создан");
-        } catch (EmptyResultDataAccessException e) {
-            log.info("Login not found");
+        if (jdbcTemplate.queryForObject(sqlQuery, Boolean.class, user.getLogin(), user.getId())) {
+            log.warn("This login = {} already exists. User not saved.", user.getLogin());
+            throw new ValidationException("Login = " + user.getLogin() + " уже существует. Пользователь не " +
+                    (user.getId() == null ? "создан" : "обновлен"));
         }
     }
 }
@@ -1,3 +1,4 @@
+-- Скрипты идемпотентны: базы, созданные до перехода на миграции, принимаются без изменений
 CREATE TABLE IF NOT EXISTS "user" (
 	user_id BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
 	name VARCHAR(50) NOT NULL,
@@ -23,7 +24,8 @@ CREATE TABLE IF NOT EXISTS film (
 	description VARCHAR(200),
 	release_date DATE,
 	duration INTEGER NOT NULL,
-	rating_id INTEGER REFERENCES rating(rating_id)
+	rating_id INTEGER REFERENCES rating(rating_id),
+	like_count BIGINT NOT NULL DEFAULT 0
 );
 
 CREATE TABLE IF NOT EXISTS genre (
@@ -41,4 +43,8 @@ CREATE TABLE IF NOT EXISTS "like" (
 	film_id BIGINT REFERENCES film(film_id) ON DELETE CASCADE,
 	user_id BIGINT REFERENCES "user"(user_id) ON DELETE CASCADE,
 	CONSTRAINT likes_pk PRIMARY KEY (film_id, user_id)
-);
\ No newline at end of file
+);
+
+-- базы, созданные до появления счётчика: колонка добавляется и заполняется по уже поставленным лайкам
+ALTER TABLE film ADD COLUMN IF NOT EXISTS like_count BIGINT NOT NULL DEFAULT 0;
+UPDATE film f SET like_count = (SELECT COUNT(*) FROM "like" l WHERE l.film_id = f.film_id);
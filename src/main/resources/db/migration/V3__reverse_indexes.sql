@@ -0,0 +1,4 @@
+-- обратные индексы: лайки пользователя, подписчики пользователя и фильмы жанра
+CREATE INDEX IF NOT EXISTS like_user_film_idx ON "like" (user_id, film_id);
+CREATE INDEX IF NOT EXISTS friend_status_friend_user_idx ON friend_status (friend_id, user_id);
+CREATE INDEX IF NOT EXISTS film_genre_genre_film_idx ON film_genre (genre_id, film_id);
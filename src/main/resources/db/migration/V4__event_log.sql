@@ -0,0 +1,12 @@
+-- журнал действий пользователей: строки только добавляются пачками, id назначает приложение,
+-- ссылок на user и film нет, чтобы удаление пользователя или фильма не переписывало историю
+CREATE TABLE IF NOT EXISTS event (
+	event_id BIGINT PRIMARY KEY,
+	event_time BIGINT NOT NULL,
+	user_id BIGINT NOT NULL,
+	event_type VARCHAR(10) NOT NULL,
+	operation VARCHAR(10) NOT NULL,
+	entity_id BIGINT NOT NULL
+);
+
+CREATE INDEX IF NOT EXISTS event_user_event_idx ON event (user_id, event_id);
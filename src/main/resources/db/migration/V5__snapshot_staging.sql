@@ -0,0 +1,37 @@
+-- промежуточные таблицы восстановления снимка: снимок сначала целиком пишется сюда и проверяется теми же
+-- ограничениями, что и рабочие таблицы, и только потом заменяет их содержимое
+CREATE TABLE IF NOT EXISTS snapshot_user (
+	user_id BIGINT PRIMARY KEY,
+	name VARCHAR(50) NOT NULL,
+	email VARCHAR(255) NOT NULL UNIQUE,
+	login VARCHAR(255) NOT NULL UNIQUE,
+	birthday DATE NOT NULL
+);
+
+CREATE TABLE IF NOT EXISTS snapshot_friend_status (
+	user_id BIGINT NOT NULL REFERENCES snapshot_user(user_id),
+	friend_id BIGINT NOT NULL REFERENCES snapshot_user(user_id),
+	PRIMARY KEY (user_id, friend_id)
+);
+
+CREATE TABLE IF NOT EXISTS snapshot_film (
+	film_id BIGINT PRIMARY KEY,
+	name VARCHAR(50) NOT NULL UNIQUE,
+	description VARCHAR(200),
+	release_date DATE,
+	duration INTEGER NOT NULL,
+	rating_id INTEGER REFERENCES rating(rating_id),
+	like_count BIGINT NOT NULL
+);
+
+CREATE TABLE IF NOT EXISTS snapshot_film_genre (
+	film_id BIGINT NOT NULL REFERENCES snapshot_film(film_id),
+	genre_id INTEGER NOT NULL REFERENCES genre(genre_id),
+	PRIMARY KEY (film_id, genre_id)
+);
+
+CREATE TABLE IF NOT EXISTS snapshot_like (
+	film_id BIGINT NOT NULL REFERENCES snapshot_film(film_id),
+	user_id BIGINT NOT NULL REFERENCES snapshot_user(user_id),
+	PRIMARY KEY (film_id, user_id)
+);
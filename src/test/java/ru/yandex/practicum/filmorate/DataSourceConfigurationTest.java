@@ -0,0 +1,41 @@
+package ru.yandex.practicum.filmorate;
+
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.RequiredArgsConstructor;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import javax.sql.DataSource;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest
+@RequiredArgsConstructor(onConstructor_ = @Autowired)
+class DataSourceConfigurationTest {
+    private final DataSource dataSource;
+    private final JdbcTemplate jdbcTemplate;
+    private final MeterRegistry meterRegistry;
+
+    @Test
+    void testPoolIsConfigured() {
+        HikariDataSource hikari = (HikariDataSource) dataSource;
+
+        assertThat(hikari.getPoolName()).isEqualTo("filmorate");
+        assertThat(hikari.getMaximumPoolSize()).isEqualTo(16);
+        assertThat(jdbcTemplate.queryForObject("SELECT SETTING_VALUE FROM INFORMATION_SCHEMA.SETTINGS " +
+                "WHERE SETTING_NAME = 'QUERY_CACHE_SIZE'", String.class)).isEqualTo("256");
+    }
+
+    @Test
+    void testPoolWaitTimeIsReported() {
+        jdbcTemplate.queryForObject("SELECT 1", Integer.class);
+
+        Timer acquire = meterRegistry.find("hikaricp.connections.acquire").tag("pool", "filmorate").timer();
+        assertThat(acquire).isNotNull();
+        assertThat(acquire.count()).isPositive();
+    }
+}
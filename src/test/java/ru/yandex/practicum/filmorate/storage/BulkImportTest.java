@@ -0,0 +1,195 @@
+package ru.yandex.practicum.filmorate.storage;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.RequiredArgsConstructor;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.jdbc.JdbcTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import ru.yandex.practicum.filmorate.controller.JsonStreamReader;
+import ru.yandex.practicum.filmorate.model.BulkResult;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.storage.event.EventDbStorage;
+import ru.yandex.practicum.filmorate.storage.event.EventLog;
+import ru.yandex.practicum.filmorate.storage.film.CoLikeIndex;
+import ru.yandex.practicum.filmorate.storage.film.FilmDbStorage;
+import ru.yandex.practicum.filmorate.storage.film.FilmPopularityIndex;
+import ru.yandex.practicum.filmorate.storage.film.FilmSearchIndex;
+import ru.yandex.practicum.filmorate.storage.mappers.EventRowMapper;
+import ru.yandex.practicum.filmorate.storage.mappers.FilmRowMapper;
+import ru.yandex.practicum.filmorate.storage.mappers.GenreRowMapper;
+import ru.yandex.practicum.filmorate.storage.mappers.RatingRowMapper;
+import ru.yandex.practicum.filmorate.storage.mappers.UserRowMapper;
+import ru.yandex.practicum.filmorate.storage.user.FriendGraph;
+import ru.yandex.practicum.filmorate.storage.user.UserDbStorage;
+import ru.yandex.practicum.filmorate.validation.Validator;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
+
+@JdbcTest
+@AutoConfigureTestDatabase
+@RequiredArgsConstructor(onConstructor_ = @Autowired)
+@Import({FilmDbStorage.class, UserDbStorage.class, Validator.class, EntityCache.class, FilmRowMapper.class,
+        UserRowMapper.class, GenreDbStorage.class, GenreRowMapper.class, RatingDbStorage.class, RatingRowMapper.class,
+        FilmPopularityIndex.class, CoLikeIndex.class, FilmSearchIndex.class, EventLog.class, EventDbStorage.class,
+        EventRowMapper.class, EntityVersions.class, FriendGraph.class, StatementCounter.class})
+@Transactional(propagation = Propagation.NOT_SUPPORTED) // индексы меняются только после фиксации транзакции
+public class BulkImportTest {
+    private static final int CHUNK_SIZE = 2;
+    // как в приложении: модели без конструктора по умолчанию читаются через ParameterNamesModule
+    private static final ObjectMapper OBJECT_MAPPER = Jackson2ObjectMapperBuilder.json().build();
+
+    private final FilmDbStorage filmDbStorage;
+    private final UserDbStorage userDbStorage;
+    private final FilmPopularityIndex filmPopularityIndex;
+    private final JdbcTemplate jdbcTemplate;
+    private final JsonStreamReader jsonStreamReader = new JsonStreamReader(OBJECT_MAPPER, CHUNK_SIZE);
+
+    @AfterEach
+    public void tearDown() {
+        TestTables.clear(jdbcTemplate);
+    }
+
+    @Test
+    public void testFilmsFromJsonArray() {
+        String body = "[" + film("Первый", "[{\"id\":1},{\"id\":2},{\"id\":1}]") + ", " + film("Второй", "[]") +
+                ", " + film("Третий", "[{\"id\":3}]") + "]";
+
+        List<BulkResult> results = importFilms(body);
+
+        assertThat(results).extracting(BulkResult::getIndex, BulkResult::getError)
+                .containsExactly(tuple(0L, null), tuple(1L, null), tuple(2L, null));
+        Film first = filmDbStorage.findById(results.get(0).getId());
+        assertThat(first.getName()).isEqualTo("Первый");
+        assertThat(first.getGenres()).extracting("id").containsExactly(1, 2);
+        assertThat(filmDbStorage.findById(results.get(2).getId()).getGenres()).extracting("id").containsExactly(3);
+        assertThat(filmPopularityIndex.contains(results.get(1).getId())).isTrue();
+    }
+
+    @Test
+    public void testFilmErrorsAreReportedPerItem() {
+        filmDbStorage.createAll(List.of(parse(film("Уже есть", "[]"), Film.class)));
+        String body = String.join("\n",
+                film("Хороший", "[]"),
+                film("Хороший", "[]"),
+                film("", "[]"),
+                film("Уже есть", "[]"),
+                "{\"name\":\"Плохая дата\",\"releaseDate\":\"вчера\"}",
+                film("Неизвестный жанр", "[{\"id\":100}]"),
+                "{\"name\":\"Без рейтинга\",\"description\":\"Описание\",\"releaseDate\":\"2000-01-01\"," +
+                        "\"duration\":100}");
+
+        List<BulkResult> results = importFilms(body);
+
+        assertThat(results).extracting(BulkResult::getIndex).containsExactly(0L, 1L, 2L, 3L, 4L, 5L, 6L);
+        assertThat(results.get(0).getId()).isNotNull();
+        assertThat(results.subList(1, 7)).allSatisfy(result -> {
+            assertThat(result.getId()).isNull();
+            assertThat(result.getError()).isNotBlank();
+        });
+        assertThat(results.get(1).getError()).contains("уже есть в загрузке");
+        assertThat(results.get(3).getError()).contains("уже существует");
+        assertThat(results.get(4).getError()).startsWith("Некорректная запись");
+    }
+
+    @Test
+    public void testTooLongValuesDoNotFailTheChunk() {
+        String body = String.join("\n",
+                film("Соседний", "[]"),
+                film("Длинное название".repeat(4), "[]"));
+
+        List<BulkResult> results = importFilms(body);
+
+        assertThat(results.get(0).getId()).isNotNull();
+        assertThat(results.get(1).getError()).contains("превышает 50 символов");
+    }
+
+    @Test
+    public void testMalformedJsonStopsAfterSavedItems() {
+        String body = "[" + film("До ошибки", "[]") + ", {\"name\": ]";
+
+        List<BulkResult> results = importFilms(body);
+
+        assertThat(results).hasSize(2);
+        assertThat(results.get(0).getId()).isNotNull();
+        assertThat(results.get(1).getIndex()).isEqualTo(1);
+        assertThat(results.get(1).getError()).startsWith("Ошибка разбора JSON");
+    }
+
+    @Test
+    public void testUsersFromNdjson() {
+        String body = String.join("\n",
+                user("bulk1", "bulk1@mail.ru"),
+                user("bulk2", "bulk2@mail.ru"),
+                user("bulk3", "bulk1@mail.ru"),
+                user("bulk 4", "bulk4@mail.ru"),
+                user("bulk5", "bulk5@mail.ru"));
+
+        List<BulkResult> results = new ArrayList<>();
+        jsonStreamReader.read(stream(body), User.class, userDbStorage::createAll, results::add);
+
+        assertThat(results).extracting(BulkResult::getIndex).containsExactly(0L, 1L, 2L, 3L, 4L);
+        assertThat(results).filteredOn(result -> result.getError() == null).hasSize(3);
+        assertThat(results.get(2).getError()).contains("Email");
+        assertThat(userDbStorage.findById(results.get(4).getId()).getLogin()).isEqualTo("bulk5");
+    }
+
+    @Test
+    public void testStatementsGrowWithChunksNotItems() {
+        StatementCounter.reset();
+        importFilms(IntStream.range(0, CHUNK_SIZE)
+                .mapToObj(i -> film("Пачка А" + i, "[{\"id\":1}]"))
+                .collect(Collectors.joining("\n")));
+        int oneChunk = StatementCounter.count();
+
+        StatementCounter.reset();
+        importFilms(IntStream.range(0, CHUNK_SIZE * 5)
+                .mapToObj(i -> film("Пачка Б" + i, "[{\"id\":1}]"))
+                .collect(Collectors.joining("\n")));
+
+        assertThat(StatementCounter.count()).isEqualTo(oneChunk * 5);
+    }
+
+    private List<BulkResult> importFilms(String body) {
+        List<BulkResult> results = new ArrayList<>();
+        jsonStreamReader.read(stream(body), Film.class, filmDbStorage::createAll, results::add);
+        return results;
+    }
+
+    private static <T> T parse(String json, Class<T> type) {
+        try {
+            return OBJECT_MAPPER.readValue(json, type);
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static ByteArrayInputStream stream(String body) {
+        return new ByteArrayInputStream(body.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static String film(String name, String genres) {
+        return "{\"name\":\"" + name + "\",\"description\":\"Описание\",\"releaseDate\":\"2000-01-01\"," +
+                "\"duration\":100,\"mpa\":{\"id\":1},\"genres\":" + genres + "}";
+    }
+
+    private static String user(String login, String email) {
+        return "{\"name\":\"" + login + "\",\"email\":\"" + email + "\",\"login\":\"" + login + "\"," +
+                "\"birthday\":\"1990-01-01\"}";
+    }
+}
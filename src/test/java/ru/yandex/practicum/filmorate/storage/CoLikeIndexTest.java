@@ -0,0 +1,200 @@
+package ru.yandex.practicum.filmorate.storage;
+
+import lombok.RequiredArgsConstructor;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.jdbc.JdbcTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import ru.yandex.practicum.filmorate.exception.NotFoundException;
+import ru.yandex.practicum.filmorate.exception.ValidationException;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.Rating;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.service.FilmService;
+import ru.yandex.practicum.filmorate.storage.event.EventDbStorage;
+import ru.yandex.practicum.filmorate.storage.event.EventLog;
+import ru.yandex.practicum.filmorate.storage.film.CoLikeIndex;
+import ru.yandex.practicum.filmorate.storage.film.FilmDbStorage;
+import ru.yandex.practicum.filmorate.storage.film.FilmPopularityIndex;
+import ru.yandex.practicum.filmorate.storage.film.FilmSearchIndex;
+import ru.yandex.practicum.filmorate.storage.mappers.EventRowMapper;
+import ru.yandex.practicum.filmorate.storage.mappers.FilmRowMapper;
+import ru.yandex.practicum.filmorate.storage.mappers.GenreRowMapper;
+import ru.yandex.practicum.filmorate.storage.mappers.RatingRowMapper;
+import ru.yandex.practicum.filmorate.storage.mappers.UserRowMapper;
+import ru.yandex.practicum.filmorate.storage.user.FriendGraph;
+import ru.yandex.practicum.filmorate.storage.user.UserDbStorage;
+import ru.yandex.practicum.filmorate.validation.Validator;
+
+import java.time.LocalDate;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@JdbcTest
+@AutoConfigureTestDatabase
+@RequiredArgsConstructor(onConstructor_ = @Autowired)
+@Import({FilmDbStorage.class, UserDbStorage.class, FilmService.class, Validator.class, EntityCache.class,
+        FilmRowMapper.class, UserRowMapper.class, GenreDbStorage.class, GenreRowMapper.class, RatingDbStorage.class,
+        RatingRowMapper.class, FilmPopularityIndex.class, CoLikeIndex.class, FilmSearchIndex.class, EventLog.class,
+        EventDbStorage.class, EventRowMapper.class, EntityVersions.class, FriendGraph.class})
+@Transactional(propagation = Propagation.NOT_SUPPORTED) // индексы меняются только после фиксации транзакции
+public class CoLikeIndexTest {
+    private final FilmDbStorage filmDbStorage;
+    private final UserDbStorage userDbStorage;
+    private final FilmService filmService;
+    private final CoLikeIndex coLikeIndex;
+    private final JdbcTemplate jdbcTemplate;
+
+    @BeforeEach
+    public void setUp() {
+        coLikeIndex.reload(); // индекс - общий бин контекста и переживает откат транзакций других тестов
+    }
+
+    @AfterEach
+    public void tearDown() {
+        TestTables.clear(jdbcTemplate);
+    }
+
+    @Test
+    public void testRecommendsFilmsLikedTogether() {
+        List<Film> films = IntStream.rangeClosed(1, 5).mapToObj(i -> createFilm("Фильм " + i)).toList();
+        User user = createUser("first");
+        User similar = createUser("second");
+        User other = createUser("third");
+
+        like(user, films.get(0), films.get(1));
+        like(similar, films.get(0), films.get(1), films.get(2));
+        like(other, films.get(0), films.get(3));
+
+        assertThat(filmService.showRecommendations(user.getId()))
+                .extracting(Film::getId)
+                .containsExactly(films.get(2).getId(), films.get(3).getId());
+        assertThat(filmService.showRecommendations(user.getId(), 1L))
+                .extracting(Film::getName)
+                .containsExactly("Фильм 3");
+        assertThat(filmService.showRecommendations(createUser("fourth").getId())).isEmpty();
+    }
+
+    @Test
+    public void testIncrementalUpdatesMatchRebuild() {
+        List<Film> films = IntStream.rangeClosed(1, 8).mapToObj(i -> createFilm("Фильм " + i)).toList();
+        List<User> users = IntStream.rangeClosed(1, 6).mapToObj(i -> createUser("user" + i)).toList();
+        Random random = new Random(42);
+        for (int i = 0; i < 200; i++) {
+            Film film = films.get(random.nextInt(films.size()));
+            User user = users.get(random.nextInt(users.size()));
+            if (random.nextInt(3) == 0) {
+                filmService.removeLike(film.getId(), user.getId());
+            } else {
+                filmService.addLike(film.getId(), user.getId());
+            }
+        }
+        filmDbStorage.delete(films.get(0).getId());
+        userDbStorage.delete(users.get(0).getId());
+
+        Map<String, Integer> incremental = counts(films);
+        Map<String, List<Long>> recommendations = recommendations(users);
+        coLikeIndex.reload();
+
+        assertThat(incremental.values()).anyMatch(count -> count > 0);
+        assertThat(counts(films)).isEqualTo(incremental);
+        assertThat(recommendations(users)).isEqualTo(recommendations);
+    }
+
+    @Test
+    public void testDeletedFilmIsNotRecommended() {
+        Film first = createFilm("Первый фильм");
+        Film second = createFilm("Второй фильм");
+        User user = createUser("first");
+        User other = createUser("second");
+        like(user, first);
+        like(other, first, second);
+
+        filmDbStorage.delete(second.getId());
+
+        assertThat(filmService.showRecommendations(user.getId())).isEmpty();
+        assertThat(coLikeIndex.countCoLikes(first.getId(), second.getId())).isZero();
+    }
+
+    @Test
+    public void testUserWithTooManyLikesIsLeftOutOfPairs() {
+        CoLikeIndex index = new CoLikeIndex(null, null, 2, 1);
+        index.rebuild(new HashMap<>(Map.of(1L, new long[]{10, 20}, 2L, new long[]{10, 20, 30})));
+        assertThat(index.countCoLikes(10L, 20L)).isEqualTo(1);
+        assertThat(index.countCoLikes(20L, 30L)).isZero();
+
+        index.add(30L, 1L); // теперь у обоих пользователей по три лайка
+        assertThat(index.countCoLikes(10L, 20L)).isZero();
+
+        index.remove(10L, 2L);
+        assertThat(index.countCoLikes(20L, 30L)).isEqualTo(1);
+        assertThat(index.countCoLikes(30L, 20L)).isEqualTo(1);
+
+        index.remove(30L, 1L);
+        assertThat(index.recommend(2L, 10)).containsExactly(10L);
+        index.shutdown();
+    }
+
+    @Test
+    public void testRecommendationsRequireUserAndPositiveCount() {
+        User user = createUser("first");
+
+        assertThatThrownBy(() -> filmService.showRecommendations(-1L))
+                .isInstanceOf(NotFoundException.class);
+        assertThatThrownBy(() -> filmService.showRecommendations(user.getId(), 0L))
+                .isInstanceOf(ValidationException.class);
+    }
+
+    private Map<String, Integer> counts(List<Film> films) {
+        Map<String, Integer> counts = new HashMap<>();
+        for (Film film : films) {
+            for (Film other : films) {
+                counts.put(film.getId() + "-" + other.getId(), coLikeIndex.countCoLikes(film.getId(), other.getId()));
+            }
+        }
+        return counts;
+    }
+
+    private Map<String, List<Long>> recommendations(List<User> users) {
+        Map<String, List<Long>> recommendations = new HashMap<>();
+        users.forEach(user -> recommendations.put(user.getLogin(), coLikeIndex.recommend(user.getId(), 10)));
+        return recommendations;
+    }
+
+    private void like(User user, Film... films) {
+        for (Film film : films) {
+            filmService.addLike(film.getId(), user.getId());
+        }
+    }
+
+    private Film createFilm(String name) {
+        return filmDbStorage.create(Film.builder()
+                .name(name)
+                .description("Описание")
+                .releaseDate(LocalDate.of(2000, 1, 1))
+                .duration(100L)
+                .mpa(Rating.builder().id(1).build())
+                .build());
+    }
+
+    private User createUser(String login) {
+        return userDbStorage.create(User.builder()
+                .name(login)
+                .email(login + "@mail.ru")
+                .login(login)
+                .birthday(LocalDate.of(1990, 1, 1))
+                .build());
+    }
+}
@@ -0,0 +1,186 @@
+package ru.yandex.practicum.filmorate.storage;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import lombok.RequiredArgsConstructor;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.jdbc.JdbcTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.yandex.practicum.filmorate.exception.NotFoundException;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.Genre;
+import ru.yandex.practicum.filmorate.model.Rating;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.storage.event.EventDbStorage;
+import ru.yandex.practicum.filmorate.storage.event.EventLog;
+import ru.yandex.practicum.filmorate.storage.film.CoLikeIndex;
+import ru.yandex.practicum.filmorate.storage.film.FilmDbStorage;
+import ru.yandex.practicum.filmorate.storage.film.FilmPopularityIndex;
+import ru.yandex.practicum.filmorate.storage.film.FilmSearchIndex;
+import ru.yandex.practicum.filmorate.storage.mappers.EventRowMapper;
+import ru.yandex.practicum.filmorate.storage.mappers.FilmRowMapper;
+import ru.yandex.practicum.filmorate.storage.mappers.GenreRowMapper;
+import ru.yandex.practicum.filmorate.storage.mappers.RatingRowMapper;
+import ru.yandex.practicum.filmorate.storage.mappers.UserRowMapper;
+import ru.yandex.practicum.filmorate.storage.user.FriendGraph;
+import ru.yandex.practicum.filmorate.storage.user.UserDbStorage;
+import ru.yandex.practicum.filmorate.validation.Validator;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@JdbcTest
+@AutoConfigureTestDatabase
+@RequiredArgsConstructor(onConstructor_ = @Autowired)
+@TestPropertySource(properties = "filmorate.cache.films.max-memory=4KB")
+@Import({FilmDbStorage.class, UserDbStorage.class, Validator.class, EntityCache.class, FilmRowMapper.class,
+        UserRowMapper.class, GenreDbStorage.class, GenreRowMapper.class, RatingDbStorage.class, RatingRowMapper.class,
+        FilmPopularityIndex.class, CoLikeIndex.class, FilmSearchIndex.class, EventLog.class, EventDbStorage.class,
+        EventRowMapper.class, EntityVersions.class, FriendGraph.class, StatementCounter.class})
+@Transactional(propagation = Propagation.NOT_SUPPORTED) // кэш заполняется только вне транзакций
+public class EntityCacheTest {
+    private final FilmDbStorage filmDbStorage;
+    private final UserDbStorage userDbStorage;
+    private final Validator validator;
+    private final EntityCache entityCache;
+    private final TransactionTemplate transactionTemplate;
+
+    private final List<Film> films = new ArrayList<>();
+    private final List<User> users = new ArrayList<>();
+    private final MeterRegistry registry = new SimpleMeterRegistry();
+
+    @BeforeEach
+    public void setUp() {
+        entityCache.clear();
+        entityCache.bindTo(registry);
+        films.add(filmDbStorage.create(film("Кэш " + System.nanoTime())));
+        users.add(userDbStorage.create(user("cache" + System.nanoTime())));
+    }
+
+    @AfterEach
+    public void tearDown() {
+        films.forEach(film -> filmDbStorage.delete(film.getId()));
+        users.forEach(user -> userDbStorage.delete(user.getId()));
+    }
+
+    @Test
+    public void testHotFilmIsReadOnce() {
+        Long id = films.getFirst().getId();
+        StatementCounter.reset();
+        filmDbStorage.findById(id);
+        int firstRead = StatementCounter.count();
+
+        StatementCounter.reset();
+        IntStream.range(0, 100).forEach(i -> filmDbStorage.findById(id));
+
+        assertThat(firstRead).isPositive();
+        assertThat(StatementCounter.count()).isZero();
+        assertThat(registry.get("cache.gets").tags("cache", "films", "result", "hit").functionCounter().count())
+                .isEqualTo(100);
+    }
+
+    @Test
+    public void testUpdateEvictsFilm() {
+        Film film = filmDbStorage.findById(films.getFirst().getId());
+        Film changed = film(film.getName());
+        changed.setId(film.getId());
+        changed.setDescription("Новое описание");
+        changed.setGenres(List.of(Genre.builder().id(2).build()));
+
+        filmDbStorage.update(changed);
+
+        Film updated = filmDbStorage.findById(film.getId());
+        assertThat(updated.getDescription()).isEqualTo("Новое описание");
+        assertThat(updated.getGenres()).extracting(Genre::getId).containsExactly(2);
+    }
+
+    @Test
+    public void testRolledBackUpdateIsNotCached() {
+        Long id = films.getFirst().getId();
+        filmDbStorage.findById(id);
+
+        transactionTemplate.executeWithoutResult(status -> {
+            Film changed = film(films.getFirst().getName());
+            changed.setId(id);
+            changed.setDescription("Не сохранится");
+            Film updated = filmDbStorage.update(changed);
+            assertThat(updated.getDescription()).isEqualTo("Не сохранится");
+            status.setRollbackOnly();
+        });
+
+        assertThat(filmDbStorage.findById(id).getDescription()).isEqualTo("Описание");
+    }
+
+    @Test
+    public void testDeleteEvictsFilmAndUser() {
+        Film film = filmDbStorage.create(film("Удаляемый " + System.nanoTime()));
+        User user = userDbStorage.create(user("deleted" + System.nanoTime()));
+        filmDbStorage.findById(film.getId());
+        userDbStorage.findById(user.getId());
+
+        filmDbStorage.delete(film.getId());
+        userDbStorage.delete(user.getId());
+
+        assertThatThrownBy(() -> filmDbStorage.findById(film.getId())).isInstanceOf(NotFoundException.class);
+        assertThatThrownBy(() -> validator.checkForFilmInDatabase(film.getId())).isInstanceOf(NotFoundException.class);
+        assertThatThrownBy(() -> userDbStorage.findById(user.getId())).isInstanceOf(NotFoundException.class);
+        assertThatThrownBy(() -> validator.checkForUserInDatabase(user.getId()))
+                .isInstanceOf(NotFoundException.class);
+    }
+
+    @Test
+    public void testExistenceCheckUsesCache() {
+        Long id = users.getFirst().getId();
+        userDbStorage.findById(id);
+
+        StatementCounter.reset();
+        IntStream.range(0, 10).forEach(i -> validator.checkForUserInDatabase(id));
+
+        assertThat(StatementCounter.count()).isZero();
+    }
+
+    @Test
+    public void testCacheStaysWithinMaxMemory() {
+        IntStream.range(0, 40).forEach(i -> films.add(filmDbStorage.create(film("Вытеснение " + i + " " +
+                System.nanoTime()))));
+
+        films.forEach(film -> filmDbStorage.findById(film.getId()));
+
+        assertThat(registry.get("cache.weight").tag("cache", "films").gauge().value()).isBetween(1.0, 4096.0);
+        assertThat(registry.get("cache.evictions").tag("cache", "films").functionCounter().count()).isPositive();
+        assertThat(filmDbStorage.findById(films.getFirst().getId()).getId()).isEqualTo(films.getFirst().getId());
+    }
+
+    private Film film(String name) {
+        return Film.builder()
+                .name(name)
+                .description("Описание")
+                .releaseDate(LocalDate.of(2000, 1, 1))
+                .duration(100L)
+                .mpa(Rating.builder().id(1).build())
+                .genres(List.of(Genre.builder().id(1).build()))
+                .build();
+    }
+
+    private User user(String login) {
+        return User.builder()
+                .name(login)
+                .email(login + "@mail.ru")
+                .login(login)
+                .birthday(LocalDate.of(1990, 1, 1))
+                .build();
+    }
+}
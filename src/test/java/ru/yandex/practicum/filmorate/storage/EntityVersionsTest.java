@@ -0,0 +1,153 @@
+package ru.yandex.practicum.filmorate.storage;
+
+import lombok.RequiredArgsConstructor;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.jdbc.JdbcTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.Rating;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.storage.event.EventDbStorage;
+import ru.yandex.practicum.filmorate.storage.event.EventLog;
+import ru.yandex.practicum.filmorate.storage.film.CoLikeIndex;
+import ru.yandex.practicum.filmorate.storage.film.FilmDbStorage;
+import ru.yandex.practicum.filmorate.storage.film.FilmPopularityIndex;
+import ru.yandex.practicum.filmorate.storage.film.FilmSearchIndex;
+import ru.yandex.practicum.filmorate.storage.mappers.EventRowMapper;
+import ru.yandex.practicum.filmorate.storage.mappers.FilmRowMapper;
+import ru.yandex.practicum.filmorate.storage.mappers.GenreRowMapper;
+import ru.yandex.practicum.filmorate.storage.mappers.RatingRowMapper;
+import ru.yandex.practicum.filmorate.storage.mappers.UserRowMapper;
+import ru.yandex.practicum.filmorate.storage.user.FriendGraph;
+import ru.yandex.practicum.filmorate.storage.user.UserDbStorage;
+import ru.yandex.practicum.filmorate.validation.Validator;
+
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@JdbcTest
+@AutoConfigureTestDatabase
+@RequiredArgsConstructor(onConstructor_ = @Autowired)
+@Import({FilmDbStorage.class, UserDbStorage.class, Validator.class, EntityCache.class, FilmRowMapper.class,
+        UserRowMapper.class, GenreDbStorage.class, GenreRowMapper.class, RatingDbStorage.class, RatingRowMapper.class,
+        FilmPopularityIndex.class, CoLikeIndex.class, FilmSearchIndex.class, EventLog.class, EventDbStorage.class,
+        EventRowMapper.class, EntityVersions.class, FriendGraph.class})
+@Transactional(propagation = Propagation.NOT_SUPPORTED) // версии меняются только после фиксации транзакции
+public class EntityVersionsTest {
+    private final FilmDbStorage filmDbStorage;
+    private final UserDbStorage userDbStorage;
+    private final EntityVersions entityVersions;
+    private final TransactionTemplate transactionTemplate;
+
+    private Film film;
+    private Film other;
+    private User user;
+    private User friend;
+
+    @BeforeEach
+    public void setUp() {
+        film = filmDbStorage.create(film("Версия " + System.nanoTime()));
+        other = filmDbStorage.create(film("Другая версия " + System.nanoTime()));
+        user = userDbStorage.create(user("first" + System.nanoTime()));
+        friend = userDbStorage.create(user("second" + System.nanoTime()));
+    }
+
+    @AfterEach
+    public void tearDown() {
+        List.of(film, other).forEach(film -> filmDbStorage.delete(film.getId()));
+        List.of(user, friend).forEach(user -> userDbStorage.delete(user.getId()));
+    }
+
+    @Test
+    public void testFilmUpdateChangesOnlyItsTag() {
+        String filmTag = entityVersions.filmTag(film.getId());
+        String otherTag = entityVersions.filmTag(other.getId());
+        String popularTag = entityVersions.popularTag(10L, null, null);
+
+        film.setDescription("Новое описание");
+        filmDbStorage.update(film);
+
+        assertThat(entityVersions.filmTag(film.getId())).isNotEqualTo(filmTag);
+        assertThat(entityVersions.filmTag(other.getId())).isEqualTo(otherTag);
+        assertThat(entityVersions.popularTag(10L, null, null)).isNotEqualTo(popularTag);
+        assertThat(entityVersions.filmTag(film.getId())).startsWith("\"").endsWith("\"");
+    }
+
+    @Test
+    public void testRepeatedLikeKeepsTag() {
+        filmDbStorage.addLike(film.getId(), user.getId());
+        String filmTag = entityVersions.filmTag(film.getId());
+
+        filmDbStorage.addLike(film.getId(), user.getId());
+        assertThat(entityVersions.filmTag(film.getId())).isEqualTo(filmTag);
+
+        filmDbStorage.removeLike(film.getId(), user.getId());
+        assertThat(entityVersions.filmTag(film.getId())).isNotEqualTo(filmTag);
+    }
+
+    @Test
+    public void testFriendshipChangesBothUsers() {
+        String userTag = entityVersions.userTag(user.getId());
+        String friendTag = entityVersions.userTag(friend.getId());
+
+        userDbStorage.addFriend(user.getId(), friend.getId());
+
+        assertThat(entityVersions.userTag(user.getId())).isNotEqualTo(userTag);
+        assertThat(entityVersions.userTag(friend.getId())).isNotEqualTo(friendTag);
+    }
+
+    @Test
+    public void testRolledBackChangeKeepsTag() {
+        String filmTag = entityVersions.filmTag(film.getId());
+
+        transactionTemplate.executeWithoutResult(status -> {
+            film.setDescription("Не сохранится");
+            filmDbStorage.update(film);
+            // до фиксации читатель не должен получить новый тег вместе со старыми данными
+            assertThat(entityVersions.filmTag(film.getId())).isEqualTo(filmTag);
+            status.setRollbackOnly();
+        });
+
+        assertThat(entityVersions.filmTag(film.getId())).isEqualTo(filmTag);
+    }
+
+    @Test
+    public void testResetInvalidatesIssuedTags() {
+        String filmTag = entityVersions.filmTag(film.getId());
+        String genresTag = entityVersions.dictionaryTag("genres");
+
+        entityVersions.reset();
+
+        assertThat(entityVersions.filmTag(film.getId())).isNotEqualTo(filmTag);
+        assertThat(entityVersions.dictionaryTag("genres")).isNotEqualTo(genresTag);
+    }
+
+    private Film film(String name) {
+        return Film.builder()
+                .name(name)
+                .description("Описание")
+                .releaseDate(LocalDate.of(2000, 1, 1))
+                .duration(100L)
+                .mpa(Rating.builder().id(1).build())
+                .genres(List.of())
+                .build();
+    }
+
+    private User user(String login) {
+        return User.builder()
+                .name(login)
+                .email(login + "@mail.ru")
+                .login(login)
+                .birthday(LocalDate.of(1990, 1, 1))
+                .build();
+    }
+}
@@ -0,0 +1,171 @@
+package ru.yandex.practicum.filmorate.storage;
+
+import lombok.RequiredArgsConstructor;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.jdbc.JdbcTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.TestPropertySource;
+import ru.yandex.practicum.filmorate.exception.NotFoundException;
+import ru.yandex.practicum.filmorate.model.Event;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.Rating;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.service.FilmService;
+import ru.yandex.practicum.filmorate.service.UserService;
+import ru.yandex.practicum.filmorate.storage.event.EventDbStorage;
+import ru.yandex.practicum.filmorate.storage.event.EventLog;
+import ru.yandex.practicum.filmorate.storage.film.CoLikeIndex;
+import ru.yandex.practicum.filmorate.storage.film.FilmDbStorage;
+import ru.yandex.practicum.filmorate.storage.film.FilmPopularityIndex;
+import ru.yandex.practicum.filmorate.storage.film.FilmSearchIndex;
+import ru.yandex.practicum.filmorate.storage.mappers.EventRowMapper;
+import ru.yandex.practicum.filmorate.storage.mappers.FilmRowMapper;
+import ru.yandex.practicum.filmorate.storage.mappers.GenreRowMapper;
+import ru.yandex.practicum.filmorate.storage.mappers.RatingRowMapper;
+import ru.yandex.practicum.filmorate.storage.mappers.UserRowMapper;
+import ru.yandex.practicum.filmorate.storage.user.FriendGraph;
+import ru.yandex.practicum.filmorate.storage.user.UserDbStorage;
+import ru.yandex.practicum.filmorate.validation.Validator;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.tuple;
+
+@JdbcTest
+@AutoConfigureTestDatabase
+@RequiredArgsConstructor(onConstructor_ = @Autowired)
+@TestPropertySource(properties = {
+        "filmorate.feed.size=5",
+        // сбросы по расписанию шли бы в отдельной транзакции и не видели данных теста
+        "filmorate.feed.flush-interval-ms=3600000"})
+@Import({FilmDbStorage.class, UserDbStorage.class, FilmService.class, UserService.class, Validator.class,
+        EntityCache.class, FilmRowMapper.class, UserRowMapper.class, GenreDbStorage.class, GenreRowMapper.class,
+        RatingDbStorage.class, RatingRowMapper.class, FilmPopularityIndex.class, CoLikeIndex.class,
+        FilmSearchIndex.class, EventLog.class, EventDbStorage.class, EventRowMapper.class, EntityVersions.class,
+        FriendGraph.class})
+public class EventLogTest {
+    private static final AtomicInteger SEQUENCE = new AtomicInteger();
+
+    private final FilmDbStorage filmDbStorage;
+    private final UserDbStorage userDbStorage;
+    private final FilmService filmService;
+    private final UserService userService;
+    private final EventLog eventLog;
+    private final JdbcTemplate jdbcTemplate;
+
+    private User user;
+    private User friend;
+    private Film film;
+
+    @BeforeEach
+    public void setUp() {
+        eventLog.flush();
+        user = userDbStorage.create(user("user"));
+        friend = userDbStorage.create(user("friend"));
+        film = filmDbStorage.create(film());
+    }
+
+    @Test
+    public void testFeedContainsLikesAndFriendsOldestFirst() {
+        filmService.addLike(film.getId(), user.getId());
+        filmService.addLike(film.getId(), user.getId()); // повторный лайк ничего не меняет - события нет
+        userService.addFriend(user.getId(), friend.getId());
+        filmService.removeLike(film.getId(), user.getId());
+        userService.removeFriend(user.getId(), friend.getId());
+
+        List<Event> feed = userService.getFeed(user.getId());
+
+        assertThat(feed)
+                .extracting(Event::userId, Event::eventType, Event::operation, Event::entityId)
+                .containsExactly(
+                        tuple(user.getId(), Event.EventType.LIKE, Event.Operation.ADD, film.getId()),
+                        tuple(user.getId(), Event.EventType.FRIEND, Event.Operation.ADD, friend.getId()),
+                        tuple(user.getId(), Event.EventType.LIKE, Event.Operation.REMOVE, film.getId()),
+                        tuple(user.getId(), Event.EventType.FRIEND, Event.Operation.REMOVE, friend.getId()));
+        assertThat(feed).extracting(Event::eventId).isSorted();
+        assertThat(userService.getFeed(friend.getId())).isEmpty();
+    }
+
+    @Test
+    public void testEventsAreWrittenOnFlushAndReloaded() {
+        filmService.addLike(film.getId(), user.getId());
+        userService.addFriend(user.getId(), friend.getId());
+        List<Event> feed = userService.getFeed(user.getId());
+
+        assertThat(eventCount()).isZero();
+        assertThat(eventLog.flush()).isEqualTo(2);
+        assertThat(eventCount()).isEqualTo(2);
+
+        eventLog.clear(); // буферы пользователей заново читаются из таблицы
+        assertThat(userService.getFeed(user.getId())).isEqualTo(feed);
+
+        filmService.removeLike(film.getId(), user.getId()); // загруженный буфер получает событие сразу
+        assertThat(userService.getFeed(user.getId()))
+                .extracting(Event::operation)
+                .containsExactly(Event.Operation.ADD, Event.Operation.ADD, Event.Operation.REMOVE);
+    }
+
+    @Test
+    public void testFeedKeepsOnlyLastEvents() {
+        List<Film> films = List.of(film, filmDbStorage.create(film()), filmDbStorage.create(film()),
+                filmDbStorage.create(film()));
+        films.forEach(liked -> filmService.addLike(liked.getId(), user.getId()));
+        eventLog.flush();
+        films.forEach(liked -> filmService.removeLike(liked.getId(), user.getId()));
+
+        eventLog.clear(); // последние события - в очереди, предыдущие - в таблице
+        assertThat(userService.getFeed(user.getId()))
+                .extracting(Event::operation, Event::entityId)
+                .containsExactly(
+                        tuple(Event.Operation.ADD, films.get(3).getId()),
+                        tuple(Event.Operation.REMOVE, films.get(0).getId()),
+                        tuple(Event.Operation.REMOVE, films.get(1).getId()),
+                        tuple(Event.Operation.REMOVE, films.get(2).getId()),
+                        tuple(Event.Operation.REMOVE, films.get(3).getId()));
+
+        filmService.addLike(film.getId(), user.getId()); // полный буфер вытесняет самое старое событие
+        assertThat(userService.getFeed(user.getId()))
+                .hasSize(5)
+                .last()
+                .extracting(Event::operation, Event::entityId)
+                .containsExactly(Event.Operation.ADD, film.getId());
+    }
+
+    @Test
+    public void testFeedOfUnknownUser() {
+        assertThatThrownBy(() -> userService.getFeed(-1L))
+                .isInstanceOf(NotFoundException.class);
+    }
+
+    private Integer eventCount() {
+        return jdbcTemplate.queryForObject("SELECT COUNT(*) FROM event WHERE user_id = ?", Integer.class,
+                user.getId());
+    }
+
+    private Film film() {
+        return Film.builder()
+                .name("Фильм " + SEQUENCE.incrementAndGet())
+                .description("Описание")
+                .releaseDate(LocalDate.of(2000, 1, 1))
+                .duration(100L)
+                .mpa(Rating.builder().id(1).build())
+                .build();
+    }
+
+    private User user(String login) {
+        return User.builder()
+                .name(login)
+                .email(login + "@mail.ru")
+                .login(login)
+                .birthday(LocalDate.of(1990, 1, 1))
+                .build();
+    }
+}
@@ -12,7 +12,13 @@ import org.springframework.jdbc.core.JdbcTemplate;
 import ru.yandex.practicum.filmorate.model.Film;
 import ru.yandex.practicum.filmorate.model.Genre;
 import ru.yandex.practicum.filmorate.model.Rating;
+import ru.yandex.practicum.filmorate.storage.event.EventDbStorage;
+import ru.yandex.practicum.filmorate.storage.event.EventLog;
+import ru.yandex.practicum.filmorate.storage.film.CoLikeIndex;
 import ru.yandex.practicum.filmorate.storage.film.FilmDbStorage;
+import ru.yandex.practicum.filmorate.storage.film.FilmPopularityIndex;
+import ru.yandex.practicum.filmorate.storage.film.FilmSearchIndex;
+import ru.yandex.practicum.filmorate.storage.mappers.EventRowMapper;
 import ru.yandex.practicum.filmorate.storage.mappers.FilmRowMapper;
 import ru.yandex.practicum.filmorate.storage.mappers.GenreRowMapper;
 import ru.yandex.practicum.filmorate.storage.mappers.RatingRowMapper;
@@ -20,6 +26,7 @@ import ru.yandex.practicum.filmorate.validation.Validator;
 
 import java.sql.Date;
 import java.time.LocalDate;
+import java.util.ArrayList;
 import java.util.List;
 
 import static org.assertj.core.api.Assertions.assertThat;
@@ -28,8 +35,10 @@ import static org.assertj.core.api.Assertions.tuple;
 @JdbcTest
 @AutoConfigureTestDatabase
 @RequiredArgsConstructor(onConstructor_ = @Autowired)
-@Import({FilmDbStorage.class, Validator.class, FilmRowMapper.class, GenreDbStorage.class, GenreRowMapper.class,
-        RatingDbStorage.class, RatingRowMapper.class})
+@Import({FilmDbStorage.class, Validator.class, EntityCache.class, FilmRowMapper.class, GenreDbStorage.class,
+        GenreRowMapper.class, RatingDbStorage.class, RatingRowMapper.class, FilmPopularityIndex.class,
+        CoLikeIndex.class, FilmSearchIndex.class, EventLog.class, EventDbStorage.class, EventRowMapper.class,
+        EntityVersions.class})
 public class FilmDbStorageTest {
     private final FilmDbStorage filmDbStorage;
     private final FilmRowMapper filmRowMapper;
@@ -204,4 +213,70 @@ public class FilmDbStorageTest {
 
         assertThat(films).isEmpty();
     }
+
+    @Test
+    public void testCreateFilmWithDuplicateGenres() {
+        Film expectedFilm = Film.builder()
+                .name("Третий фильм")
+                .description("Описание третьего фильма")
+                .releaseDate(LocalDate.of(1975, 12, 1))
+                .duration(3000L)
+                .mpa(Rating.builder().id(1).build())
+                .genres(List.of(genre(2), genre(1), genre(2)))
+                .build();
+
+        Film film = filmDbStorage.create(expectedFilm);
+
+        assertThat(film.getGenres())
+                .extracting(Genre::getId)
+                .containsExactly(1, 2);
+    }
+
+    @Test
+    public void testUpdateFilmGenres() {
+        Film expectedFilm = filmDbStorage.findById(1L);
+        expectedFilm.setGenres(List.of(genre(2), genre(3), genre(3)));
+
+        filmDbStorage.update(expectedFilm);
+
+        List<Integer> genres = jdbcTemplate.queryForList(
+                "SELECT genre_id FROM film_genre WHERE film_id = ? ORDER BY genre_id", Integer.class, 1);
+        assertThat(genres).containsExactly(2, 3);
+
+        expectedFilm.setGenres(null);
+        filmDbStorage.update(expectedFilm);
+
+        assertThat(filmDbStorage.findById(1L).getGenres()).isEmpty();
+    }
+
+    @Test
+    public void testFindFilmsPage() {
+        assertThat(filmDbStorage.findPage(null, 1))
+                .extracting(Film::getId)
+                .containsExactly(1L);
+        assertThat(filmDbStorage.findPage(1L, 10))
+                .extracting(Film::getId, film -> film.getGenres().size())
+                .containsExactly(tuple(2L, 1));
+        assertThat(filmDbStorage.findPage(2L, 10)).isEmpty();
+    }
+
+    @Test
+    public void testForEachFilm() {
+        List<Film> films = new ArrayList<>();
+
+        filmDbStorage.forEach(films::add);
+
+        assertThat(films)
+                .extracting(Film::getId, film -> film.getGenres().stream().map(Genre::getId).toList())
+                .containsExactly(
+                        tuple(1L, List.of(1, 2)),
+                        tuple(2L, List.of(1))
+                );
+    }
+
+    private Genre genre(Integer id) {
+        return Genre.builder()
+                .id(id)
+                .build();
+    }
 }
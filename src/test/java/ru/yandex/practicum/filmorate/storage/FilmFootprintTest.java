@@ -0,0 +1,75 @@
+package ru.yandex.practicum.filmorate.storage;
+
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.Test;
+import org.openjdk.jol.info.GraphLayout;
+import ru.yandex.practicum.filmorate.model.CompactFilm;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.Genre;
+import ru.yandex.practicum.filmorate.model.Rating;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@Slf4j
+public class FilmFootprintTest {
+    private static final int FILMS = 10_000;
+    // как в DictionaryCache: жанры и рейтинги - общие экземпляры на всё приложение
+    private static final List<Genre> GENRES = IntStream.rangeClosed(1, 6)
+            .mapToObj(id -> Genre.builder().id(id).name("Жанр " + id).build())
+            .toList();
+    private static final List<Rating> RATINGS = IntStream.rangeClosed(1, 5)
+            .mapToObj(id -> Rating.builder().id(id).name("R" + id).build())
+            .toList();
+
+    static {
+        System.setProperty("jol.magicFieldOffset", "true"); // смещения полей записей JOL иначе получить не может
+    }
+
+    @Test
+    public void testCompactFilmTakesLessMemory() {
+        List<Film> films = IntStream.range(0, FILMS).mapToObj(FilmFootprintTest::film).toList();
+        List<CompactFilm> compactFilms = films.stream().map(CompactFilm::of).toList();
+        long dictionaries = GraphLayout.parseInstance(GENRES, RATINGS).totalSize();
+
+        long before = (GraphLayout.parseInstance(films.toArray()).totalSize() - dictionaries) / FILMS;
+        long after = (GraphLayout.parseInstance(compactFilms.toArray()).totalSize() - dictionaries) / FILMS;
+        long strings = GraphLayout.parseInstance(films.stream()
+                .flatMap(film -> Stream.of(film.getName(), film.getDescription()))
+                .toArray()).totalSize() / FILMS;
+        log.info("Bytes per film: Film={}, CompactFilm={}, of them strings={}", before, after, strings);
+
+        assertThat(after).isLessThan(before);
+        // без строк, которые у обоих представлений одинаковые, компактная запись меньше вдвое
+        assertThat(after - strings).isLessThan((before - strings) / 2);
+    }
+
+    @Test
+    public void testRoundTripAndSharedGenreSets() {
+        Film film = film(7);
+
+        CompactFilm first = CompactFilm.of(film);
+        CompactFilm second = CompactFilm.of(film(7 + GENRES.size()));
+
+        assertThat(first.toFilm(id -> GENRES.get(id - 1), id -> RATINGS.get(id - 1))).isEqualTo(film);
+        assertThat(first.genreIds()).isEqualTo(second.genreIds()).isNotSameAs(first.genreIds()); // наружу - копия
+        assertThat(first).isEqualTo(CompactFilm.of(film(7))); // record сравнивает массивы по ссылке: набор общий
+    }
+
+    private static Film film(int i) {
+        return Film.builder()
+                .id((long) i + 1000)
+                .name("Фильм " + i)
+                .description("Описание фильма " + i)
+                .releaseDate(LocalDate.of(1950, 1, 1).plusDays(i))
+                .duration(90L + i % 100)
+                .mpa(RATINGS.get(i % RATINGS.size()))
+                .genres(new ArrayList<>(GENRES.subList(i % GENRES.size(), i % GENRES.size() + (i % 3 == 0 ? 0 : 1))))
+                .build();
+    }
+}
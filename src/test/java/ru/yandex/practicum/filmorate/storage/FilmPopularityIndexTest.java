@@ -0,0 +1,218 @@
+package ru.yandex.practicum.filmorate.storage;
+
+import lombok.RequiredArgsConstructor;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.jdbc.JdbcTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import ru.yandex.practicum.filmorate.exception.ValidationException;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.Genre;
+import ru.yandex.practicum.filmorate.model.Rating;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.service.FilmService;
+import ru.yandex.practicum.filmorate.storage.event.EventDbStorage;
+import ru.yandex.practicum.filmorate.storage.event.EventLog;
+import ru.yandex.practicum.filmorate.storage.film.CoLikeIndex;
+import ru.yandex.practicum.filmorate.storage.film.FilmDbStorage;
+import ru.yandex.practicum.filmorate.storage.film.FilmPopularityIndex;
+import ru.yandex.practicum.filmorate.storage.film.FilmSearchIndex;
+import ru.yandex.practicum.filmorate.storage.mappers.EventRowMapper;
+import ru.yandex.practicum.filmorate.storage.mappers.FilmRowMapper;
+import ru.yandex.practicum.filmorate.storage.mappers.GenreRowMapper;
+import ru.yandex.practicum.filmorate.storage.mappers.RatingRowMapper;
+import ru.yandex.practicum.filmorate.storage.mappers.UserRowMapper;
+import ru.yandex.practicum.filmorate.storage.user.FriendGraph;
+import ru.yandex.practicum.filmorate.storage.user.UserDbStorage;
+import ru.yandex.practicum.filmorate.validation.Validator;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@JdbcTest
+@AutoConfigureTestDatabase
+@RequiredArgsConstructor(onConstructor_ = @Autowired)
+@Import({FilmDbStorage.class, UserDbStorage.class, FilmService.class, Validator.class, EntityCache.class,
+        FilmRowMapper.class, UserRowMapper.class, GenreDbStorage.class, GenreRowMapper.class, RatingDbStorage.class,
+        RatingRowMapper.class, FilmPopularityIndex.class, CoLikeIndex.class, FilmSearchIndex.class, EventLog.class,
+        EventDbStorage.class, EventRowMapper.class, EntityVersions.class, FriendGraph.class})
+@Transactional(propagation = Propagation.NOT_SUPPORTED) // индексы меняются только после фиксации транзакции
+public class FilmPopularityIndexTest {
+    private final FilmDbStorage filmDbStorage;
+    private final UserDbStorage userDbStorage;
+    private final FilmService filmService;
+    private final FilmPopularityIndex filmPopularityIndex;
+    private final JdbcTemplate jdbcTemplate;
+
+    @BeforeEach
+    public void setUp() {
+        filmPopularityIndex.reload();
+    }
+
+    @AfterEach
+    public void tearDown() {
+        TestTables.clear(jdbcTemplate);
+    }
+
+    @Test
+    public void testPopularFilmsOrderedByLikes() {
+        Film first = createFilm("Первый фильм");
+        Film second = createFilm("Второй фильм");
+        Film third = createFilm("Третий фильм");
+        User user1 = createUser("first");
+        User user2 = createUser("second");
+
+        filmService.addLike(second.getId(), user1.getId());
+        filmService.addLike(second.getId(), user2.getId());
+        filmService.addLike(third.getId(), user1.getId());
+
+        assertThat(filmService.showPopularFilms(2L))
+                .extracting(Film::getName)
+                .containsExactly("Второй фильм", "Третий фильм");
+        assertThat(filmService.showPopularFilms(10L))
+                .extracting(Film::getId)
+                .containsExactly(second.getId(), third.getId(), first.getId());
+    }
+
+    @Test
+    public void testPopularFilmsFilteredByGenreAndYear() {
+        Film comedy = createFilm("Комедия", 2023, 1);
+        Film oldComedy = createFilm("Старая комедия", 1999, 1);
+        Film drama = createFilm("Драма", 2023, 2);
+        Film comedyDrama = createFilm("Трагикомедия", 2023, 1, 2);
+        User user1 = createUser("first");
+        User user2 = createUser("second");
+
+        filmService.addLike(comedyDrama.getId(), user1.getId());
+        filmService.addLike(comedyDrama.getId(), user2.getId());
+        filmService.addLike(oldComedy.getId(), user1.getId());
+
+        assertThat(filmService.showPopularFilms(10L, 1, 2023))
+                .extracting(Film::getId)
+                .containsExactly(comedyDrama.getId(), comedy.getId());
+        assertThat(filmService.showPopularFilms(10L, 1, null))
+                .extracting(Film::getId)
+                .containsExactly(comedyDrama.getId(), oldComedy.getId(), comedy.getId());
+        assertThat(filmService.showPopularFilms(10L, null, 2023))
+                .extracting(Film::getId)
+                .containsExactly(comedyDrama.getId(), comedy.getId(), drama.getId());
+        assertThat(filmService.showPopularFilms(10L, 3, 2023)).isEmpty();
+    }
+
+    @Test
+    public void testUpdateMovesFilmBetweenGenresAndYears() {
+        Film film = createFilm("Комедия", 2023, 1);
+        User user = createUser("first");
+        filmService.addLike(film.getId(), user.getId());
+
+        film.setGenres(List.of(Genre.builder().id(2).build()));
+        film.setReleaseDate(LocalDate.of(2022, 5, 1));
+        filmDbStorage.update(film);
+
+        assertThat(filmService.showPopularFilms(10L, 1, 2023)).isEmpty();
+        assertThat(filmService.showPopularFilms(10L, 2, 2022)).extracting(Film::getId).containsExactly(film.getId());
+
+        filmPopularityIndex.reload(); // перестроенный по таблицам индекс раскладывает фильм так же
+        assertThat(filmService.showPopularFilms(10L, 2, 2022)).extracting(Film::getId).containsExactly(film.getId());
+        assertThat(filmService.showPopularFilms(10L, 2, null)).extracting(Film::getId).containsExactly(film.getId());
+    }
+
+    @Test
+    public void testFilmWithoutReleaseDateIsLoaded() {
+        Film film = createFilm("Без даты", 2023, 1);
+        jdbcTemplate.update("UPDATE film SET release_date = NULL WHERE film_id = ?", film.getId());
+
+        filmPopularityIndex.reload(); // фильм без даты не ломает загрузку и не попадает в корзины по годам
+
+        assertThat(filmPopularityIndex.findTop(10)).containsExactly(film.getId());
+        assertThat(filmPopularityIndex.findTop(10, 1, null)).containsExactly(film.getId());
+        assertThat(filmPopularityIndex.findTop(10, null, 2023)).isEmpty();
+        assertThat(filmPopularityIndex.findTop(10, 1, 2023)).isEmpty();
+    }
+
+    @Test
+    public void testLikeCountIsMaintained() {
+        Film film = createFilm("Первый фильм");
+        User user = createUser("first");
+
+        filmService.addLike(film.getId(), user.getId());
+        filmService.addLike(film.getId(), user.getId());
+        assertThat(likeCount(film)).isEqualTo(1);
+
+        filmService.removeLike(film.getId(), user.getId());
+        filmService.removeLike(film.getId(), user.getId());
+        assertThat(likeCount(film)).isZero();
+    }
+
+    @Test
+    public void testDeletingUserRemovesLikes() {
+        Film first = createFilm("Первый фильм");
+        Film second = createFilm("Второй фильм");
+        User user1 = createUser("first");
+        User user2 = createUser("second");
+
+        filmService.addLike(first.getId(), user1.getId());
+        filmService.addLike(second.getId(), user1.getId());
+        filmService.addLike(second.getId(), user2.getId());
+        userDbStorage.delete(user2.getId());
+
+        assertThat(likeCount(second)).isEqualTo(1);
+        assertThat(filmService.showPopularFilms(2L))
+                .extracting(Film::getId)
+                .containsExactly(first.getId(), second.getId());
+    }
+
+    @Test
+    public void testDefaultPageIsBoundedAndIncludesFilmsWithoutLikes() {
+        IntStream.rangeClosed(1, 15).forEach(i -> createFilm("Фильм " + i));
+
+        List<Film> films = filmService.showPopularFilms();
+
+        assertThat(films).hasSize(10);
+    }
+
+    @Test
+    public void testPopularFilmsCountMustBePositive() {
+        assertThatThrownBy(() -> filmService.showPopularFilms(0L))
+                .isInstanceOf(ValidationException.class);
+    }
+
+    private long likeCount(Film film) {
+        return jdbcTemplate.queryForObject("SELECT like_count FROM film WHERE film_id = ?", Long.class, film.getId());
+    }
+
+    private Film createFilm(String name) {
+        return createFilm(name, 2000);
+    }
+
+    private Film createFilm(String name, int year, Integer... genreIds) {
+        return filmDbStorage.create(Film.builder()
+                .name(name)
+                .description("Описание")
+                .releaseDate(LocalDate.of(year, 1, 1))
+                .duration(100L)
+                .mpa(Rating.builder().id(1).build())
+                .genres(Stream.of(genreIds).map(id -> Genre.builder().id(id).build()).toList())
+                .build());
+    }
+
+    private User createUser(String login) {
+        return userDbStorage.create(User.builder()
+                .name(login)
+                .email(login + "@mail.ru")
+                .login(login)
+                .birthday(LocalDate.of(1990, 1, 1))
+                .build());
+    }
+}
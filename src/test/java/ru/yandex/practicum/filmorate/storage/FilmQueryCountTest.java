@@ -0,0 +1,96 @@
+package ru.yandex.practicum.filmorate.storage;
+
+import lombok.RequiredArgsConstructor;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.jdbc.JdbcTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.service.FilmService;
+import ru.yandex.practicum.filmorate.storage.event.EventDbStorage;
+import ru.yandex.practicum.filmorate.storage.event.EventLog;
+import ru.yandex.practicum.filmorate.storage.film.CoLikeIndex;
+import ru.yandex.practicum.filmorate.storage.film.FilmDbStorage;
+import ru.yandex.practicum.filmorate.storage.film.FilmPopularityIndex;
+import ru.yandex.practicum.filmorate.storage.film.FilmSearchIndex;
+import ru.yandex.practicum.filmorate.storage.mappers.EventRowMapper;
+import ru.yandex.practicum.filmorate.storage.mappers.FilmRowMapper;
+import ru.yandex.practicum.filmorate.storage.mappers.GenreRowMapper;
+import ru.yandex.practicum.filmorate.storage.mappers.RatingRowMapper;
+import ru.yandex.practicum.filmorate.storage.mappers.UserRowMapper;
+import ru.yandex.practicum.filmorate.storage.user.FriendGraph;
+import ru.yandex.practicum.filmorate.storage.user.UserDbStorage;
+import ru.yandex.practicum.filmorate.validation.Validator;
+
+import java.util.List;
+import java.util.function.Supplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@JdbcTest
+@AutoConfigureTestDatabase
+@RequiredArgsConstructor(onConstructor_ = @Autowired)
+@Import({FilmDbStorage.class, UserDbStorage.class, FilmService.class, Validator.class, EntityCache.class,
+        FilmRowMapper.class, UserRowMapper.class, GenreDbStorage.class, GenreRowMapper.class, RatingDbStorage.class,
+        RatingRowMapper.class, FilmPopularityIndex.class, CoLikeIndex.class, FilmSearchIndex.class, EventLog.class,
+        EventDbStorage.class, EventRowMapper.class, EntityVersions.class, FriendGraph.class, StatementCounter.class})
+public class FilmQueryCountTest {
+    private final FilmDbStorage filmDbStorage;
+    private final FilmService filmService;
+    private final FilmPopularityIndex filmPopularityIndex;
+    private final JdbcTemplate jdbcTemplate;
+
+    @BeforeEach
+    public void setUp() {
+        jdbcTemplate.update("INSERT INTO \"user\" (name, email, login, birthday) " +
+                "VALUES('user', 'user@mail.ru', 'user', '1990-01-01')");
+    }
+
+    @Test
+    public void testFindAllRunsFixedNumberOfStatements() {
+        addFilms(10);
+        int smallCatalog = countStatements(() -> filmDbStorage.findAll()).size();
+        int statementsForSmallCatalog = StatementCounter.count();
+
+        addFilms(200);
+        int largeCatalog = countStatements(() -> filmDbStorage.findAll()).size();
+
+        assertThat(smallCatalog).isEqualTo(10);
+        assertThat(largeCatalog).isEqualTo(210);
+        assertThat(StatementCounter.count()).isEqualTo(statementsForSmallCatalog).isEqualTo(2);
+    }
+
+    @Test
+    public void testPopularFilmsRunsFixedNumberOfStatements() {
+        addFilms(10);
+        countStatements(() -> filmService.showPopularFilms(100L));
+        int statementsForSmallCatalog = StatementCounter.count();
+
+        addFilms(200);
+        List<Film> films = countStatements(() -> filmService.showPopularFilms(1000L));
+
+        assertThat(films).hasSize(210);
+        assertThat(films).allSatisfy(film -> assertThat(film.getGenres()).hasSize(2));
+        assertThat(StatementCounter.count()).isEqualTo(statementsForSmallCatalog).isEqualTo(2);
+    }
+
+    private List<Film> countStatements(Supplier<List<Film>> action) {
+        StatementCounter.reset();
+        return action.get();
+    }
+
+    private void addFilms(int count) {
+        Long offset = jdbcTemplate.queryForObject("SELECT COUNT(*) FROM film", Long.class);
+        for (long i = offset + 1; i <= offset + count; i++) {
+            jdbcTemplate.update("INSERT INTO film (film_id, name, description, release_date, duration, rating_id) " +
+                    "VALUES(?, ?, 'Описание', '2000-01-01', 100, 1)", i, "Фильм " + i);
+            jdbcTemplate.update("INSERT INTO film_genre (film_id, genre_id) VALUES(?, 1), (?, 2)", i, i);
+            jdbcTemplate.update("INSERT INTO \"like\" (film_id, user_id) " +
+                    "SELECT ?, user_id FROM \"user\"", i);
+        }
+        filmPopularityIndex.reload();
+    }
+}
@@ -0,0 +1,151 @@
+package ru.yandex.practicum.filmorate.storage;
+
+import lombok.RequiredArgsConstructor;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.jdbc.JdbcTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import ru.yandex.practicum.filmorate.exception.ValidationException;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.Rating;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.service.FilmService;
+import ru.yandex.practicum.filmorate.storage.event.EventDbStorage;
+import ru.yandex.practicum.filmorate.storage.event.EventLog;
+import ru.yandex.practicum.filmorate.storage.film.CoLikeIndex;
+import ru.yandex.practicum.filmorate.storage.film.FilmDbStorage;
+import ru.yandex.practicum.filmorate.storage.film.FilmPopularityIndex;
+import ru.yandex.practicum.filmorate.storage.film.FilmSearchIndex;
+import ru.yandex.practicum.filmorate.storage.mappers.EventRowMapper;
+import ru.yandex.practicum.filmorate.storage.mappers.FilmRowMapper;
+import ru.yandex.practicum.filmorate.storage.mappers.GenreRowMapper;
+import ru.yandex.practicum.filmorate.storage.mappers.RatingRowMapper;
+import ru.yandex.practicum.filmorate.storage.mappers.UserRowMapper;
+import ru.yandex.practicum.filmorate.storage.user.FriendGraph;
+import ru.yandex.practicum.filmorate.storage.user.UserDbStorage;
+import ru.yandex.practicum.filmorate.validation.Validator;
+
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@JdbcTest
+@AutoConfigureTestDatabase
+@RequiredArgsConstructor(onConstructor_ = @Autowired)
+@Import({FilmDbStorage.class, UserDbStorage.class, FilmService.class, Validator.class, EntityCache.class,
+        FilmRowMapper.class, UserRowMapper.class, GenreDbStorage.class, GenreRowMapper.class, RatingDbStorage.class,
+        RatingRowMapper.class, FilmPopularityIndex.class, CoLikeIndex.class, FilmSearchIndex.class, EventLog.class,
+        EventDbStorage.class, EventRowMapper.class, EntityVersions.class, FriendGraph.class})
+@Transactional(propagation = Propagation.NOT_SUPPORTED) // индексы меняются только после фиксации транзакции
+public class FilmSearchIndexTest {
+    private static final List<String> TITLE = List.of("title");
+    private static final List<String> TITLE_AND_DESCRIPTION = List.of("title", "description");
+
+    private final FilmDbStorage filmDbStorage;
+    private final UserDbStorage userDbStorage;
+    private final FilmService filmService;
+    private final FilmPopularityIndex filmPopularityIndex;
+    private final FilmSearchIndex filmSearchIndex;
+    private final JdbcTemplate jdbcTemplate;
+
+    @BeforeEach
+    public void setUp() { // индексы - общие бины контекста и переживают откат транзакций других тестов
+        filmPopularityIndex.reload();
+        filmSearchIndex.reload();
+    }
+
+    @AfterEach
+    public void tearDown() {
+        TestTables.clear(jdbcTemplate);
+    }
+
+    @Test
+    public void testSearchByTitlePrefixInCyrillicAndLatin() {
+        Film matrix = createFilm("Матрица: Перезагрузка", "Нео снова в Матрице");
+        Film terminator = createFilm("Terminator 2: Judgment Day", "Скайнет посылает T-1000");
+        createFilm("Ёлки", "Новогодняя комедия");
+
+        assertThat(filmService.searchFilms("матр", TITLE)).extracting(Film::getId).containsExactly(matrix.getId());
+        assertThat(filmService.searchFilms("TERM judg", TITLE)).extracting(Film::getId)
+                .containsExactly(terminator.getId());
+        assertThat(filmService.searchFilms("елки", TITLE)).extracting(Film::getName).containsExactly("Ёлки");
+        assertThat(filmService.searchFilms("матрица terminator", TITLE)).isEmpty(); // нужны все слова запроса
+        assertThat(filmService.searchFilms("скайнет", TITLE)).isEmpty();
+        assertThat(filmService.searchFilms("скайнет", TITLE_AND_DESCRIPTION)).extracting(Film::getId)
+                .containsExactly(terminator.getId());
+        assertThat(filmService.searchFilms("1000", List.of("description"))).extracting(Film::getId)
+                .containsExactly(terminator.getId());
+    }
+
+    @Test
+    public void testResultsRankedByLikes() {
+        Film first = createFilm("Крёстный отец", "Семья Корлеоне");
+        Film second = createFilm("Крёстный отец 2", "Молодость Вито");
+        Film third = createFilm("Крёстный отец 3", "Последняя часть");
+        User user1 = createUser("first");
+        User user2 = createUser("second");
+
+        filmService.addLike(third.getId(), user1.getId());
+        filmService.addLike(third.getId(), user2.getId());
+        filmService.addLike(second.getId(), user1.getId());
+
+        assertThat(filmService.searchFilms("крестный", TITLE)).extracting(Film::getId)
+                .containsExactly(third.getId(), second.getId(), first.getId());
+        assertThat(filmService.searchFilms("крестный", TITLE, 1L)).extracting(Film::getId)
+                .containsExactly(third.getId());
+    }
+
+    @Test
+    public void testIndexFollowsUpdateAndDelete() {
+        Film film = createFilm("Старое название", "Описание");
+
+        film.setName("Новое название");
+        filmDbStorage.update(film);
+        assertThat(filmService.searchFilms("старое", TITLE)).isEmpty();
+        assertThat(filmService.searchFilms("новое", TITLE)).extracting(Film::getId).containsExactly(film.getId());
+
+        filmSearchIndex.reload(); // перестроенный по таблице индекс находит то же самое
+        assertThat(filmService.searchFilms("новое", TITLE)).extracting(Film::getId).containsExactly(film.getId());
+
+        filmDbStorage.delete(film.getId());
+        assertThat(filmService.searchFilms("название", TITLE)).isEmpty();
+    }
+
+    @Test
+    public void testSearchRequiresQueryAndKnownFields() {
+        assertThatThrownBy(() -> filmService.searchFilms(" ", TITLE))
+                .isInstanceOf(ValidationException.class);
+        assertThatThrownBy(() -> filmService.searchFilms("фильм", List.of("director")))
+                .isInstanceOf(ValidationException.class);
+        assertThatThrownBy(() -> filmService.searchFilms("фильм", TITLE, 0L))
+                .isInstanceOf(ValidationException.class);
+        assertThat(filmService.searchFilms("!!!", TITLE)).isEmpty();
+    }
+
+    private Film createFilm(String name, String description) {
+        return filmDbStorage.create(Film.builder()
+                .name(name)
+                .description(description)
+                .releaseDate(LocalDate.of(2000, 1, 1))
+                .duration(100L)
+                .mpa(Rating.builder().id(1).build())
+                .build());
+    }
+
+    private User createUser(String login) {
+        return userDbStorage.create(User.builder()
+                .name(login)
+                .email(login + "@mail.ru")
+                .login(login)
+                .birthday(LocalDate.of(1990, 1, 1))
+                .build());
+    }
+}
@@ -6,12 +6,15 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
 import org.springframework.boot.test.autoconfigure.jdbc.JdbcTest;
 import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import ru.yandex.practicum.filmorate.exception.NotFoundException;
 import ru.yandex.practicum.filmorate.model.Genre;
 import ru.yandex.practicum.filmorate.storage.mappers.GenreRowMapper;
 
 import java.util.List;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
 import static org.assertj.core.api.Assertions.tuple;
 
 @JdbcTest
@@ -20,6 +23,7 @@ import static org.assertj.core.api.Assertions.tuple;
 @Import({GenreDbStorage.class, GenreRowMapper.class})
 public class GenreDbStorageTest {
     private final GenreDbStorage genreDbStorage;
+    private final JdbcTemplate jdbcTemplate;
 
     @Test
     public void testFindGenreById() {
@@ -47,4 +51,33 @@ public class GenreDbStorageTest {
                         tuple(6, "Боевик")
                 );
     }
-}
\ No newline at end of file
+
+    @Test
+    public void testGenreCacheCountsHitsAndMisses() {
+        long hits = genreDbStorage.getCacheHits();
+        long misses = genreDbStorage.getCacheMisses();
+
+        genreDbStorage.findById(2);
+        assertThatThrownBy(() -> genreDbStorage.findById(100))
+                .isInstanceOf(NotFoundException.class);
+
+        assertThat(genreDbStorage.getCacheHits()).isEqualTo(hits + 1);
+        assertThat(genreDbStorage.getCacheMisses()).isEqualTo(misses + 1);
+    }
+
+    @Test
+    public void testReloadGenres() {
+        jdbcTemplate.update("INSERT INTO genre (genre_id, name) VALUES (7, 'Фантастика')");
+
+        assertThatThrownBy(() -> genreDbStorage.findById(7))
+                .isInstanceOf(NotFoundException.class);
+
+        genreDbStorage.reload();
+
+        assertThat(genreDbStorage.findById(7))
+                .hasFieldOrPropertyWithValue("name", "Фантастика");
+
+        jdbcTemplate.update("DELETE FROM genre WHERE genre_id = 7");
+        genreDbStorage.reload();
+    }
+}
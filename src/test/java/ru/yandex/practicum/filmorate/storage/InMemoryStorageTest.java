@@ -0,0 +1,264 @@
+package ru.yandex.practicum.filmorate.storage;
+
+import lombok.RequiredArgsConstructor;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.jdbc.JdbcTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.ActiveProfiles;
+import ru.yandex.practicum.filmorate.exception.NotFoundException;
+import ru.yandex.practicum.filmorate.exception.ValidationException;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.Genre;
+import ru.yandex.practicum.filmorate.model.Rating;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.service.FilmService;
+import ru.yandex.practicum.filmorate.service.UserService;
+import ru.yandex.practicum.filmorate.storage.event.EventDbStorage;
+import ru.yandex.practicum.filmorate.storage.event.EventLog;
+import ru.yandex.practicum.filmorate.storage.film.CoLikeIndex;
+import ru.yandex.practicum.filmorate.storage.film.FilmPopularityIndex;
+import ru.yandex.practicum.filmorate.storage.film.FilmSearchIndex;
+import ru.yandex.practicum.filmorate.storage.film.FilmStorage;
+import ru.yandex.practicum.filmorate.storage.film.InMemoryFilmStorage;
+import ru.yandex.practicum.filmorate.storage.mappers.EventRowMapper;
+import ru.yandex.practicum.filmorate.storage.mappers.GenreRowMapper;
+import ru.yandex.practicum.filmorate.storage.mappers.RatingRowMapper;
+import ru.yandex.practicum.filmorate.storage.user.InMemoryUserStorage;
+import ru.yandex.practicum.filmorate.storage.user.UserStorage;
+import ru.yandex.practicum.filmorate.validation.Validator;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@JdbcTest
+@AutoConfigureTestDatabase
+@ActiveProfiles("in-memory")
+@RequiredArgsConstructor(onConstructor_ = @Autowired)
+@Import({InMemoryFilmStorage.class, InMemoryUserStorage.class, FilmService.class, UserService.class, Validator.class,
+        EntityCache.class, GenreDbStorage.class, GenreRowMapper.class, RatingDbStorage.class, RatingRowMapper.class,
+        FilmPopularityIndex.class, CoLikeIndex.class, FilmSearchIndex.class, EventLog.class, EventDbStorage.class,
+        EventRowMapper.class, EntityVersions.class})
+public class InMemoryStorageTest {
+    private static final AtomicInteger SEQUENCE = new AtomicInteger();
+
+    private final FilmStorage filmStorage;
+    private final UserStorage userStorage;
+    private final FilmService filmService;
+    private final UserService userService;
+    private final FilmPopularityIndex filmPopularityIndex;
+
+    @BeforeEach
+    public void setUp() {
+        filmPopularityIndex.reload(); // индекс общий для контекста, начинаем каждый тест с пустого рейтинга
+    }
+
+    @Test
+    public void testFilmIsStoredWithDictionaryValues() {
+        Film film = filmStorage.create(film(List.of(genre(2), genre(1), genre(2))));
+
+        Film found = filmStorage.findById(film.getId());
+        assertThat(found.getMpa().getName()).isNotBlank();
+        assertThat(found.getGenres()).extracting(Genre::getId).containsExactly(1, 2);
+
+        Film sameName = film(List.of());
+        sameName.setName(film.getName());
+        assertThat(filmStorage.create(sameName).getId()).isEqualTo(film.getId());
+        assertThat(filmStorage.findById(film.getId()).getGenres()).isEmpty();
+    }
+
+    @Test
+    public void testUnknownFilmAndUser() {
+        User user = userStorage.create(user());
+
+        assertThatThrownBy(() -> filmStorage.findById(-1L)).isInstanceOf(NotFoundException.class);
+        assertThatThrownBy(() -> filmService.addLike(-1L, user.getId())).isInstanceOf(NotFoundException.class);
+        assertThatThrownBy(() -> userService.addFriend(user.getId(), -1L)).isInstanceOf(NotFoundException.class);
+    }
+
+    @Test
+    public void testDuplicateEmailAndLoginAreReported() {
+        User user = userStorage.create(user());
+        User sameEmail = user();
+        sameEmail.setEmail(user.getEmail());
+        User sameLogin = user();
+        sameLogin.setLogin(user.getLogin());
+
+        assertThatThrownBy(() -> userStorage.create(sameEmail))
+                .isInstanceOf(ValidationException.class)
+                .hasMessageContaining("Email");
+        assertThatThrownBy(() -> userStorage.create(sameLogin))
+                .isInstanceOf(ValidationException.class)
+                .hasMessageContaining("Login");
+    }
+
+    @Test
+    public void testFriendsAndCommonFriends() {
+        User first = userStorage.create(user());
+        User second = userStorage.create(user());
+        User common = userStorage.create(user());
+
+        userService.addFriend(first.getId(), second.getId());
+        userService.addFriend(first.getId(), common.getId());
+        userService.addFriend(second.getId(), common.getId());
+
+        assertThat(userService.getFriends(first.getId())).extracting(User::getId)
+                .containsExactly(second.getId(), common.getId());
+        assertThat(userService.getFriends(second.getId())).extracting(User::getId)
+                .containsExactly(common.getId());
+        assertThat(userService.mutualFriends(first.getId(), second.getId())).extracting(User::getId)
+                .containsExactly(common.getId());
+
+        userStorage.delete(common.getId());
+        assertThat(userService.getFriends(first.getId())).extracting(User::getId)
+                .containsExactly(second.getId());
+    }
+
+    @Test
+    public void testRemovingFriendWhoWasNeverAdded() {
+        User user = userStorage.create(user());
+        User stranger = userStorage.create(user());
+
+        userService.removeFriend(user.getId(), stranger.getId()); // ни у кого ещё нет наборов друзей и подписчиков
+
+        userService.addFriend(stranger.getId(), user.getId());
+        userService.removeFriend(user.getId(), stranger.getId());
+        assertThat(userService.getFriends(stranger.getId())).extracting(User::getId)
+                .containsExactly(user.getId());
+        assertThat(userService.getFriends(user.getId())).isEmpty();
+    }
+
+    @Test
+    public void testPopularFilmsFollowLikes() {
+        Film first = filmStorage.create(film(List.of()));
+        Film second = filmStorage.create(film(List.of()));
+        User user = userStorage.create(user());
+        User other = userStorage.create(user());
+
+        filmService.addLike(second.getId(), user.getId());
+        filmService.addLike(second.getId(), user.getId());
+        filmService.addLike(first.getId(), other.getId());
+        filmService.addLike(second.getId(), other.getId());
+        assertThat(filmService.showPopularFilms(2L)).extracting(Film::getId)
+                .containsExactly(second.getId(), first.getId());
+
+        userStorage.delete(other.getId());
+        filmService.removeLike(second.getId(), user.getId());
+        assertThat(filmService.showPopularFilms(2L)).extracting(Film::getId)
+                .containsExactly(first.getId(), second.getId());
+    }
+
+    @Test
+    public void testConcurrentWritesKeepIndexesConsistent() throws Exception {
+        Film film = filmStorage.create(film(List.of()));
+        List<User> users = IntStream.range(0, 50)
+                .mapToObj(i -> userStorage.create(user()))
+                .toList();
+        User duplicate = user();
+
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<?>> futures = users.stream()
+                    .<Future<?>>map(user -> executor.submit(() -> filmService.addLike(film.getId(), user.getId())))
+                    .toList();
+            List<Future<Boolean>> creates = IntStream.range(0, 8)
+                    .mapToObj(i -> executor.submit(() -> {
+                        try {
+                            userStorage.create(user(duplicate.getLogin()));
+                            return true;
+                        } catch (ValidationException e) {
+                            return false;
+                        }
+                    }))
+                    .toList();
+            for (Future<?> future : futures) {
+                future.get();
+            }
+            long created = 0;
+            for (Future<Boolean> create : creates) {
+                created += create.get() ? 1 : 0;
+            }
+
+            assertThat(created).isEqualTo(1);
+        } finally {
+            executor.shutdown();
+        }
+
+        filmStorage.create(film(List.of()));
+        assertThat(filmService.showPopularFilms(1L)).extracting(Film::getId).containsExactly(film.getId());
+        users.forEach(user -> filmService.removeLike(film.getId(), user.getId()));
+        assertThat(filmService.showPopularFilms(1L)).extracting(Film::getId).containsExactly(film.getId());
+    }
+
+    @Test
+    public void testConcurrentFilmAndUserDeletes() throws Exception {
+        List<Film> films = IntStream.range(0, 20)
+                .mapToObj(i -> filmStorage.create(film(List.of())))
+                .toList();
+        List<User> users = IntStream.range(0, 20)
+                .mapToObj(i -> userStorage.create(user()))
+                .toList();
+        films.forEach(film -> users.forEach(user -> filmService.addLike(film.getId(), user.getId())));
+        filmService.removeLike(films.get(0).getId(), userStorage.create(user()).getId()); // лайка не было
+
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<?>> deletes = new ArrayList<>();
+            for (int i = 0; i < films.size(); i++) { // фильм и его поклонник удаляются одновременно
+                Long filmId = films.get(i).getId();
+                Long userId = users.get(i).getId();
+                deletes.add(executor.submit(() -> filmStorage.delete(filmId)));
+                deletes.add(executor.submit(() -> userStorage.delete(userId)));
+            }
+            for (Future<?> delete : deletes) {
+                delete.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+
+        films.forEach(film -> assertThat(filmPopularityIndex.contains(film.getId())).isFalse());
+        assertThat(filmService.showPopularFilms(1L)).isEmpty();
+    }
+
+    private Film film(List<Genre> genres) {
+        return Film.builder()
+                .name("Фильм " + SEQUENCE.incrementAndGet())
+                .description("Описание")
+                .releaseDate(LocalDate.of(2000, 1, 1))
+                .duration(100L)
+                .mpa(Rating.builder().id(1).build())
+                .genres(genres)
+                .build();
+    }
+
+    private Genre genre(int id) {
+        return Genre.builder()
+                .id(id)
+                .build();
+    }
+
+    private User user() {
+        return user("user" + SEQUENCE.incrementAndGet());
+    }
+
+    private User user(String login) {
+        return User.builder()
+                .name(login)
+                .email(login + "@mail.ru")
+                .login(login)
+                .birthday(LocalDate.of(1990, 1, 1))
+                .build();
+    }
+}
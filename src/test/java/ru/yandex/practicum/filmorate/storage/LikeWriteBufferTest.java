@@ -0,0 +1,203 @@
+package ru.yandex.practicum.filmorate.storage;
+
+import lombok.RequiredArgsConstructor;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.jdbc.JdbcTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import ru.yandex.practicum.filmorate.exception.NotFoundException;
+import ru.yandex.practicum.filmorate.model.Event;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.Rating;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.service.FilmService;
+import ru.yandex.practicum.filmorate.storage.event.EventDbStorage;
+import ru.yandex.practicum.filmorate.storage.event.EventLog;
+import ru.yandex.practicum.filmorate.storage.film.CoLikeIndex;
+import ru.yandex.practicum.filmorate.storage.film.FilmDbStorage;
+import ru.yandex.practicum.filmorate.storage.film.FilmPopularityIndex;
+import ru.yandex.practicum.filmorate.storage.film.FilmSearchIndex;
+import ru.yandex.practicum.filmorate.storage.film.LikeWriteBuffer;
+import ru.yandex.practicum.filmorate.storage.mappers.EventRowMapper;
+import ru.yandex.practicum.filmorate.storage.mappers.FilmRowMapper;
+import ru.yandex.practicum.filmorate.storage.mappers.GenreRowMapper;
+import ru.yandex.practicum.filmorate.storage.mappers.RatingRowMapper;
+import ru.yandex.practicum.filmorate.storage.mappers.UserRowMapper;
+import ru.yandex.practicum.filmorate.storage.user.FriendGraph;
+import ru.yandex.practicum.filmorate.storage.user.UserDbStorage;
+import ru.yandex.practicum.filmorate.validation.Validator;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.tuple;
+
+@JdbcTest
+@AutoConfigureTestDatabase
+@RequiredArgsConstructor(onConstructor_ = @Autowired)
+@TestPropertySource(properties = {
+        "filmorate.likes.write-behind.enabled=true",
+        "filmorate.likes.write-behind.capacity=3",
+        "filmorate.likes.write-behind.batch-size=2",
+        // сбросы по расписанию шли бы параллельно с тестом
+        "filmorate.likes.write-behind.flush-interval-ms=3600000"})
+@Import({FilmDbStorage.class, UserDbStorage.class, FilmService.class, LikeWriteBuffer.class, Validator.class,
+        EntityCache.class, FilmRowMapper.class, UserRowMapper.class, GenreDbStorage.class, GenreRowMapper.class,
+        RatingDbStorage.class, RatingRowMapper.class, FilmPopularityIndex.class, CoLikeIndex.class,
+        FilmSearchIndex.class, EventLog.class, EventDbStorage.class, EventRowMapper.class, EntityVersions.class,
+        FriendGraph.class, StatementCounter.class})
+@Transactional(propagation = Propagation.NOT_SUPPORTED) // индексы меняются только после фиксации транзакции
+public class LikeWriteBufferTest {
+    private final FilmDbStorage filmDbStorage;
+    private final UserDbStorage userDbStorage;
+    private final FilmService filmService;
+    private final LikeWriteBuffer likeWriteBuffer;
+    private final FilmPopularityIndex filmPopularityIndex;
+    private final EventLog eventLog;
+    private final JdbcTemplate jdbcTemplate;
+
+    private Film film;
+    private List<User> users;
+
+    @BeforeEach
+    public void setUp() { // индекс - общий бин контекста и помнит фильмы других тестов
+        filmPopularityIndex.reload();
+        likeWriteBuffer.flush();
+        film = filmDbStorage.create(film());
+        users = IntStream.range(0, 10).mapToObj(i -> userDbStorage.create(user())).toList();
+    }
+
+    @AfterEach
+    public void tearDown() {
+        TestTables.clear(jdbcTemplate);
+    }
+
+    @Test
+    public void testLikeIsWrittenOnFlush() {
+        filmService.addLike(film.getId(), users.get(0).getId());
+
+        assertThat(likeCount()).isZero();
+        assertThat(likeWriteBuffer.flush()).isEqualTo(1);
+        assertThat(likeCount()).isEqualTo(1);
+        assertThat(storedLikeCount()).isEqualTo(1);
+        assertThat(filmService.showPopularFilms(1L))
+                .extracting(Film::getId)
+                .containsExactly(film.getId());
+    }
+
+    @Test
+    public void testLikeAndUnlikeAreCoalesced() {
+        Long userId = users.get(0).getId();
+        filmService.addLike(film.getId(), userId);
+        filmService.removeLike(film.getId(), userId);
+        filmService.addLike(film.getId(), userId);
+        filmService.removeLike(film.getId(), userId);
+
+        assertThat(likeWriteBuffer.size()).isEqualTo(1);
+        likeWriteBuffer.flush();
+        assertThat(likeCount()).isZero();
+        assertThat(storedLikeCount()).isZero();
+    }
+
+    @Test
+    public void testUnknownFilmOrUserIsRejectedImmediately() {
+        assertThatThrownBy(() -> filmService.addLike(-1L, users.get(0).getId()))
+                .isInstanceOf(NotFoundException.class)
+                .hasMessageContaining("фильма");
+        assertThatThrownBy(() -> filmService.removeLike(film.getId(), -1L))
+                .isInstanceOf(NotFoundException.class)
+                .hasMessageContaining("пользователя");
+        assertThat(likeWriteBuffer.size()).isZero();
+    }
+
+    @Test
+    public void testFullBufferIsFlushedByCaller() {
+        users.subList(0, 4).forEach(user -> filmService.addLike(film.getId(), user.getId()));
+
+        assertThat(likeWriteBuffer.size()).isEqualTo(1);
+        assertThat(likeCount()).isEqualTo(3);
+    }
+
+    @Test
+    public void testFlushStatementsDoNotGrowWithLikesInBatch() {
+        filmService.addLike(film.getId(), users.get(0).getId());
+        StatementCounter.reset();
+        likeWriteBuffer.flush();
+        int oneLike = StatementCounter.count();
+
+        users.subList(1, 3).forEach(user -> filmService.addLike(film.getId(), user.getId()));
+        StatementCounter.reset();
+        likeWriteBuffer.flush();
+
+        assertThat(StatementCounter.count()).isEqualTo(oneLike);
+        assertThat(likeCount()).isEqualTo(3);
+    }
+
+    @Test
+    public void testDrainWritesEverything() {
+        users.subList(0, 3).forEach(user -> filmService.addLike(film.getId(), user.getId()));
+
+        likeWriteBuffer.drain();
+
+        assertThat(likeWriteBuffer.size()).isZero();
+        assertThat(likeCount()).isEqualTo(3);
+    }
+
+    @Test
+    public void testFeedGetsOnlyAppliedLikes() {
+        Long liker = users.get(0).getId();
+        Long stranger = users.get(1).getId();
+        filmService.addLike(film.getId(), liker);
+        likeWriteBuffer.flush();
+
+        filmService.addLike(film.getId(), liker); // повторный лайк
+        filmService.removeLike(film.getId(), stranger); // лайка не было
+        likeWriteBuffer.flush();
+
+        assertThat(eventLog.findFeed(liker))
+                .extracting(Event::operation, Event::entityId)
+                .containsExactly(tuple(Event.Operation.ADD, film.getId()));
+        assertThat(eventLog.findFeed(stranger)).isEmpty();
+    }
+
+    private int likeCount() {
+        return jdbcTemplate.queryForObject("SELECT COUNT(*) FROM \"like\" WHERE film_id = ?", Integer.class,
+                film.getId());
+    }
+
+    private int storedLikeCount() {
+        return jdbcTemplate.queryForObject("SELECT like_count FROM film WHERE film_id = ?", Integer.class,
+                film.getId());
+    }
+
+    private Film film() {
+        return Film.builder()
+                .name("Фильм " + System.nanoTime())
+                .description("Описание")
+                .releaseDate(LocalDate.of(2000, 1, 1))
+                .duration(100L)
+                .mpa(Rating.builder().id(1).build())
+                .genres(List.of())
+                .build();
+    }
+
+    private User user() {
+        String login = "buffer" + System.nanoTime();
+        return User.builder()
+                .name(login)
+                .email(login + "@mail.ru")
+                .login(login)
+                .birthday(LocalDate.of(1990, 1, 1))
+                .build();
+    }
+}
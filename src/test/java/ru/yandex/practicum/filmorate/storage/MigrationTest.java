@@ -0,0 +1,72 @@
+package ru.yandex.practicum.filmorate.storage;
+
+import lombok.RequiredArgsConstructor;
+import org.flywaydb.core.Flyway;
+import org.flywaydb.core.api.MigrationInfo;
+import org.h2.Driver;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.jdbc.JdbcTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.SimpleDriverDataSource;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@JdbcTest
+@AutoConfigureTestDatabase
+@RequiredArgsConstructor(onConstructor_ = @Autowired)
+public class MigrationTest {
+    private final Flyway flyway;
+    private final JdbcTemplate jdbcTemplate;
+
+    @Test
+    public void testMigrationsAreAppliedOnce() {
+        assertThat(Arrays.stream(flyway.info().applied()).map(MigrationInfo::getVersion).map(Object::toString))
+                .containsExactly("1", "2", "3", "4", "5");
+        assertThat(flyway.info().pending()).isEmpty();
+
+        assertThat(flyway.migrate().migrationsExecuted).isZero(); // повторный запуск схему не трогает
+    }
+
+    @Test
+    public void testDictionariesAreLoaded() {
+        assertThat(jdbcTemplate.queryForObject("SELECT COUNT(*) FROM rating", Integer.class)).isEqualTo(5);
+        assertThat(jdbcTemplate.queryForObject("SELECT COUNT(*) FROM genre", Integer.class)).isEqualTo(6);
+    }
+
+    @Test
+    public void testLegacyDatabaseGetsLikeCounts() { // база spring.sql.init без like_count и без истории Flyway
+        SimpleDriverDataSource dataSource = new SimpleDriverDataSource(new Driver(),
+                "jdbc:h2:mem:legacy;DB_CLOSE_DELAY=-1", "sa", "");
+        JdbcTemplate legacy = new JdbcTemplate(dataSource);
+        legacy.execute("CREATE TABLE \"user\" (user_id BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY, " +
+                "name VARCHAR(50) NOT NULL, email VARCHAR(255) NOT NULL UNIQUE, login VARCHAR(255) NOT NULL UNIQUE, " +
+                "birthday DATE NOT NULL)");
+        legacy.execute("CREATE TABLE rating (rating_id INTEGER GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY, " +
+                "name VARCHAR(20) UNIQUE)");
+        legacy.execute("CREATE TABLE film (film_id BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY, " +
+                "name VARCHAR(50) NOT NULL UNIQUE, description VARCHAR(200), release_date DATE, " +
+                "duration INTEGER NOT NULL, rating_id INTEGER REFERENCES rating(rating_id))");
+        legacy.execute("CREATE TABLE \"like\" (film_id BIGINT REFERENCES film(film_id) ON DELETE CASCADE, " +
+                "user_id BIGINT REFERENCES \"user\"(user_id) ON DELETE CASCADE, PRIMARY KEY (film_id, user_id))");
+        List.of(1, 2).forEach(id -> legacy.update("INSERT INTO \"user\" (name, email, login, birthday) " +
+                "VALUES (?, ?, ?, '1990-01-01')", "user" + id, "user" + id + "@mail.ru", "user" + id));
+        List.of(1, 2).forEach(id -> legacy.update("INSERT INTO film (name, duration) VALUES (?, 100)", "Фильм " + id));
+        legacy.update("INSERT INTO \"like\" (film_id, user_id) VALUES (1, 1), (1, 2), (2, 2)");
+
+        Flyway.configure()
+                .dataSource(dataSource)
+                .baselineOnMigrate(true)
+                .baselineVersion("0")
+                .load()
+                .migrate();
+
+        assertThat(legacy.queryForList("SELECT like_count FROM film ORDER BY film_id", Long.class))
+                .containsExactly(2L, 1L);
+        legacy.execute("SHUTDOWN");
+    }
+}
@@ -0,0 +1,95 @@
+package ru.yandex.practicum.filmorate.storage;
+
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingStream;
+import lombok.RequiredArgsConstructor;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.Rating;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.service.FilmService;
+import ru.yandex.practicum.filmorate.service.UserService;
+import ru.yandex.practicum.filmorate.storage.film.FilmStorage;
+import ru.yandex.practicum.filmorate.storage.user.FriendGraph;
+import ru.yandex.practicum.filmorate.storage.user.UserStorage;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
+
+// Смешанная нагрузка на сервисы из тысяч виртуальных потоков, общая для хранилищ в памяти и в базе;
+// возвращает события JFR о закреплении виртуального потока за несущим
+@RequiredArgsConstructor
+public class PinningWorkload {
+    private static final AtomicInteger SEQUENCE = new AtomicInteger();
+
+    private final FilmStorage filmStorage;
+    private final UserStorage userStorage;
+    private final FilmService filmService;
+    private final UserService userService;
+    private final FriendGraph friendGraph;
+
+    public List<RecordedEvent> run(int tasks) {
+        List<Film> films = IntStream.range(0, 20).mapToObj(i -> filmStorage.create(film())).toList();
+        List<User> users = IntStream.range(0, 200).mapToObj(i -> userStorage.create(user())).toList();
+        List<RecordedEvent> pinned = new CopyOnWriteArrayList<>();
+
+        try (RecordingStream recording = new RecordingStream()) {
+            // порог 0: фиксируется любая парковка виртуального потока внутри synchronized
+            recording.enable("jdk.VirtualThreadPinned").withThreshold(Duration.ZERO).withStackTrace();
+            recording.onEvent("jdk.VirtualThreadPinned", pinned::add);
+            recording.startAsync();
+
+            try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+                for (int i = 0; i < tasks; i++) {
+                    executor.submit(() -> work(films, users));
+                }
+            }
+            recording.stop();
+        }
+        return pinned;
+    }
+
+    private void work(List<Film> films, List<User> users) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        Long filmId = films.get(random.nextInt(films.size())).getId();
+        Long userId = users.get(random.nextInt(users.size())).getId();
+        Long otherId = users.get(random.nextInt(users.size())).getId();
+
+        switch (random.nextInt(5)) {
+            case 0 -> filmService.addLike(filmId, userId);
+            case 1 -> filmService.removeLike(filmId, userId);
+            case 2 -> userService.addFriend(userId, otherId);
+            case 3 -> friendGraph.add(userId, otherId);
+            default -> userStorage.create(user()); // write-блокировка хранилища пользователей
+        }
+        filmService.showPopularFilms();
+        userService.mutualFriends(userId, otherId);
+    }
+
+    private static Film film() {
+        return Film.builder()
+                .name("Фильм " + SEQUENCE.incrementAndGet())
+                .description("Описание")
+                .releaseDate(LocalDate.of(2000, 1, 1))
+                .duration(100L)
+                .mpa(Rating.builder().id(1).build())
+                .genres(List.of())
+                .build();
+    }
+
+    private static User user() {
+        String login = "virtual" + SEQUENCE.incrementAndGet();
+        return User.builder()
+                .name(login)
+                .email(login + "@mail.ru")
+                .login(login)
+                .birthday(LocalDate.of(1990, 1, 1))
+                .build();
+    }
+}
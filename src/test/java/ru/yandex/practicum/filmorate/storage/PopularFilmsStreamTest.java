@@ -0,0 +1,195 @@
+package ru.yandex.practicum.filmorate.storage;
+
+import lombok.RequiredArgsConstructor;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.jdbc.JdbcTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import ru.yandex.practicum.filmorate.exception.ValidationException;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.Rating;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.service.FilmService;
+import ru.yandex.practicum.filmorate.service.PopularFilmsStream;
+import ru.yandex.practicum.filmorate.service.PopularFilmsStream.Position;
+import ru.yandex.practicum.filmorate.service.PopularFilmsStream.Update;
+import ru.yandex.practicum.filmorate.storage.event.EventDbStorage;
+import ru.yandex.practicum.filmorate.storage.event.EventLog;
+import ru.yandex.practicum.filmorate.storage.film.CoLikeIndex;
+import ru.yandex.practicum.filmorate.storage.film.FilmDbStorage;
+import ru.yandex.practicum.filmorate.storage.film.FilmPopularityIndex;
+import ru.yandex.practicum.filmorate.storage.film.FilmSearchIndex;
+import ru.yandex.practicum.filmorate.storage.mappers.EventRowMapper;
+import ru.yandex.practicum.filmorate.storage.mappers.FilmRowMapper;
+import ru.yandex.practicum.filmorate.storage.mappers.GenreRowMapper;
+import ru.yandex.practicum.filmorate.storage.mappers.RatingRowMapper;
+import ru.yandex.practicum.filmorate.storage.mappers.UserRowMapper;
+import ru.yandex.practicum.filmorate.storage.user.FriendGraph;
+import ru.yandex.practicum.filmorate.storage.user.UserDbStorage;
+import ru.yandex.practicum.filmorate.validation.Validator;
+
+import java.io.IOException;
+import java.time.LocalDate;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@JdbcTest
+@AutoConfigureTestDatabase
+@RequiredArgsConstructor(onConstructor_ = @Autowired)
+@TestPropertySource(properties = {
+        "filmorate.popular.stream.client-buffer=2",
+        // рассылка по расписанию шла бы параллельно с тестом, окна здесь закрываются вызовом publish()
+        "filmorate.popular.stream.window-ms=3600000"})
+@Import({FilmDbStorage.class, UserDbStorage.class, FilmService.class, PopularFilmsStream.class, Validator.class,
+        EntityCache.class, FilmRowMapper.class, UserRowMapper.class, GenreDbStorage.class, GenreRowMapper.class,
+        RatingDbStorage.class, RatingRowMapper.class, FilmPopularityIndex.class, CoLikeIndex.class,
+        FilmSearchIndex.class, EventLog.class, EventDbStorage.class, EventRowMapper.class, EntityVersions.class,
+        FriendGraph.class})
+@Transactional(propagation = Propagation.NOT_SUPPORTED) // индексы меняются только после фиксации транзакции
+public class PopularFilmsStreamTest {
+    private static final AtomicInteger SEQUENCE = new AtomicInteger();
+
+    private final FilmDbStorage filmDbStorage;
+    private final UserDbStorage userDbStorage;
+    private final FilmService filmService;
+    private final FilmPopularityIndex filmPopularityIndex;
+    private final PopularFilmsStream popularFilmsStream;
+    private final JdbcTemplate jdbcTemplate;
+
+    @BeforeEach
+    public void setUp() { // индекс - общий бин контекста и переживает откат транзакций других тестов
+        filmPopularityIndex.reload();
+        popularFilmsStream.publish();
+    }
+
+    @AfterEach
+    public void shutDown() {
+        popularFilmsStream.close();
+        TestTables.clear(jdbcTemplate);
+    }
+
+    @Test
+    public void testSnapshotThenChangedPositionsOnly() throws InterruptedException {
+        Film first = createFilm();
+        Film second = createFilm();
+        Film third = createFilm();
+        Film fourth = createFilm();
+        User user1 = createUser("first");
+        User user2 = createUser("second");
+        filmService.addLike(first.getId(), user1.getId());
+        filmService.addLike(first.getId(), user2.getId());
+        filmService.addLike(second.getId(), user1.getId());
+
+        RecordingEmitter emitter = new RecordingEmitter(new CountDownLatch(0));
+        popularFilmsStream.subscribe(emitter, 2L, null, null);
+
+        assertThat(emitter.next().ranking()).containsExactly(
+                new Position(1, first.getId(), 2),
+                new Position(2, second.getId(), 1));
+        assertThat(popularFilmsStream.publish()).isZero(); // рейтинг не менялся с момента подписки
+
+        filmService.addLike(third.getId(), user1.getId()); // два лайка в одном окне - одно обновление
+        filmService.addLike(third.getId(), user2.getId());
+        assertThat(popularFilmsStream.publish()).isEqualTo(1);
+        Update update = emitter.next();
+        assertThat(update.ranking()).containsExactly(new Position(2, third.getId(), 2));
+        assertThat(update.removed()).containsExactly(second.getId());
+
+        filmService.addLike(fourth.getId(), user1.getId()); // ниже второго места - подписчику ничего не уходит
+        assertThat(popularFilmsStream.publish()).isZero();
+        assertThat(emitter.updates.poll(100, TimeUnit.MILLISECONDS)).isNull();
+    }
+
+    @Test
+    public void testSlowSubscriberIsDropped() throws InterruptedException {
+        Film film = createFilm();
+        RecordingEmitter fast = new RecordingEmitter(new CountDownLatch(0));
+        RecordingEmitter slow = new RecordingEmitter(new CountDownLatch(1)); // не отправляет, пока не отпустят
+        popularFilmsStream.subscribe(fast, 1L, null, null);
+        popularFilmsStream.subscribe(slow, 1L, null, null);
+        assertThat(popularFilmsStream.subscribers()).isEqualTo(2);
+        assertThat(fast.next().ranking()).containsExactly(new Position(1, film.getId(), 0));
+
+        // очередь медленного подписчика на два сообщения переполняется не позже третьего обновления
+        for (long likes = 1; likes <= 3; likes++) {
+            filmService.addLike(film.getId(), createUser("user" + likes).getId());
+            popularFilmsStream.publish();
+            assertThat(fast.next().ranking()).containsExactly(new Position(1, film.getId(), likes));
+        }
+
+        assertThat(popularFilmsStream.subscribers()).isEqualTo(1);
+    }
+
+    @Test
+    public void testStreamSizeIsValidated() {
+        assertThatThrownBy(() -> popularFilmsStream.subscribe(0L, null, null))
+                .isInstanceOf(ValidationException.class);
+        assertThatThrownBy(() -> popularFilmsStream.subscribe(1000L, null, null))
+                .isInstanceOf(ValidationException.class);
+        assertThat(popularFilmsStream.subscribers()).isZero();
+    }
+
+    private Film createFilm() {
+        return filmDbStorage.create(Film.builder()
+                .name("Фильм " + SEQUENCE.incrementAndGet())
+                .description("Описание")
+                .releaseDate(LocalDate.of(2000, 1, 1))
+                .duration(100L)
+                .mpa(Rating.builder().id(1).build())
+                .build());
+    }
+
+    private User createUser(String login) {
+        return userDbStorage.create(User.builder()
+                .name(login)
+                .email(login + "@mail.ru")
+                .login(login)
+                .birthday(LocalDate.of(1990, 1, 1))
+                .build());
+    }
+
+    // Запоминает отправленные обновления вместо записи в ответ, release задерживает отправку
+    private static class RecordingEmitter extends SseEmitter {
+        private final BlockingQueue<Update> updates = new LinkedBlockingQueue<>();
+        private final CountDownLatch release;
+
+        RecordingEmitter(CountDownLatch release) {
+            this.release = release;
+        }
+
+        @Override
+        public void send(SseEventBuilder builder) throws IOException {
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException(e);
+            }
+            builder.build().stream()
+                    .map(DataWithMediaType::getData)
+                    .filter(Update.class::isInstance)
+                    .map(Update.class::cast)
+                    .forEach(updates::add);
+        }
+
+        Update next() throws InterruptedException {
+            Update update = updates.poll(5, TimeUnit.SECONDS);
+            assertThat(update).isNotNull();
+            return update;
+        }
+    }
+}
@@ -0,0 +1,91 @@
+package ru.yandex.practicum.filmorate.storage;
+
+import lombok.RequiredArgsConstructor;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.jdbc.JdbcTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@JdbcTest
+@AutoConfigureTestDatabase
+@RequiredArgsConstructor(onConstructor_ = @Autowired)
+public class QueryPlanTest {
+    private static final Long[] IDS = {1L, 2L, 3L};
+
+    private final JdbcTemplate jdbcTemplate;
+
+    @Test
+    public void testReverseIndexesExist() {
+        String sqlQuery = "SELECT LOWER(index_name) FROM information_schema.indexes WHERE table_schema = 'PUBLIC'";
+
+        assertThat(jdbcTemplate.queryForList(sqlQuery, String.class))
+                .contains("like_user_film_idx", "friend_status_friend_user_idx", "film_genre_genre_film_idx");
+    }
+
+    @Test
+    public void testLikesOfUserUseReverseIndex() { // удаление пользователя: его лайки и пересчёт счётчиков
+        assertThat(explain("SELECT film_id FROM \"like\" WHERE user_id = ?", 1L))
+                .contains("LIKE_USER_FILM_IDX: USER_ID =");
+        assertThat(explain("UPDATE film SET like_count = like_count - 1 " +
+                "WHERE film_id IN (SELECT film_id FROM \"like\" WHERE user_id = ?)", 1L))
+                .contains("LIKE_USER_FILM_IDX: USER_ID =")
+                .doesNotContain("tableScan");
+    }
+
+    @Test
+    public void testFollowersUseReverseIndex() {
+        assertThat(explain("SELECT user_id FROM friend_status WHERE friend_id = ?", 1L))
+                .contains("FRIEND_STATUS_FRIEND_USER_IDX: FRIEND_ID =");
+    }
+
+    @Test
+    public void testFilmsOfGenreUseReverseIndex() {
+        assertThat(explain("SELECT film_id FROM film_genre WHERE genre_id = ?", 1))
+                .contains("FILM_GENRE_GENRE_FILM_IDX: GENRE_ID =");
+    }
+
+    @Test
+    public void testWriteQueriesUseIndexLookups() {
+        List.of(
+                explain("INSERT INTO \"like\" (film_id, user_id)\n" +
+                        "SELECT ?, ? WHERE NOT EXISTS (SELECT 1 FROM \"like\" WHERE film_id = ? AND user_id = ?)",
+                        1L, 1L, 1L, 1L),
+                explain("DELETE FROM \"like\" WHERE film_id = ? AND user_id = ?", 1L, 1L),
+                explain("UPDATE film SET like_count = like_count + 1 WHERE film_id = ?", 1L),
+                explain("INSERT INTO friend_status (user_id, friend_id)\n" +
+                        "SELECT ?, ? WHERE NOT EXISTS (SELECT 1 FROM friend_status WHERE user_id = ? AND friend_id = ?)",
+                        1L, 2L, 1L, 2L),
+                explain("DELETE FROM friend_status WHERE user_id = ? AND friend_id = ?", 1L, 2L),
+                explain("SELECT EXISTS (SELECT 1 FROM \"user\" WHERE email = ? AND user_id IS DISTINCT FROM ?)",
+                        "a@mail.ru", 1L),
+                explain("SELECT EXISTS (SELECT 1 FROM \"user\" WHERE login = ? AND user_id IS DISTINCT FROM ?)",
+                        "a", 1L)
+        ).forEach(plan -> assertThat(plan).doesNotContain("tableScan"));
+    }
+
+    @Test
+    public void testBatchedReadsUseIndexLookups() {
+        assertThat(explain("SELECT * FROM \"user\" WHERE user_id = ANY(?) ORDER BY user_id", (Object) IDS))
+                .contains("PRIMARY_KEY")
+                .doesNotContain("tableScan");
+        assertThat(explain("SELECT * FROM film WHERE film_id = ANY(?)", (Object) IDS))
+                .doesNotContain("tableScan");
+        assertThat(explain("SELECT film_id, genre_id\n" +
+                "FROM film_genre\n" +
+                "WHERE film_id = ANY(?)\n" +
+                "ORDER BY film_id, genre_id", (Object) IDS))
+                .doesNotContain("tableScan");
+        assertThat(explain("SELECT * FROM film WHERE film_id > ? ORDER BY film_id LIMIT ?", 0L, 10))
+                .contains("index sorted")
+                .doesNotContain("tableScan");
+    }
+
+    private String explain(String sqlQuery, Object... args) {
+        return jdbcTemplate.queryForObject("EXPLAIN " + sqlQuery, String.class, args);
+    }
+}
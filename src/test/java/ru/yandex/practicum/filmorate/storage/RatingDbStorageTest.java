@@ -6,12 +6,14 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
 import org.springframework.boot.test.autoconfigure.jdbc.JdbcTest;
 import org.springframework.context.annotation.Import;
+import ru.yandex.practicum.filmorate.exception.NotFoundException;
 import ru.yandex.practicum.filmorate.model.Rating;
 import ru.yandex.practicum.filmorate.storage.mappers.RatingRowMapper;
 
 import java.util.List;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
 import static org.assertj.core.api.Assertions.tuple;
 
 @JdbcTest
@@ -46,4 +48,17 @@ public class RatingDbStorageTest {
                         tuple(5, "NC-17")
                 );
     }
+
+    @Test
+    public void testRatingCacheCountsHitsAndMisses() {
+        long hits = ratingDbStorage.getCacheHits();
+        long misses = ratingDbStorage.getCacheMisses();
+
+        ratingDbStorage.findById(3);
+        assertThatThrownBy(() -> ratingDbStorage.findById(0))
+                .isInstanceOf(NotFoundException.class);
+
+        assertThat(ratingDbStorage.getCacheHits()).isEqualTo(hits + 1);
+        assertThat(ratingDbStorage.getCacheMisses()).isEqualTo(misses + 1);
+    }
 }
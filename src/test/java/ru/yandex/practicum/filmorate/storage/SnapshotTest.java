@@ -0,0 +1,186 @@
+package ru.yandex.practicum.filmorate.storage;
+
+import lombok.RequiredArgsConstructor;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.jdbc.JdbcTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import ru.yandex.practicum.filmorate.exception.ValidationException;
+import ru.yandex.practicum.filmorate.storage.snapshot.SnapshotDbStorage;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.sql.Date;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@JdbcTest
+@AutoConfigureTestDatabase
+@RequiredArgsConstructor(onConstructor_ = @Autowired)
+@Import({SnapshotDbStorage.class})
+@Transactional(propagation = Propagation.NOT_SUPPORTED) // TRUNCATE в восстановлении всё равно фиксирует транзакцию
+public class SnapshotTest {
+    private static final List<String> TABLES = List.of(
+            "SELECT * FROM \"user\" ORDER BY user_id",
+            "SELECT * FROM friend_status ORDER BY user_id, friend_id",
+            "SELECT * FROM film ORDER BY film_id",
+            "SELECT * FROM film_genre ORDER BY film_id, genre_id",
+            "SELECT * FROM \"like\" ORDER BY film_id, user_id");
+
+    private final SnapshotDbStorage snapshotDbStorage;
+    private final JdbcTemplate jdbcTemplate;
+
+    @TempDir
+    private Path directory;
+
+    @BeforeEach
+    public void setUp() {
+        TestTables.clear(jdbcTemplate);
+        String sqlQueryUser = "INSERT INTO \"user\" (user_id, name, email, login, birthday) VALUES (?, ?, ?, ?, ?)";
+        String sqlQueryFilm = "INSERT INTO film (film_id, name, description, release_date, duration, rating_id, " +
+                "like_count) VALUES (?, ?, ?, ?, ?, ?, ?)";
+
+        for (long id = 1; id <= 300; id++) {
+            jdbcTemplate.update(sqlQueryUser, id * 3, "Пользователь " + id, "user" + id + "@mail.ru", "user" + id,
+                    Date.valueOf(LocalDate.of(1960, 1, 1).plusDays(id * 97)));
+            jdbcTemplate.update(sqlQueryFilm, id * 1000, "Фильм «" + id + "»", "Описание ".repeat((int) id % 20),
+                    Date.valueOf(LocalDate.of(1900, 1, 1).plusDays(id * 131)), id, id % 5 + 1, 1);
+            jdbcTemplate.update("INSERT INTO film_genre (film_id, genre_id) VALUES (?, ?)", id * 1000, id % 6 + 1);
+            jdbcTemplate.update("INSERT INTO \"like\" (film_id, user_id) VALUES (?, ?)", id * 1000, id * 3);
+            if (id > 1) {
+                jdbcTemplate.update("INSERT INTO friend_status (user_id, friend_id) VALUES (?, ?)", id * 3, 3);
+            }
+        }
+        jdbcTemplate.update(sqlQueryFilm, 1, "Без описания", null, null, 0, null, 0);
+    }
+
+    @Test
+    public void testExportAndRestoreRoundTrip() throws IOException {
+        List<List<Map<String, Object>>> before = dump();
+        Path file = directory.resolve("filmorate.snapshot");
+
+        long exported;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+            exported = snapshotDbStorage.export(channel);
+        }
+        jdbcTemplate.update("DELETE FROM \"like\"");
+        jdbcTemplate.update("UPDATE film SET name = 'Изменён' WHERE film_id = 1");
+        jdbcTemplate.update("INSERT INTO event (event_id, event_time, user_id, event_type, operation, entity_id) " +
+                "VALUES (1, 0, 3, 'LIKE', 'REMOVE', 3000)");
+
+        long restored;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            restored = snapshotDbStorage.restore(channel);
+        }
+
+        assertThat(exported).isEqualTo(300 + 299 + 301 + 300 + 300);
+        assertThat(restored).isEqualTo(exported);
+        assertThat(dump()).isEqualTo(before);
+        assertThat(jdbcTemplate.queryForObject("SELECT COUNT(*) FROM event", Integer.class)).isZero();
+        // числа и даты в varint, ключи разностные: снимок меньше текстового представления тех же строк
+        assertThat(Files.size(file)).isLessThan(before.toString().getBytes(StandardCharsets.UTF_8).length);
+    }
+
+    @Test
+    public void testBrokenSnapshotIsRejected() throws IOException {
+        List<List<Map<String, Object>>> before = dump();
+        Path file = directory.resolve("broken.snapshot");
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+            snapshotDbStorage.export(channel);
+            channel.truncate(channel.size() / 2);
+        }
+        Files.write(directory.resolve("other.snapshot"), "not a snapshot".getBytes());
+
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            assertThatThrownBy(() -> snapshotDbStorage.restore(channel))
+                    .isInstanceOf(ValidationException.class)
+                    .hasMessageContaining("обрывается");
+        }
+        try (FileChannel channel = FileChannel.open(directory.resolve("other.snapshot"), StandardOpenOption.READ)) {
+            assertThatThrownBy(() -> snapshotDbStorage.restore(channel))
+                    .isInstanceOf(ValidationException.class);
+        }
+        assertThat(dump()).isEqualTo(before); // оборванный снимок обнаружен до очистки рабочих таблиц
+    }
+
+    @Test
+    public void testInconsistentSnapshotLeavesTablesUntouched() throws IOException {
+        Path file = directory.resolve("dangling.snapshot");
+        jdbcTemplate.execute("ALTER TABLE \"like\" SET REFERENTIAL_INTEGRITY FALSE");
+        try { // лайк несуществующего пользователя попадает в снимок
+            jdbcTemplate.update("INSERT INTO \"like\" (film_id, user_id) VALUES (1000, 999999)");
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+                snapshotDbStorage.export(channel);
+            }
+            jdbcTemplate.update("DELETE FROM \"like\" WHERE user_id = 999999");
+        } finally {
+            jdbcTemplate.execute("ALTER TABLE \"like\" SET REFERENTIAL_INTEGRITY TRUE");
+        }
+        List<List<Map<String, Object>>> before = dump();
+
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            assertThatThrownBy(() -> snapshotDbStorage.restore(channel))
+                    .isInstanceOf(ValidationException.class)
+                    .hasMessageContaining("не согласован");
+        }
+
+        assertThat(dump()).isEqualTo(before);
+        assertThat(jdbcTemplate.queryForObject("SELECT COUNT(*) FROM snapshot_user", Integer.class)).isZero();
+    }
+
+    @Test
+    public void testRestoredIdentitiesContinueAfterSnapshot() throws IOException {
+        Path file = directory.resolve("filmorate.snapshot");
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+            snapshotDbStorage.export(channel);
+        }
+        TestTables.clear(jdbcTemplate);
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            snapshotDbStorage.restore(channel);
+        }
+
+        jdbcTemplate.update("INSERT INTO film (name, description, release_date, duration, rating_id) " +
+                "VALUES ('Новый', 'Описание', '2000-01-01', 100, 1)");
+        jdbcTemplate.update("INSERT INTO \"user\" (name, email, login, birthday) " +
+                "VALUES ('Новый', 'new@mail.ru', 'new', '1990-01-01')");
+
+        assertThat(jdbcTemplate.queryForObject("SELECT film_id FROM film WHERE name = 'Новый'", Long.class))
+                .isEqualTo(300_001);
+        assertThat(jdbcTemplate.queryForObject("SELECT user_id FROM \"user\" WHERE login = 'new'", Long.class))
+                .isEqualTo(901);
+    }
+
+    @Test
+    public void testEmptyDatabase() throws IOException {
+        TestTables.clear(jdbcTemplate);
+        Path file = directory.resolve("empty.snapshot");
+
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+            assertThat(snapshotDbStorage.export(channel)).isZero();
+        }
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            assertThat(snapshotDbStorage.restore(channel)).isZero();
+        }
+        assertThat(Files.size(file)).isEqualTo(8 + 9); // заголовок файла и завершающий блок
+    }
+
+    private List<List<Map<String, Object>>> dump() {
+        return TABLES.stream()
+                .map(jdbcTemplate::queryForList)
+                .toList();
+    }
+}
@@ -0,0 +1,17 @@
+package ru.yandex.practicum.filmorate.storage;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.List;
+
+// Тесты без транзакции фиксируют свои записи: откатывать за них нечего, таблицы очищаются явно
+final class TestTables {
+    private static final List<String> TABLES = List.of("\"like\"", "film_genre", "friend_status", "film", "\"user\"");
+
+    private TestTables() {
+    }
+
+    static void clear(JdbcTemplate jdbcTemplate) {
+        TABLES.forEach(table -> jdbcTemplate.update("DELETE FROM " + table));
+    }
+}
@@ -9,14 +9,20 @@ import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabas
 import org.springframework.boot.test.autoconfigure.jdbc.JdbcTest;
 import org.springframework.context.annotation.Import;
 import org.springframework.jdbc.core.JdbcTemplate;
+import ru.yandex.practicum.filmorate.exception.NotFoundException;
 import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.storage.film.CoLikeIndex;
+import ru.yandex.practicum.filmorate.storage.film.FilmPopularityIndex;
 import ru.yandex.practicum.filmorate.storage.mappers.GenreRowMapper;
+import ru.yandex.practicum.filmorate.storage.mappers.RatingRowMapper;
 import ru.yandex.practicum.filmorate.storage.mappers.UserRowMapper;
+import ru.yandex.practicum.filmorate.storage.user.FriendGraph;
 import ru.yandex.practicum.filmorate.storage.user.UserDbStorage;
 import ru.yandex.practicum.filmorate.validation.Validator;
 
 import java.sql.Date;
 import java.time.LocalDate;
+import java.util.ArrayList;
 import java.util.List;
 
 import static org.assertj.core.api.Assertions.*;
@@ -24,11 +30,14 @@ import static org.assertj.core.api.Assertions.*;
 @JdbcTest
 @AutoConfigureTestDatabase
 @RequiredArgsConstructor(onConstructor_ = @Autowired)
-@Import({UserDbStorage.class, Validator.class, UserRowMapper.class, GenreRowMapper.class, GenreDbStorage.class})
+@Import({UserDbStorage.class, Validator.class, EntityCache.class, UserRowMapper.class, GenreRowMapper.class,
+        GenreDbStorage.class, RatingDbStorage.class, RatingRowMapper.class, FilmPopularityIndex.class,
+        CoLikeIndex.class, EntityVersions.class, FriendGraph.class})
 class UserDbStorageTest {
     private final UserDbStorage userDbStorage;
     private final JdbcTemplate jdbcTemplate;
     private final UserRowMapper userRowMapper;
+    private final FriendGraph friendGraph;
 
     @BeforeEach
     public void setUp() {
@@ -54,6 +63,7 @@ class UserDbStorageTest {
                 user.getEmail(),
                 user.getLogin(),
                 Date.valueOf(user.getBirthday())));
+        friendGraph.reload(); // граф живёт в бине и не откатывается вместе с транзакцией теста
     }
 
     @AfterEach
@@ -141,4 +151,68 @@ class UserDbStorageTest {
 
         assertThat(users).isEmpty();
     }
+
+    @Test
+    public void testFindUsersPage() {
+        assertThat(userDbStorage.findPage(null, 1))
+                .extracting(User::getLogin)
+                .containsExactly("Vit");
+        assertThat(userDbStorage.findPage(1L, 10))
+                .extracting(User::getLogin)
+                .containsExactly("Mak");
+    }
+
+    @Test
+    public void testForEachUser() {
+        List<User> users = new ArrayList<>();
+
+        userDbStorage.forEach(users::add);
+
+        assertThat(users)
+                .extracting(User::getLogin)
+                .containsExactly("Vit", "Mak");
+    }
+
+    @Test
+    public void testFriendsAndCommonFriends() {
+        User common = userDbStorage.create(User.builder()
+                .name("Vladimir")
+                .email("ya3@mail.ru")
+                .login("Vladim")
+                .birthday(LocalDate.of(1996, 3, 10))
+                .build());
+
+        userDbStorage.addFriend(1L, 2L);
+        userDbStorage.addFriend(1L, common.getId());
+        userDbStorage.addFriend(2L, common.getId());
+
+        assertThat(userDbStorage.findFriends(1L))
+                .extracting(User::getLogin)
+                .containsExactly("Mak", "Vladim");
+        assertThat(userDbStorage.findCommonFriends(1L, 2L))
+                .extracting(User::getLogin)
+                .containsExactly("Vladim");
+
+        userDbStorage.removeFriend(2L, common.getId());
+        assertThat(userDbStorage.findCommonFriends(1L, 2L)).isEmpty();
+
+        userDbStorage.delete(2L);
+        assertThat(userDbStorage.findFriends(1L))
+                .extracting(User::getLogin)
+                .containsExactly("Vladim");
+    }
+
+    @Test
+    public void testFriendGraphMatchesTableAfterReload() {
+        userDbStorage.addFriend(1L, 2L);
+        userDbStorage.addFriend(2L, 1L);
+        long[] friends = friendGraph.getFriends(1L);
+
+        friendGraph.reload();
+
+        assertThat(friendGraph.getFriends(1L)).containsExactly(friends);
+        assertThat(friendGraph.getFriends(2L)).containsExactly(1L);
+        assertThatThrownBy(() -> userDbStorage.findCommonFriends(1L, 100L))
+                .isInstanceOf(NotFoundException.class);
+    }
 }
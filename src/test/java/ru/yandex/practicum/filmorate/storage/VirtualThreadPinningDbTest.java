@@ -0,0 +1,58 @@
+package ru.yandex.practicum.filmorate.storage;
+
+import jdk.jfr.consumer.RecordedEvent;
+import lombok.RequiredArgsConstructor;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.jdbc.JdbcTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import ru.yandex.practicum.filmorate.service.FilmService;
+import ru.yandex.practicum.filmorate.service.UserService;
+import ru.yandex.practicum.filmorate.storage.event.EventDbStorage;
+import ru.yandex.practicum.filmorate.storage.event.EventLog;
+import ru.yandex.practicum.filmorate.storage.film.CoLikeIndex;
+import ru.yandex.practicum.filmorate.storage.film.FilmDbStorage;
+import ru.yandex.practicum.filmorate.storage.film.FilmPopularityIndex;
+import ru.yandex.practicum.filmorate.storage.film.FilmSearchIndex;
+import ru.yandex.practicum.filmorate.storage.mappers.EventRowMapper;
+import ru.yandex.practicum.filmorate.storage.mappers.FilmRowMapper;
+import ru.yandex.practicum.filmorate.storage.mappers.GenreRowMapper;
+import ru.yandex.practicum.filmorate.storage.mappers.RatingRowMapper;
+import ru.yandex.practicum.filmorate.storage.mappers.UserRowMapper;
+import ru.yandex.practicum.filmorate.storage.user.FriendGraph;
+import ru.yandex.practicum.filmorate.storage.user.UserDbStorage;
+import ru.yandex.practicum.filmorate.validation.Validator;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// Та же нагрузка через JDBC: пул Hikari из application.properties вместо встроенной базы теста, поэтому
+// проверяются и ожидание соединения, и драйвер H2. Виртуальные потоки пишут в своих транзакциях,
+// а данные теста должны быть им видны - общая транзакция теста отключена, у контекста своя база
+@JdbcTest
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@TestPropertySource(properties = "spring.datasource.url=jdbc:h2:mem:pinning;QUERY_CACHE_SIZE=256")
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+@RequiredArgsConstructor(onConstructor_ = @Autowired)
+@Import({FilmDbStorage.class, UserDbStorage.class, FilmService.class, UserService.class, Validator.class,
+        EntityCache.class, FilmRowMapper.class, UserRowMapper.class, GenreDbStorage.class, GenreRowMapper.class,
+        RatingDbStorage.class, RatingRowMapper.class, FilmPopularityIndex.class, CoLikeIndex.class,
+        FilmSearchIndex.class, EventLog.class, EventDbStorage.class, EventRowMapper.class, EntityVersions.class,
+        FriendGraph.class, PinningWorkload.class})
+public class VirtualThreadPinningDbTest {
+    private final PinningWorkload pinningWorkload;
+
+    @Test
+    public void testJdbcStorageWritesDoNotPinVirtualThreads() {
+        List<RecordedEvent> pinned = pinningWorkload.run(2000);
+
+        assertThat(pinned)
+                .as("pinned virtual threads: %s", pinned)
+                .isEmpty();
+    }
+}
@@ -0,0 +1,49 @@
+package ru.yandex.practicum.filmorate.storage;
+
+import jdk.jfr.consumer.RecordedEvent;
+import lombok.RequiredArgsConstructor;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.jdbc.JdbcTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.ActiveProfiles;
+import ru.yandex.practicum.filmorate.service.FilmService;
+import ru.yandex.practicum.filmorate.service.UserService;
+import ru.yandex.practicum.filmorate.storage.event.EventDbStorage;
+import ru.yandex.practicum.filmorate.storage.event.EventLog;
+import ru.yandex.practicum.filmorate.storage.film.CoLikeIndex;
+import ru.yandex.practicum.filmorate.storage.film.FilmPopularityIndex;
+import ru.yandex.practicum.filmorate.storage.film.FilmSearchIndex;
+import ru.yandex.practicum.filmorate.storage.film.InMemoryFilmStorage;
+import ru.yandex.practicum.filmorate.storage.mappers.EventRowMapper;
+import ru.yandex.practicum.filmorate.storage.mappers.GenreRowMapper;
+import ru.yandex.practicum.filmorate.storage.mappers.RatingRowMapper;
+import ru.yandex.practicum.filmorate.storage.user.FriendGraph;
+import ru.yandex.practicum.filmorate.storage.user.InMemoryUserStorage;
+import ru.yandex.practicum.filmorate.validation.Validator;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@JdbcTest
+@AutoConfigureTestDatabase
+@ActiveProfiles("in-memory")
+@RequiredArgsConstructor(onConstructor_ = @Autowired)
+@Import({InMemoryFilmStorage.class, InMemoryUserStorage.class, FilmService.class, UserService.class, Validator.class,
+        EntityCache.class, GenreDbStorage.class, GenreRowMapper.class, RatingDbStorage.class, RatingRowMapper.class,
+        FilmPopularityIndex.class, CoLikeIndex.class, FilmSearchIndex.class, EventLog.class, EventDbStorage.class,
+        EventRowMapper.class, EntityVersions.class, FriendGraph.class, PinningWorkload.class})
+public class VirtualThreadPinningTest {
+    private final PinningWorkload pinningWorkload;
+
+    @Test
+    public void testStorageWritesDoNotPinVirtualThreads() {
+        List<RecordedEvent> pinned = pinningWorkload.run(2000);
+
+        assertThat(pinned)
+                .as("pinned virtual threads: %s", pinned)
+                .isEmpty();
+    }
+}
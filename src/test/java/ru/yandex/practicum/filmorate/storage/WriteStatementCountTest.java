@@ -0,0 +1,187 @@
+package ru.yandex.practicum.filmorate.storage;
+
+import lombok.RequiredArgsConstructor;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.jdbc.JdbcTest;
+import org.springframework.context.annotation.Import;
+import ru.yandex.practicum.filmorate.exception.NotFoundException;
+import ru.yandex.practicum.filmorate.exception.ValidationException;
+import ru.yandex.practicum.filmorate.model.Film;
+import ru.yandex.practicum.filmorate.model.Genre;
+import ru.yandex.practicum.filmorate.model.Rating;
+import ru.yandex.practicum.filmorate.model.User;
+import ru.yandex.practicum.filmorate.service.FilmService;
+import ru.yandex.practicum.filmorate.service.UserService;
+import ru.yandex.practicum.filmorate.storage.event.EventDbStorage;
+import ru.yandex.practicum.filmorate.storage.event.EventLog;
+import ru.yandex.practicum.filmorate.storage.film.CoLikeIndex;
+import ru.yandex.practicum.filmorate.storage.film.FilmDbStorage;
+import ru.yandex.practicum.filmorate.storage.film.FilmPopularityIndex;
+import ru.yandex.practicum.filmorate.storage.film.FilmSearchIndex;
+import ru.yandex.practicum.filmorate.storage.mappers.EventRowMapper;
+import ru.yandex.practicum.filmorate.storage.mappers.FilmRowMapper;
+import ru.yandex.practicum.filmorate.storage.mappers.GenreRowMapper;
+import ru.yandex.practicum.filmorate.storage.mappers.RatingRowMapper;
+import ru.yandex.practicum.filmorate.storage.mappers.UserRowMapper;
+import ru.yandex.practicum.filmorate.storage.user.FriendGraph;
+import ru.yandex.practicum.filmorate.storage.user.UserDbStorage;
+import ru.yandex.practicum.filmorate.validation.Validator;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@JdbcTest
+@AutoConfigureTestDatabase
+@RequiredArgsConstructor(onConstructor_ = @Autowired)
+@Import({FilmDbStorage.class, UserDbStorage.class, FilmService.class, UserService.class, Validator.class,
+        EntityCache.class, FilmRowMapper.class, UserRowMapper.class, GenreDbStorage.class, GenreRowMapper.class,
+        RatingDbStorage.class, RatingRowMapper.class, FilmPopularityIndex.class, CoLikeIndex.class,
+        FilmSearchIndex.class, EventLog.class, EventDbStorage.class, EventRowMapper.class, EntityVersions.class,
+        FriendGraph.class, StatementCounter.class})
+public class WriteStatementCountTest {
+    private final FilmDbStorage filmDbStorage;
+    private final UserDbStorage userDbStorage;
+    private final FilmService filmService;
+    private final UserService userService;
+
+    private Film film;
+    private User user;
+    private User friend;
+
+    @BeforeEach
+    public void setUp() {
+        film = filmDbStorage.create(film("Фильм", null));
+        user = userDbStorage.create(user("first"));
+        friend = userDbStorage.create(user("second"));
+        StatementCounter.reset();
+    }
+
+    @Test
+    public void testCreateUserRunsOneStatement() {
+        userDbStorage.create(user("third"));
+
+        assertThat(StatementCounter.count()).isEqualTo(1);
+    }
+
+    @Test
+    public void testUpdateUserRunsOneStatement() {
+        user.setName("Новое имя");
+        userDbStorage.update(user);
+
+        assertThat(StatementCounter.count()).isEqualTo(1);
+    }
+
+    @Test
+    public void testDuplicateEmailAndLoginAreReported() {
+        User sameEmail = user("third");
+        sameEmail.setEmail(user.getEmail());
+        User sameLogin = user("third");
+        sameLogin.setLogin(user.getLogin());
+
+        assertThatThrownBy(() -> userDbStorage.create(sameEmail))
+                .isInstanceOf(ValidationException.class)
+                .hasMessageContaining("Email");
+        assertThatThrownBy(() -> userDbStorage.create(sameLogin))
+                .isInstanceOf(ValidationException.class)
+                .hasMessageContaining("Login");
+
+        friend.setLogin(user.getLogin());
+        assertThatThrownBy(() -> userDbStorage.update(friend))
+                .isInstanceOf(ValidationException.class)
+                .hasMessageContaining("Login");
+    }
+
+    @Test
+    public void testUpdateUnknownUser() {
+        User unknown = user("third");
+        unknown.setId(100L);
+
+        assertThatThrownBy(() -> userDbStorage.update(unknown))
+                .isInstanceOf(NotFoundException.class);
+    }
+
+    @Test
+    public void testAddLikeRunsInsertAndCounterUpdateOnly() {
+        filmService.addLike(film.getId(), user.getId());
+
+        assertThat(StatementCounter.count()).isEqualTo(2);
+    }
+
+    @Test
+    public void testAddLikeForUnknownFilmOrUser() {
+        assertThatThrownBy(() -> filmService.addLike(100L, user.getId()))
+                .isInstanceOf(NotFoundException.class)
+                .hasMessageContaining("фильма");
+        assertThatThrownBy(() -> filmService.addLike(film.getId(), 100L))
+                .isInstanceOf(NotFoundException.class)
+                .hasMessageContaining("пользователя");
+        assertThatThrownBy(() -> filmService.removeLike(film.getId(), 100L))
+                .isInstanceOf(NotFoundException.class);
+    }
+
+    @Test
+    public void testAddFriendRunsOneStatement() {
+        userService.addFriend(user.getId(), friend.getId());
+        userService.addFriend(user.getId(), friend.getId());
+
+        assertThat(StatementCounter.count()).isEqualTo(2);
+        assertThat(userService.getFriends(user.getId()))
+                .extracting(User::getId)
+                .containsExactly(friend.getId());
+    }
+
+    @Test
+    public void testAddFriendForUnknownUser() {
+        assertThatThrownBy(() -> userService.addFriend(user.getId(), 100L))
+                .isInstanceOf(NotFoundException.class);
+        assertThatThrownBy(() -> userService.removeFriend(100L, user.getId()))
+                .isInstanceOf(NotFoundException.class);
+        assertThatThrownBy(() -> userService.getFriends(100L))
+                .isInstanceOf(NotFoundException.class);
+    }
+
+    @Test
+    public void testFilmWriteStatementsDoNotGrowWithGenres() {
+        filmDbStorage.create(film("Один жанр", List.of(genre(1))));
+        int oneGenre = StatementCounter.count();
+
+        StatementCounter.reset();
+        filmDbStorage.create(film("Все жанры", IntStream.rangeClosed(1, 6).mapToObj(this::genre).toList()));
+        int allGenres = StatementCounter.count();
+
+        assertThat(allGenres).isEqualTo(oneGenre);
+    }
+
+    private Film film(String name, List<Genre> genres) {
+        return Film.builder()
+                .name(name)
+                .description("Описание")
+                .releaseDate(LocalDate.of(2000, 1, 1))
+                .duration(100L)
+                .mpa(Rating.builder().id(1).build())
+                .genres(genres)
+                .build();
+    }
+
+    private Genre genre(int id) {
+        return Genre.builder()
+                .id(id)
+                .build();
+    }
+
+    private User user(String login) {
+        return User.builder()
+                .name(login)
+                .email(login + "@mail.ru")
+                .login(login)
+                .birthday(LocalDate.of(1990, 1, 1))
+                .build();
+    }
+}